@@ -0,0 +1,93 @@
+package A2_Latency;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Removes a file from the page cache before a cold-cache run. As root, the whole page cache is
+ * dropped via /proc/sys/vm/drop_caches; otherwise GNU dd with iflag=nocache asks the kernel
+ * (posix_fadvise DONTNEED) to drop the cached pages of that one file.
+ */
+class CacheEvictor {
+    private static final Logger logger = Logger.getLogger(CacheEvictor.class.getName());
+
+    private static final Path DROP_CACHES = Paths.get("/proc/sys/vm/drop_caches");
+
+    enum Strategy { DROP_CACHES, DD_NOCACHE, NONE }
+
+    private final Strategy strategy;
+
+    private CacheEvictor(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Chooses the first strategy that works for the given file.
+     */
+    static CacheEvictor detect(Path sample) {
+        if (Files.isWritable(DROP_CACHES)) {
+            CacheEvictor evictor = new CacheEvictor(Strategy.DROP_CACHES);
+            if (evictor.evict(sample)) {
+                return evictor;
+            }
+        }
+        CacheEvictor evictor = new CacheEvictor(Strategy.DD_NOCACHE);
+        if (evictor.evict(sample)) {
+            return evictor;
+        }
+        return new CacheEvictor(Strategy.NONE);
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Evicts the file from the page cache; returns false if that was not possible.
+     */
+    boolean evict(Path file) {
+        try {
+            switch (strategy) {
+                case DROP_CACHES:
+                    // Vorher schreiben, damit keine geänderten Seiten im Cache bleiben
+                    if (!run("sync")) {
+                        return false;
+                    }
+                    Files.write(DROP_CACHES, "1".getBytes(StandardCharsets.US_ASCII));
+                    return true;
+                case DD_NOCACHE:
+                    // count=0 liest nichts, verwirft aber die Seiten der ganzen Datei aus dem Cache
+                    return run("dd", "if=" + file, "iflag=nocache", "count=0", "status=none");
+                default:
+                    return false;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cache konnte nicht geleert werden: " + file, e);
+            return false;
+        }
+    }
+
+    private static boolean run(String... command) throws IOException {
+        // Ausgabe verwerfen, damit der Prozess nicht an einer vollen Pipe hängt und das Timeout greift
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                logger.warning("Zeitüberschreitung bei " + String.join(" ", command));
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package A2_Latency;
+
+import java.util.Arrays;
+
+/**
+ * Collects the per-operation latencies of one benchmark configuration and computes percentiles
+ * and throughput from them.
+ */
+class LatencyStats {
+    private long[] samples = new long[1024];
+    private int count;
+    private long totalBytes;
+    private long totalNanos;
+    private boolean sorted;
+
+    void add(long nanos, long bytes) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        totalNanos += nanos;
+        totalBytes += bytes;
+        sorted = false;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of operations lies (nearest rank).
+     */
+    long percentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(fraction * count) - 1;
+        return samples[Math.max(0, Math.min(count - 1, rank))];
+    }
+
+    long max() {
+        return percentile(1.0);
+    }
+
+    // Durchsatz in MiB/s über die Summe der gemessenen Lesezeiten
+    double throughputMiBs() {
+        if (totalNanos == 0) {
+            return 0;
+        }
+        return totalBytes / (1024.0 * 1024.0) / (totalNanos / 1e9);
+    }
+}
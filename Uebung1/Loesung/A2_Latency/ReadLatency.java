@@ -1,53 +1,346 @@
 package A2_Latency;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The A1_Latency.ReadLatency class measures the latency of reading a file.
- * It reads the file multiple times and calculates the time taken for each read operation.
- * The results are printed to the console.
+ * The A2_Latency.ReadLatency class is a benchmark suite for the latency of file reads.
+ * For every combination of file size, buffer size, read method (FileInputStream, FileChannel with
+ * heap and direct buffers, MappedByteBuffer, O_DIRECT), cache state (warm, cold) and access pattern
+ * (sequential, random) it times each single read of one buffer and reports the 50th, 90th, 99th and
+ * 99.9th percentile, the maximum and the throughput.
+ *
+ * Warm runs are preceded by an untimed pass over the whole file. Before every cold run the file is
+ * evicted from the page cache (see CacheEvictor); O_DIRECT bypasses the cache and is only measured cold.
+ *
+ * Usage: java A2_Latency.ReadLatency [--file-sizes=64K,4M,64M] [--buffer-sizes=4K,64K,1M]
+ *        [--methods=STREAM,CHANNEL_HEAP,CHANNEL_DIRECT,MAPPED,DIRECT_IO] [--cache=warm,cold]
+ *        [--pattern=sequential,random] [--runs=5] [--max-ops=4096] [--dir=verzeichnis]
+ *        [--file=datei] [--csv=datei]
  *
  * @author Simon
  */
 public class ReadLatency {
     private static final Logger logger = Logger.getLogger(ReadLatency.class.getName());
 
-    // Methode zur Messung der Latenz
-    public static void measureLatency(String filePath) {
-        byte[] buffer = new byte[1024]; // Puffergröße
+    enum Cache {
+        WARM("warm"), COLD("kalt");
+
+        final String label;
+
+        Cache(String label) {
+            this.label = label;
+        }
+    }
+
+    enum Pattern {
+        SEQUENTIAL("sequentiell"), RANDOM("zufällig");
+
+        final String label;
+
+        Pattern(String label) {
+            this.label = label;
+        }
+    }
 
-        for (int run = 1; run <= 3; run++) {
-            try (FileInputStream fis = new FileInputStream(filePath)) {
-                // Startzeit erfassen
-                long startTime = System.nanoTime();
+    // Verhindert, dass der JIT die Lesevorgänge als wirkungslos entfernt
+    private static volatile int blackhole;
 
-                // Lesevorgang
-                int bytesRead = fis.read(buffer);
+    // Einstellungen aus der Kommandozeile
+    static final class Config {
+        List<Long> fileSizes = List.of(64L << 10, 4L << 20, 64L << 20);
+        List<Integer> bufferSizes = List.of(4 << 10, 64 << 10, 1 << 20);
+        EnumSet<ReadMethod> methods = EnumSet.allOf(ReadMethod.class);
+        EnumSet<Cache> caches = EnumSet.allOf(Cache.class);
+        EnumSet<Pattern> patterns = EnumSet.allOf(Pattern.class);
+        int runs = 5;
+        int maxOps = 4096;
+        // Verzeichnis für die Testdateien; standardmäßig ein temporäres im Arbeitsverzeichnis
+        Path dir;
+        // Statt erzeugter Testdateien eine vorhandene Datei messen
+        Path file;
+        Path csv;
+    }
 
-                // Endzeit erfassen
-                long endTime = System.nanoTime();
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Aufruf: java A2_Latency.ReadLatency [--file-sizes=64K,4M,64M] [--buffer-sizes=4K,64K,1M]"
+                    + " [--methods=...] [--cache=warm,cold] [--pattern=sequential,random] [--runs=5]"
+                    + " [--max-ops=4096] [--dir=verzeichnis] [--file=datei] [--csv=datei]");
+            System.exit(1);
+            return;
+        }
+        try {
+            run(config);
+        } catch (IOException e) {
+            System.err.println("Fehler bei der Messung: " + e.getMessage());
+            logger.log(Level.SEVERE, "An error occurred while running the benchmark", e);
+            System.exit(1);
+        }
+    }
 
-                // Latenz berechnen
-                long elapsedTime = endTime - startTime;
+    static void run(Config config) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path tempDir = null;
+        if (config.file != null) {
+            files.add(config.file);
+        } else {
+            tempDir = config.dir != null ? Files.createDirectories(config.dir) : Paths.get(".");
+            tempDir = Files.createTempDirectory(tempDir, "readlatency-");
+        }
+        try {
+            if (tempDir != null) {
+                for (long size : config.fileSizes) {
+                    System.out.println("Erzeuge Testdatei mit " + formatSize(size) + "...");
+                    files.add(createTestFile(tempDir, size));
+                }
+            }
+            String store = Files.getFileStore(files.get(0)).type();
+            if ("tmpfs".equals(store) || "ramfs".equals(store)) {
+                System.out.println("Hinweis: Die Testdateien liegen auf " + store
+                        + "; kalte Messungen lesen dort ebenfalls aus dem Speicher.");
+            }
+            CacheEvictor evictor = CacheEvictor.detect(files.get(0));
+            System.out.println("Cache-Verdrängung: " + evictor.getStrategy());
+            if (evictor.getStrategy() == CacheEvictor.Strategy.NONE && config.caches.contains(Cache.COLD)) {
+                System.out.println("Hinweis: Der Cache kann nicht geleert werden; kalt wird nur O_DIRECT gemessen.");
+            }
 
-                System.out.println("Durchlauf " + run + " - Latenz für den Lesevorgang der Datei '" + filePath + "': " + elapsedTime + " ns");
-                System.out.println("Gelesene Bytes: " + bytesRead);
+            System.out.println("Aufwärmen der JVM...");
+            warmUpJit(files.get(0), config);
 
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, "An error occurred while reading the file", e);
+            List<String> csv = new ArrayList<>();
+            csv.add("method,fileSize,bufferSize,cache,pattern,ops,p50Nanos,p90Nanos,p99Nanos,p999Nanos,maxNanos,throughputMiBs");
+            System.out.printf("%n%-22s %9s %9s %-5s %-12s %7s %10s %10s %10s %10s %10s %10s%n",
+                    "Methode", "Datei", "Puffer", "Cache", "Zugriff", "Ops",
+                    "p50 [ns]", "p90 [ns]", "p99 [ns]", "p99.9 [ns]", "max [ns]", "MiB/s");
+            for (Path file : files) {
+                long fileSize = Files.size(file);
+                for (int bufferSize : config.bufferSizes) {
+                    for (ReadMethod method : config.methods) {
+                        for (Cache cache : config.caches) {
+                            if (method.bypassesCache() ? cache != Cache.COLD
+                                    : cache == Cache.COLD && evictor.getStrategy() == CacheEvictor.Strategy.NONE) {
+                                continue;
+                            }
+                            for (Pattern pattern : config.patterns) {
+                                LatencyStats stats;
+                                try {
+                                    stats = measure(file, fileSize, bufferSize, method, cache, pattern, evictor, config);
+                                } catch (UnsupportedOperationException e) {
+                                    System.out.printf("%-22s %9s %9s nicht unterstützt: %s%n", method.label(),
+                                            formatSize(fileSize), formatSize(bufferSize), e.getMessage());
+                                    break;
+                                }
+                                System.out.printf(Locale.ROOT, "%-22s %9s %9s %-5s %-12s %7d %10d %10d %10d %10d %10d %10.1f%n",
+                                        method.label(), formatSize(fileSize), formatSize(bufferSize), cache.label,
+                                        pattern.label, stats.count(), stats.percentile(0.5), stats.percentile(0.9),
+                                        stats.percentile(0.99), stats.percentile(0.999), stats.max(),
+                                        stats.throughputMiBs());
+                                csv.add(String.format(Locale.ROOT, "%s,%d,%d,%s,%s,%d,%d,%d,%d,%d,%d,%.1f",
+                                        method.name(), fileSize, bufferSize, cache.name(), pattern.name(),
+                                        stats.count(), stats.percentile(0.5), stats.percentile(0.9),
+                                        stats.percentile(0.99), stats.percentile(0.999), stats.max(),
+                                        stats.throughputMiBs()));
+                            }
+                        }
+                    }
+                }
+            }
+            if (config.csv != null) {
+                Files.write(config.csv, csv, StandardCharsets.UTF_8);
+                System.out.println("\nErgebnisse gespeichert in: " + config.csv);
+            }
+        } finally {
+            if (tempDir != null) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(tempDir);
             }
         }
     }
 
-    public static void main(String[] args) {
-        // Pfad zur Testdatei
-        String smallFilePath = "Uebung1/Loesung/A2_Latency/testfile.txt"; //Textdatei
+    /*
+     * Misst eine Kombination: runs Durchläufe mit jeweils bis zu maxOps Lesevorgängen einer
+     * Puffergröße. Die Positionen sind an der Puffergröße ausgerichtet, damit auch O_DIRECT sie lesen kann.
+     */
+    private static LatencyStats measure(Path file, long fileSize, int bufferSize, ReadMethod method, Cache cache,
+                                        Pattern pattern, CacheEvictor evictor, Config config) throws IOException {
+        long blocks = Math.max(1, (fileSize + bufferSize - 1) / bufferSize);
+        int ops = (int) Math.min(blocks, config.maxOps);
+        // Fester Startwert, damit alle Methoden dieselben zufälligen Positionen lesen
+        Random random = new Random(42);
+        LatencyStats stats = new LatencyStats();
+        int sink = 0;
+        if (cache == Cache.WARM) {
+            // Ungemessener Durchlauf über die ganze Datei, danach liegt sie im Page Cache
+            try (ReadMethod.Reader reader = method.open(file, bufferSize)) {
+                for (long block = 0; block < blocks; block++) {
+                    sink += reader.read(block * bufferSize);
+                }
+            }
+        }
+        for (int run = 0; run < config.runs; run++) {
+            if (cache == Cache.COLD && !method.bypassesCache() && !evictor.evict(file)) {
+                throw new UnsupportedOperationException("Cache konnte nicht geleert werden");
+            }
+            try (ReadMethod.Reader reader = method.open(file, bufferSize)) {
+                for (int i = 0; i < ops; i++) {
+                    long block = pattern == Pattern.SEQUENTIAL ? i : (long) (random.nextDouble() * blocks);
+                    long position = block * bufferSize;
+                    long startTime = System.nanoTime();
+                    sink += reader.read(position);
+                    long elapsedTime = System.nanoTime() - startTime;
+                    stats.add(elapsedTime, Math.min(bufferSize, fileSize - position));
+                }
+            }
+        }
+        blackhole = sink;
+        return stats;
+    }
+
+    // Ungemessene Lesevorgänge mit allen Methoden, damit die ersten Kombinationen nicht im Interpreter laufen
+    private static void warmUpJit(Path file, Config config) throws IOException {
+        long fileSize = Files.size(file);
+        int sink = 0;
+        for (ReadMethod method : config.methods) {
+            for (int bufferSize : config.bufferSizes) {
+                long blocks = Math.max(1, (fileSize + bufferSize - 1) / bufferSize);
+                try (ReadMethod.Reader reader = method.open(file, bufferSize)) {
+                    for (int i = 0; i < 20_000; i++) {
+                        sink += reader.read((i % blocks) * bufferSize);
+                    }
+                } catch (UnsupportedOperationException e) {
+                    // Wird bei der Messung gemeldet
+                }
+            }
+        }
+        blackhole = sink;
+    }
+
+    // Erzeugt eine Datei mit Zufallsdaten und schreibt sie auf das Gerät
+    private static Path createTestFile(Path dir, long size) throws IOException {
+        Path file = dir.resolve("data-" + size);
+        Random random = new Random(size);
+        byte[] chunk = new byte[1 << 20];
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.DSYNC)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    static Config parseArgs(String[] args) {
+        Config config = new Config();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Unbekanntes Argument: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "file-sizes":
+                    config.fileSizes = new ArrayList<>();
+                    for (String size : value.split(",")) {
+                        config.fileSizes.add(parseSize(size));
+                    }
+                    break;
+                case "buffer-sizes":
+                    config.bufferSizes = new ArrayList<>();
+                    for (String size : value.split(",")) {
+                        config.bufferSizes.add(Math.toIntExact(parseSize(size)));
+                    }
+                    break;
+                case "methods":
+                    config.methods = EnumSet.noneOf(ReadMethod.class);
+                    for (String method : value.split(",")) {
+                        config.methods.add(ReadMethod.valueOf(method.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "cache":
+                    config.caches = EnumSet.noneOf(Cache.class);
+                    for (String cache : value.split(",")) {
+                        config.caches.add(Cache.valueOf(cache.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "pattern":
+                    config.patterns = EnumSet.noneOf(Pattern.class);
+                    for (String pattern : value.split(",")) {
+                        config.patterns.add(Pattern.valueOf(pattern.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "runs":
+                    config.runs = Integer.parseInt(value);
+                    break;
+                case "max-ops":
+                    config.maxOps = Integer.parseInt(value);
+                    break;
+                case "dir":
+                    config.dir = Paths.get(value);
+                    break;
+                case "file":
+                    config.file = Paths.get(value);
+                    break;
+                case "csv":
+                    config.csv = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unbekannte Option: --" + name);
+            }
+        }
+        return config;
+    }
 
-        // Messung der Latenz für die kleine Datei
-        System.out.println("Messung der Latenz für die kleine Datei (" + smallFilePath + "):");
-        measureLatency(smallFilePath);
+    // Liest Größenangaben wie 512, 4K, 64M oder 1G (Basis 1024)
+    static long parseSize(String text) {
+        String value = text.trim().toUpperCase(Locale.ROOT);
+        int shift = 0;
+        if (value.endsWith("K")) {
+            shift = 10;
+        } else if (value.endsWith("M")) {
+            shift = 20;
+        } else if (value.endsWith("G")) {
+            shift = 30;
+        }
+        if (shift > 0) {
+            value = value.substring(0, value.length() - 1);
+        }
+        long size = Long.parseLong(value) << shift;
+        if (size <= 0) {
+            throw new IllegalArgumentException("Ungültige Größe: " + text);
+        }
+        return size;
+    }
+
+    static String formatSize(long size) {
+        if (size >= 1L << 30 && size % (1L << 30) == 0) {
+            return (size >> 30) + " GiB";
+        } else if (size >= 1L << 20 && size % (1L << 20) == 0) {
+            return (size >> 20) + " MiB";
+        } else if (size >= 1L << 10 && size % (1L << 10) == 0) {
+            return (size >> 10) + " KiB";
+        }
+        return size + " B";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package A2_Latency;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The read paths compared by the ReadLatency benchmark. Each method opens a Reader that reads one
+ * buffer of a fixed size at a given file position; one call to Reader.read is one timed operation.
+ */
+enum ReadMethod {
+    STREAM("FileInputStream") {
+        @Override
+        Reader open(Path file, int bufferSize) throws IOException {
+            FileInputStream in = new FileInputStream(file.toFile());
+            byte[] buffer = new byte[bufferSize];
+            return new Reader() {
+                private long current;
+
+                @Override
+                public int read(long position) throws IOException {
+                    if (position != current) {
+                        in.getChannel().position(position);
+                    }
+                    int total = 0;
+                    while (total < buffer.length) {
+                        int n = in.read(buffer, total, buffer.length - total);
+                        if (n < 0) {
+                            break;
+                        }
+                        total += n;
+                    }
+                    current = position + total;
+                    return total > 0 ? total ^ buffer[0] : 0;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    in.close();
+                }
+            };
+        }
+    },
+    CHANNEL_HEAP("FileChannel (Heap)") {
+        @Override
+        Reader open(Path file, int bufferSize) throws IOException {
+            return new ChannelReader(FileChannel.open(file, StandardOpenOption.READ), ByteBuffer.allocate(bufferSize),
+                    false);
+        }
+    },
+    CHANNEL_DIRECT("FileChannel (direkt)") {
+        @Override
+        Reader open(Path file, int bufferSize) throws IOException {
+            return new ChannelReader(FileChannel.open(file, StandardOpenOption.READ),
+                    ByteBuffer.allocateDirect(bufferSize), false);
+        }
+    },
+    MAPPED("MappedByteBuffer") {
+        @Override
+        Reader open(Path file, int bufferSize) throws IOException {
+            MappedByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new UnsupportedOperationException("Datei zu groß für eine einzelne Abbildung");
+                }
+                // Die Abbildung bleibt nach dem Schließen des Kanals gültig
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            byte[] buffer = new byte[bufferSize];
+            return new Reader() {
+                @Override
+                public int read(long position) {
+                    int length = (int) Math.min(buffer.length, mapped.capacity() - position);
+                    // Das Kopieren erzwingt das Einlesen der Seiten (Page Faults bei kaltem Cache)
+                    mapped.get((int) position, buffer, 0, length);
+                    return length > 0 ? length ^ buffer[0] : 0;
+                }
+
+                @Override
+                public void close() {
+                    // Die Abbildung wird vom Garbage Collector freigegeben
+                }
+            };
+        }
+    },
+    DIRECT_IO("O_DIRECT") {
+        @Override
+        Reader open(Path file, int bufferSize) throws IOException {
+            int alignment = (int) Files.getFileStore(file).getBlockSize();
+            if (bufferSize % alignment != 0) {
+                throw new UnsupportedOperationException(
+                        "Puffergröße ist kein Vielfaches der Blockgröße " + alignment);
+            }
+            // O_DIRECT verlangt einen an der Blockgröße ausgerichteten Puffer
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize + alignment).alignedSlice(alignment);
+            buffer.limit(bufferSize);
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+            } catch (IOException e) {
+                throw new UnsupportedOperationException("O_DIRECT wird vom Dateisystem nicht unterstützt", e);
+            }
+            // Ein einziger Aufruf: ein Folgeaufruf nach einem kurzen Lesen am Dateiende wäre nicht ausgerichtet
+            return new ChannelReader(channel, buffer.slice(), true);
+        }
+
+        @Override
+        boolean bypassesCache() {
+            return true;
+        }
+    };
+
+    private final String label;
+
+    ReadMethod(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    /**
+     * Opens a reader for the file. Throws UnsupportedOperationException if the method cannot be
+     * used with this file or buffer size.
+     */
+    abstract Reader open(Path file, int bufferSize) throws IOException;
+
+    // O_DIRECT liest immer vom Gerät; eine Unterscheidung zwischen warmem und kaltem Cache entfällt
+    boolean bypassesCache() {
+        return false;
+    }
+
+    /**
+     * Reads one buffer at a position. The return value depends on the data read and is only used to
+     * keep the JIT from removing the read.
+     */
+    interface Reader extends Closeable {
+        int read(long position) throws IOException;
+    }
+
+    // Positionsbasiertes Lesen über einen FileChannel in einen Heap- oder Direktpuffer
+    private static final class ChannelReader implements Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final boolean singleRead;
+
+        ChannelReader(FileChannel channel, ByteBuffer buffer, boolean singleRead) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.singleRead = singleRead;
+        }
+
+        @Override
+        public int read(long position) throws IOException {
+            buffer.clear();
+            if (singleRead) {
+                channel.read(buffer, position);
+            }
+            while (!singleRead && buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            return buffer.position() > 0 ? buffer.position() ^ buffer.get(0) : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
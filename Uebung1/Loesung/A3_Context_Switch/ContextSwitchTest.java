@@ -1,65 +1,270 @@
 package A3_Context_Switch;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The ContextSwitchTest class measures the average time taken for context switching between two threads.
- * It creates two threads, starts them, and measures the time taken for them to complete.
- * The average context switch time is calculated over a specified number of iterations.
- * The results are printed to the console.
+ * The ContextSwitchTest class measures how long it takes to hand control from one thread to another.
+ * Two threads bounce a token back and forth (ping-pong) through one of several handoff mechanisms
+ * (see Handoff), on platform threads and, if the Java version supports them, on virtual threads.
+ * Thread A times every round trip; half of it is the latency of one switch. After a warm-up phase
+ * the 50th, 90th, 99th and 99.9th percentile, the maximum and the mean are reported per mechanism.
+ *
+ * With --pin=cpus the benchmark restarts itself in a child JVM launched via taskset, so that both
+ * threads run on the given CPUs. With a single CPU every handoff is a real context switch; with two
+ * CPUs the busy-spin variant measures the cache-line transfer between cores instead.
+ *
+ * Usage: java A3_Context_Switch.ContextSwitchTest [--rounds=100000] [--warmup=20000]
+ *        [--handoffs=PARK,SYNCHRONOUS_QUEUE,EXCHANGER,SPIN,WAIT_NOTIFY] [--threads=platform,virtual]
+ *        [--pin=0] [--csv=datei]
  *
  * @author Simon
  */
 public class ContextSwitchTest {
     private static final Logger logger = Logger.getLogger(ContextSwitchTest.class.getName());
 
-    public static void main(String[] args) {
-        long startTime, endTime;
-        long totalTime = 0;
-        int iterations = 100;
+    // Maximale Dauer einer Messung, bevor sie als hängend abgebrochen wird
+    private static final long TIMEOUT_SECONDS = 120;
+
+    enum ThreadKind { PLATFORM, VIRTUAL }
+
+    // Einstellungen aus der Kommandozeile
+    static final class Config {
+        int rounds = 100_000;
+        int warmup = 20_000;
+        EnumSet<Handoff> handoffs = EnumSet.allOf(Handoff.class);
+        EnumSet<ThreadKind> threadKinds = EnumSet.allOf(ThreadKind.class);
+        String pin;
+        Path csv;
+    }
 
-        for (int i = 0; i < iterations; i++) {
-            Thread t1 = new Thread(() -> {
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Aufruf: java A3_Context_Switch.ContextSwitchTest [--rounds=100000] [--warmup=20000]"
+                    + " [--handoffs=PARK,SYNCHRONOUS_QUEUE,EXCHANGER,SPIN,WAIT_NOTIFY]"
+                    + " [--threads=platform,virtual] [--pin=0] [--csv=datei]");
+            System.exit(1);
+            return;
+        }
+        if (config.pin != null) {
+            System.exit(runPinned(config.pin, args));
+            return;
+        }
+        System.out.println("Verfügbare Prozessoren: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%n%-26s %-9s %9s %9s %9s %9s %10s %9s%n", "Mechanismus", "Threads",
+                "p50 [ns]", "p90 [ns]", "p99 [ns]", "p99.9 [ns]", "max [ns]", "Mittel");
+        List<String> csv = new ArrayList<>();
+        csv.add("handoff,threads,rounds,p50Nanos,p90Nanos,p99Nanos,p999Nanos,maxNanos,meanNanos");
+        for (ThreadKind kind : config.threadKinds) {
+            ThreadFactory factory = threadFactory(kind);
+            if (factory == null) {
+                System.out.println("Virtuelle Threads werden von dieser Java-Version nicht unterstützt.");
+                continue;
+            }
+            for (Handoff handoff : config.handoffs) {
+                long[] switches;
                 try {
-                    // Simulieren von Aufgaben im Thread
-                    for (int j = 0; j < 1000; j++) {
-                        double result = Math.sqrt(j);
-                    }
-                    // Simulieren des Verlassens des CPU-Caches durch Sleep
-                    Thread.sleep(10);
+                    switches = measure(handoff, factory, config);
                 } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                     logger.log(Level.SEVERE, "Thread was interrupted", e);
+                    return;
+                }
+                if (switches == null) {
+                    System.out.printf("%-26s %-9s Zeitüberschreitung%n", handoff.label(), label(kind));
+                    continue;
                 }
-            });
+                Arrays.sort(switches);
+                long mean = (long) Arrays.stream(switches).average().orElse(0);
+                System.out.printf("%-26s %-9s %9d %9d %9d %9d %10d %9d%n", handoff.label(), label(kind),
+                        percentile(switches, 0.5), percentile(switches, 0.9), percentile(switches, 0.99),
+                        percentile(switches, 0.999), switches[switches.length - 1], mean);
+                csv.add(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%d,%d,%d", handoff.name(), kind.name(),
+                        switches.length, percentile(switches, 0.5), percentile(switches, 0.9),
+                        percentile(switches, 0.99), percentile(switches, 0.999), switches[switches.length - 1],
+                        mean));
+            }
+        }
+        if (config.csv != null) {
+            try {
+                Files.write(config.csv, csv, StandardCharsets.UTF_8);
+                System.out.println("\nErgebnisse gespeichert in: " + config.csv);
+            } catch (IOException e) {
+                System.err.println("Fehler beim Schreiben der Ergebnisse: " + config.csv);
+                logger.log(Level.SEVERE, "An error occurred while writing the results", e);
+            }
+        }
+    }
 
-            Thread t2 = new Thread(() -> {
-                try {
-                    for (int j = 0; j < 1000; j++) {
-                        double result = Math.sqrt(j);
+    /*
+     * Führt warmup + rounds Ping-Pongs aus. Liefert die Dauer je Wechsel (halbe Umlaufzeit) der
+     * gemessenen Runden oder null, wenn die Threads nicht rechtzeitig fertig wurden.
+     */
+    static long[] measure(Handoff handoff, ThreadFactory factory, Config config) throws InterruptedException {
+        Handoff.Link link = handoff.newLink();
+        int total = config.warmup + config.rounds;
+        long[] roundTrips = new long[config.rounds];
+        Thread a = factory.newThread(() -> {
+            try {
+                for (int i = 0; i < total; i++) {
+                    long startTime = System.nanoTime();
+                    link.ping();
+                    long elapsedTime = System.nanoTime() - startTime;
+                    if (i >= config.warmup) {
+                        roundTrips[i - config.warmup] = elapsedTime;
                     }
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    logger.log(Level.SEVERE, "Thread was interrupted", e);
                 }
-            });
-
-            startTime = System.nanoTime();
-            t1.start();
-            t2.start();
-
+            } catch (InterruptedException e) {
+                logger.log(Level.SEVERE, "Thread was interrupted", e);
+            }
+        });
+        Thread b = factory.newThread(() -> {
             try {
-                t1.join();
-                t2.join();
+                for (int i = 0; i < total; i++) {
+                    link.pong();
+                }
             } catch (InterruptedException e) {
-                logger.log(Level.SEVERE, "An error occurred while joining the threads", e);
+                logger.log(Level.SEVERE, "Thread was interrupted", e);
             }
+        });
+        link.bind(a, b);
+        b.start();
+        a.start();
+        a.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        b.join(TimeUnit.SECONDS.toMillis(1));
+        if (a.isAlive() || b.isAlive()) {
+            // Beide Threads beenden, bevor die nächste Messung startet, sonst verfälschen sie diese
+            a.interrupt();
+            b.interrupt();
+            a.join();
+            b.join();
+            return null;
+        }
+        long[] switches = new long[roundTrips.length];
+        for (int i = 0; i < roundTrips.length; i++) {
+            switches[i] = roundTrips[i] / 2;
+        }
+        return switches;
+    }
 
-            endTime = System.nanoTime();
-            totalTime += (endTime - startTime);  // Die gemessene Zeit des gesamten Prozesses
+    /*
+     * Startet den Benchmark erneut in einer über taskset auf die angegebenen CPUs beschränkten JVM.
+     * Die Kind-JVM erhält dieselben Argumente ohne --pin und schreibt direkt auf die Konsole.
+     */
+    private static int runPinned(String cpus, String[] args) {
+        List<String> command = new ArrayList<>();
+        command.add("taskset");
+        command.add("-c");
+        command.add(cpus);
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ContextSwitchTest.class.getName());
+        for (String arg : args) {
+            if (!arg.startsWith("--pin=")) {
+                command.add(arg);
+            }
+        }
+        System.out.println("Starte gepinnte JVM auf CPU(s) " + cpus + "...");
+        try {
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            return process.waitFor();
+        } catch (IOException e) {
+            System.err.println("taskset konnte nicht gestartet werden: " + e.getMessage());
+            logger.log(Level.SEVERE, "An error occurred while starting the pinned JVM", e);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
         }
+    }
 
-        // Berechnen der durchschnittlichen Zeit für den Kontextwechsel
-        System.out.println("Durchschnittliche Kontextwechselzeit: " + totalTime / iterations + " ns");
+    // Plattform-Threads direkt, virtuelle Threads per Reflection, da sie erst ab Java 21 zur Verfügung stehen
+    private static ThreadFactory threadFactory(ThreadKind kind) {
+        if (kind == ThreadKind.PLATFORM) {
+            return task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static String label(ThreadKind kind) {
+        return kind == ThreadKind.PLATFORM ? "Plattform" : "Virtuell";
+    }
+
+    // Perzentil eines sortierten Arrays (Nearest Rank)
+    private static long percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+    static Config parseArgs(String[] args) {
+        Config config = new Config();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Unbekanntes Argument: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "rounds":
+                    config.rounds = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    config.warmup = Integer.parseInt(value);
+                    break;
+                case "handoffs":
+                    config.handoffs = EnumSet.noneOf(Handoff.class);
+                    for (String handoff : value.split(",")) {
+                        config.handoffs.add(Handoff.valueOf(handoff.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "threads":
+                    config.threadKinds = EnumSet.noneOf(ThreadKind.class);
+                    for (String kind : value.split(",")) {
+                        config.threadKinds.add(ThreadKind.valueOf(kind.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "pin":
+                    config.pin = value;
+                    break;
+                case "csv":
+                    config.csv = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unbekannte Option: --" + name);
+            }
+        }
+        if (config.rounds <= 0 || config.warmup < 0) {
+            throw new IllegalArgumentException("--rounds muss positiv und --warmup nicht negativ sein");
+        }
+        return config;
     }
 }
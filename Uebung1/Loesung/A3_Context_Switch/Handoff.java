@@ -0,0 +1,193 @@
+package A3_Context_Switch;
+
+import java.util.concurrent.Exchanger;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The mechanisms used by ContextSwitchTest to bounce a token between two threads. Every mechanism
+ * creates a Link; thread A calls ping (hand the token over and wait until it comes back), thread B
+ * calls pong (wait for the token and hand it back). One ping is therefore two handoffs.
+ */
+enum Handoff {
+    PARK("LockSupport.park/unpark") {
+        @Override
+        Link newLink() {
+            return new Link() {
+                private volatile int turn;
+                private volatile Thread a;
+                private volatile Thread b;
+
+                @Override
+                void bind(Thread a, Thread b) {
+                    this.a = a;
+                    this.b = b;
+                }
+
+                @Override
+                void ping() throws InterruptedException {
+                    turn = 1;
+                    LockSupport.unpark(b);
+                    while (turn != 0) {
+                        park();
+                    }
+                }
+
+                @Override
+                void pong() throws InterruptedException {
+                    while (turn != 1) {
+                        park();
+                    }
+                    turn = 0;
+                    LockSupport.unpark(a);
+                }
+
+                // park kehrt bei gesetztem Interrupt-Flag sofort zurück, daher das Flag selbst prüfen
+                private void park() throws InterruptedException {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            };
+        }
+    },
+    SYNCHRONOUS_QUEUE("SynchronousQueue") {
+        @Override
+        Link newLink() {
+            return new Link() {
+                private final SynchronousQueue<Integer> toB = new SynchronousQueue<>();
+                private final SynchronousQueue<Integer> toA = new SynchronousQueue<>();
+
+                @Override
+                void ping() throws InterruptedException {
+                    toB.put(TOKEN);
+                    toA.take();
+                }
+
+                @Override
+                void pong() throws InterruptedException {
+                    toA.put(toB.take());
+                }
+            };
+        }
+    },
+    EXCHANGER("Exchanger") {
+        @Override
+        Link newLink() {
+            // Jeder Austausch ist ein Treffpunkt beider Threads; zwei davon entsprechen einem Hin und Her
+            return new Link() {
+                private final Exchanger<Integer> exchanger = new Exchanger<>();
+
+                @Override
+                void ping() throws InterruptedException {
+                    exchanger.exchange(TOKEN);
+                    exchanger.exchange(TOKEN);
+                }
+
+                @Override
+                void pong() throws InterruptedException {
+                    exchanger.exchange(TOKEN);
+                    exchanger.exchange(TOKEN);
+                }
+            };
+        }
+    },
+    SPIN("volatile busy-spin") {
+        @Override
+        Link newLink() {
+            return new Link() {
+                private volatile int turn;
+
+                @Override
+                void ping() throws InterruptedException {
+                    turn = 1;
+                    await(0);
+                }
+
+                @Override
+                void pong() throws InterruptedException {
+                    await(1);
+                    turn = 0;
+                }
+
+                // Aktives Warten; nach SPIN_LIMIT Durchläufen wird die CPU abgegeben, damit auch auf einem
+                // einzelnen Kern bzw. mit virtuellen Threads (keine Verdrängung) der andere Thread laufen kann
+                private void await(int expected) throws InterruptedException {
+                    int spins = 0;
+                    while (turn != expected) {
+                        if (++spins < SPIN_LIMIT) {
+                            Thread.onSpinWait();
+                        } else {
+                            // Beim Abbruch nach Zeitüberschreitung nicht endlos weiter die CPU belegen
+                            if (Thread.interrupted()) {
+                                throw new InterruptedException();
+                            }
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+        }
+    },
+    WAIT_NOTIFY("Object.wait/notify") {
+        @Override
+        Link newLink() {
+            return new Link() {
+                private final Object lock = new Object();
+                private int turn;
+
+                @Override
+                void ping() throws InterruptedException {
+                    synchronized (lock) {
+                        turn = 1;
+                        lock.notify();
+                        while (turn != 0) {
+                            lock.wait();
+                        }
+                    }
+                }
+
+                @Override
+                void pong() throws InterruptedException {
+                    synchronized (lock) {
+                        while (turn != 1) {
+                            lock.wait();
+                        }
+                        turn = 0;
+                        lock.notify();
+                    }
+                }
+            };
+        }
+    };
+
+    private static final Integer TOKEN = 1;
+    // Auf einem einzelnen Prozessor kann der Partner während des Wartens nie laufen, also sofort abgeben
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 16 : 1;
+
+    private final String label;
+
+    Handoff(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    abstract Link newLink();
+
+    /**
+     * One ping-pong connection between thread A and thread B.
+     */
+    abstract static class Link {
+        // Wird vor dem Start der Threads aufgerufen; nur für Mechanismen nötig, die den Partner kennen müssen
+        void bind(Thread a, Thread b) {
+        }
+
+        abstract void ping() throws InterruptedException;
+
+        abstract void pong() throws InterruptedException;
+    }
+}
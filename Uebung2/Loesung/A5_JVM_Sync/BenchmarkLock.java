@@ -0,0 +1,11 @@
+package A5_JVM_Sync;
+
+/**
+ * Minimal lock interface shared by the spinlocks in SpinLocks and the adapters for the locks of
+ * java.util.concurrent, so that SyncBenchmark can measure all of them with the same loop.
+ */
+interface BenchmarkLock {
+    void lock();
+
+    void unlock();
+}
@@ -0,0 +1,169 @@
+package A5_JVM_Sync;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inter-process round-trip latency between this JVM and a child JVM that echoes every message, once over
+ * a Unix-domain SocketChannel and once over a memory-mapped SharedRing. Like the ZeroMQ experiments,
+ * the client sends "msg" and waits for "ack"; one sample is the time of one such round trip.
+ */
+final class IpcBenchmark {
+    // Zeile, mit der der Kindprozess meldet, dass er Nachrichten annimmt
+    private static final String READY = "BEREIT";
+    private static final byte[] MESSAGE = "msg".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ACK = "ack".getBytes(StandardCharsets.US_ASCII);
+
+    enum Transport { UNIX_SOCKET, SHARED_RING }
+
+    private IpcBenchmark() {
+    }
+
+    /**
+     * Starts the echo server and returns the latencies of the timed round trips in milliseconds.
+     */
+    static double[] measure(Transport transport, int warmup, int messages) throws IOException, InterruptedException {
+        Path path = transport == Transport.UNIX_SOCKET
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "sync-bench-" + ProcessHandle.current().pid() + ".sock")
+                : sharedMemoryDir().resolve("sync-bench-" + ProcessHandle.current().pid() + ".ring");
+        Files.deleteIfExists(path);
+        double[] latencies = new double[messages];
+        Process server = null;
+        try {
+            if (transport == Transport.SHARED_RING) {
+                // Die Datei muss leer angelegt sein, bevor der Server sie abbildet
+                SharedRing ring = SharedRing.open(path, true);
+                server = startServer(transport, path);
+                byte[] reply = new byte[SharedRing.MAX_MESSAGE];
+                for (int i = 0; i < warmup + messages; i++) {
+                    long startTime = System.nanoTime();
+                    ring.send(MESSAGE, MESSAGE.length);
+                    ring.receive(reply);
+                    long elapsedTime = System.nanoTime() - startTime;
+                    if (i >= warmup) {
+                        latencies[i - warmup] = elapsedTime / 1e6;
+                    }
+                }
+                // Eine leere Nachricht beendet den Server
+                ring.send(MESSAGE, 0);
+            } else {
+                server = startServer(transport, path);
+                try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(path))) {
+                    ByteBuffer request = ByteBuffer.allocateDirect(MESSAGE.length);
+                    ByteBuffer reply = ByteBuffer.allocateDirect(ACK.length);
+                    for (int i = 0; i < warmup + messages; i++) {
+                        long startTime = System.nanoTime();
+                        request.clear();
+                        request.put(MESSAGE).flip();
+                        writeFully(channel, request);
+                        reply.clear();
+                        readFully(channel, reply);
+                        long elapsedTime = System.nanoTime() - startTime;
+                        if (i >= warmup) {
+                            latencies[i - warmup] = elapsedTime / 1e6;
+                        }
+                    }
+                }
+            }
+            if (!server.waitFor(10, TimeUnit.SECONDS)) {
+                server.destroyForcibly();
+            }
+            return latencies;
+        } finally {
+            if (server != null && server.isAlive()) {
+                server.destroyForcibly();
+            }
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Runs the echo server in the child JVM until the client disconnects or sends an empty message.
+     */
+    static void serve(Transport transport, Path path) throws IOException {
+        if (transport == Transport.SHARED_RING) {
+            SharedRing ring = SharedRing.open(path, false);
+            ready();
+            byte[] message = new byte[SharedRing.MAX_MESSAGE];
+            while (ring.receive(message) > 0) {
+                ring.send(ACK, ACK.length);
+            }
+            return;
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            ready();
+            try (SocketChannel channel = server.accept()) {
+                ByteBuffer request = ByteBuffer.allocateDirect(MESSAGE.length);
+                ByteBuffer reply = ByteBuffer.allocateDirect(ACK.length);
+                while (true) {
+                    request.clear();
+                    try {
+                        readFully(channel, request);
+                    } catch (EOFException e) {
+                        return;
+                    }
+                    reply.clear();
+                    reply.put(ACK).flip();
+                    writeFully(channel, reply);
+                }
+            }
+        }
+    }
+
+    private static void ready() {
+        System.out.println(READY);
+        System.out.flush();
+    }
+
+    // Startet dieselbe Klasse in einer neuen JVM als Server und wartet auf dessen Bereitschaftsmeldung
+    private static Process startServer(Transport transport, Path path) throws IOException {
+        List<String> command = List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                SyncBenchmark.class.getName(),
+                "--serve=" + transport.name(),
+                "--path=" + path);
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (!READY.equals(line)) {
+            process.destroyForcibly();
+            throw new IOException("Server konnte nicht gestartet werden: " + line);
+        }
+        return process;
+    }
+
+    // Gemeinsamer Speicher unter Linux, sonst das temporäre Verzeichnis
+    private static Path sharedMemoryDir() {
+        Path shm = Paths.get("/dev/shm");
+        return Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+}
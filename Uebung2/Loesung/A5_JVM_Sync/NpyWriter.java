@@ -0,0 +1,40 @@
+package A5_JVM_Sync;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a one-dimensional double array in the NumPy .npy format (version 1.0, little-endian float64),
+ * i.e. the same layout that np.save produces for the latency lists of the Python experiments.
+ */
+final class NpyWriter {
+    private static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0};
+
+    private NpyWriter() {
+    }
+
+    static void write(Path file, double[] values) throws IOException {
+        StringBuilder header = new StringBuilder("{'descr': '<f8', 'fortran_order': False, 'shape': (")
+                .append(values.length).append(",), }");
+        // Magic, Version, Headerlänge und Header werden mit Leerzeichen auf ein Vielfaches von 64 aufgefüllt
+        int unpadded = MAGIC.length + 2 + header.length() + 1;
+        int padding = (64 - unpadded % 64) % 64;
+        for (int i = 0; i < padding; i++) {
+            header.append(' ');
+        }
+        header.append('\n');
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length + 2 + headerBytes.length + values.length * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).putShort((short) headerBytes.length).put(headerBytes);
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, buffer.array());
+    }
+}
@@ -0,0 +1,79 @@
+package A5_JVM_Sync;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Two single-producer/single-consumer ring buffers in a memory-mapped file, one per direction, for
+ * message exchange between two processes. Head and tail counters are accessed through a VarHandle
+ * view of the mapping with acquire/release semantics; waiting is done by spinning, since there is no
+ * way to block on shared memory from Java.
+ *
+ * Layout per ring: head (offset 0) and tail (offset 64) on separate cache lines, followed by SLOTS slots
+ * of SLOT_SIZE bytes (int length + payload).
+ */
+final class SharedRing {
+    static final int SLOTS = 256;
+    static final int SLOT_SIZE = 64;
+    static final int MAX_MESSAGE = SLOT_SIZE - Integer.BYTES;
+    private static final int HEADER = 128;
+    private static final int RING_SIZE = HEADER + SLOTS * SLOT_SIZE;
+    static final long FILE_SIZE = 2L * RING_SIZE;
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final int sendBase;
+    private final int receiveBase;
+
+    private SharedRing(MappedByteBuffer buffer, int sendBase, int receiveBase) {
+        this.buffer = buffer;
+        this.sendBase = sendBase;
+        this.receiveBase = receiveBase;
+    }
+
+    /**
+     * Maps the file. The client sends on the first ring and receives on the second, the server the
+     * other way round. The client creates the file before starting the server; a new file is
+     * zero-filled, i.e. both rings are empty. The mapping is released by the garbage collector.
+     */
+    static SharedRing open(Path file, boolean client) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        }
+        return client ? new SharedRing(buffer, 0, RING_SIZE) : new SharedRing(buffer, RING_SIZE, 0);
+    }
+
+    void send(byte[] message, int length) {
+        long tail = (long) LONGS.getOpaque(buffer, sendBase + 64);
+        for (int spins = 0; tail - (long) LONGS.getAcquire(buffer, sendBase) >= SLOTS; ) {
+            spins = SpinLocks.pause(spins);
+        }
+        int slot = sendBase + HEADER + (int) (tail % SLOTS) * SLOT_SIZE;
+        buffer.putInt(slot, length);
+        buffer.put(slot + Integer.BYTES, message, 0, length);
+        // Erst nach dem Inhalt des Slots wird der neue Tail sichtbar
+        LONGS.setRelease(buffer, sendBase + 64, tail + 1);
+    }
+
+    int receive(byte[] message) {
+        long head = (long) LONGS.getOpaque(buffer, receiveBase);
+        for (int spins = 0; (long) LONGS.getAcquire(buffer, receiveBase + 64) == head; ) {
+            spins = SpinLocks.pause(spins);
+        }
+        int slot = receiveBase + HEADER + (int) (head % SLOTS) * SLOT_SIZE;
+        int length = buffer.getInt(slot);
+        buffer.get(slot + Integer.BYTES, message, 0, length);
+        LONGS.setRelease(buffer, receiveBase, head + 1);
+        return length;
+    }
+}
@@ -0,0 +1,198 @@
+package A5_JVM_Sync;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Spinlock implementations on top of VarHandle: test-and-set, test-and-test-and-set, ticket lock and
+ * the queue locks of Mellor-Crummey/Scott (MCS) and Craig/Landin/Hagersten (CLH).
+ * All of them wait actively; after a spin budget they yield the CPU, so that they also make progress
+ * when the lock holder has been preempted on a machine with few cores.
+ */
+final class SpinLocks {
+    // Auf einem einzelnen Prozessor kann der Halter während des Wartens nie laufen, also sofort abgeben
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 1;
+
+    private SpinLocks() {
+    }
+
+    // Eine Warterunde: zuerst aktiv warten, nach SPIN_LIMIT Runden die CPU abgeben
+    static int pause(int spins) {
+        if (spins < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+        return spins + 1;
+    }
+
+    /**
+     * Test-and-set: every attempt is a compare-and-set on the shared word.
+     */
+    static final class TasLock implements BenchmarkLock {
+        private static final VarHandle STATE = findVarHandle(TasLock.class, "state", int.class);
+
+        @SuppressWarnings("unused")
+        private volatile int state;
+
+        @Override
+        public void lock() {
+            for (int spins = 0; !STATE.compareAndSet(this, 0, 1); ) {
+                spins = pause(spins);
+            }
+        }
+
+        @Override
+        public void unlock() {
+            STATE.setRelease(this, 0);
+        }
+    }
+
+    /**
+     * Test-and-test-and-set: waits by reading and only tries the compare-and-set once the lock looks free,
+     * so that the cache line is not written while it is held.
+     */
+    static final class TtasLock implements BenchmarkLock {
+        private static final VarHandle STATE = findVarHandle(TtasLock.class, "state", int.class);
+
+        @SuppressWarnings("unused")
+        private volatile int state;
+
+        @Override
+        public void lock() {
+            int spins = 0;
+            while (true) {
+                while ((int) STATE.getAcquire(this) != 0) {
+                    spins = pause(spins);
+                }
+                if (STATE.compareAndSet(this, 0, 1)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void unlock() {
+            STATE.setRelease(this, 0);
+        }
+    }
+
+    /**
+     * Ticket lock: threads draw a number and are served in FIFO order.
+     */
+    static final class TicketLock implements BenchmarkLock {
+        private static final VarHandle NEXT = findVarHandle(TicketLock.class, "next", int.class);
+        private static final VarHandle SERVING = findVarHandle(TicketLock.class, "serving", int.class);
+
+        @SuppressWarnings("unused")
+        private volatile int next;
+        @SuppressWarnings("unused")
+        private volatile int serving;
+
+        @Override
+        public void lock() {
+            int ticket = (int) NEXT.getAndAdd(this, 1);
+            for (int spins = 0; (int) SERVING.getAcquire(this) != ticket; ) {
+                spins = pause(spins);
+            }
+        }
+
+        @Override
+        public void unlock() {
+            // Nur der Halter schreibt serving, daher genügt Lesen und Schreiben ohne CAS
+            SERVING.setRelease(this, (int) SERVING.getOpaque(this) + 1);
+        }
+    }
+
+    /**
+     * MCS queue lock: every thread spins on its own queue node; the holder hands the lock to its successor.
+     */
+    static final class McsLock implements BenchmarkLock {
+        private static final VarHandle TAIL = findVarHandle(McsLock.class, "tail", Node.class);
+        private static final VarHandle LOCKED = findVarHandle(Node.class, "locked", boolean.class);
+        private static final VarHandle NEXT = findVarHandle(Node.class, "next", Node.class);
+
+        @SuppressWarnings("unused")
+        private volatile Node tail;
+        private final ThreadLocal<Node> myNode = ThreadLocal.withInitial(Node::new);
+
+        static final class Node {
+            volatile boolean locked;
+            volatile Node next;
+        }
+
+        @Override
+        public void lock() {
+            Node node = myNode.get();
+            NEXT.setOpaque(node, (Node) null);
+            LOCKED.setOpaque(node, true);
+            Node predecessor = (Node) TAIL.getAndSet(this, node);
+            if (predecessor != null) {
+                NEXT.setRelease(predecessor, node);
+                for (int spins = 0; (boolean) LOCKED.getAcquire(node); ) {
+                    spins = pause(spins);
+                }
+            }
+        }
+
+        @Override
+        public void unlock() {
+            Node node = myNode.get();
+            Node successor = (Node) NEXT.getAcquire(node);
+            if (successor == null) {
+                if (TAIL.compareAndSet(this, node, null)) {
+                    return;
+                }
+                // Ein Nachfolger hat sich gerade eingereiht, aber noch nicht verlinkt
+                for (int spins = 0; (successor = (Node) NEXT.getAcquire(node)) == null; ) {
+                    spins = pause(spins);
+                }
+            }
+            LOCKED.setRelease(successor, false);
+        }
+    }
+
+    /**
+     * CLH queue lock: every thread spins on the node of its predecessor and afterwards reuses that node.
+     */
+    static final class ClhLock implements BenchmarkLock {
+        private static final VarHandle TAIL = findVarHandle(ClhLock.class, "tail", Node.class);
+        private static final VarHandle LOCKED = findVarHandle(Node.class, "locked", boolean.class);
+
+        @SuppressWarnings("unused")
+        private volatile Node tail = new Node();
+        private final ThreadLocal<Node> myNode = ThreadLocal.withInitial(Node::new);
+        private final ThreadLocal<Node> myPredecessor = new ThreadLocal<>();
+
+        static final class Node {
+            volatile boolean locked;
+        }
+
+        @Override
+        public void lock() {
+            Node node = myNode.get();
+            LOCKED.setOpaque(node, true);
+            Node predecessor = (Node) TAIL.getAndSet(this, node);
+            myPredecessor.set(predecessor);
+            for (int spins = 0; (boolean) LOCKED.getAcquire(predecessor); ) {
+                spins = pause(spins);
+            }
+        }
+
+        @Override
+        public void unlock() {
+            Node node = myNode.get();
+            LOCKED.setRelease(node, false);
+            // Der eigene Knoten gehört jetzt dem Nachfolger; beim nächsten Mal den des Vorgängers verwenden
+            myNode.set(myPredecessor.get());
+        }
+    }
+
+    private static VarHandle findVarHandle(Class<?> owner, String name, Class<?> type) {
+        try {
+            return MethodHandles.lookup().findVarHandle(owner, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
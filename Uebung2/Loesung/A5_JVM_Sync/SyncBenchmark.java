@@ -0,0 +1,254 @@
+package A5_JVM_Sync;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JVM counterpart to the Python experiments a1 (spinlock), a2 (semaphore) and a3 (ZeroMQ in-process and
+ * inter-process). It measures
+ * - the time to acquire a lock under contention of several threads for the spinlocks in SpinLocks
+ *   (TAS, TTAS, ticket, MCS, CLH), java.util.concurrent.Semaphore and ReentrantLock, and
+ * - the round-trip latency to a child JVM over a Unix-domain SocketChannel and a memory-mapped
+ *   shared ring buffer (see IpcBenchmark).
+ *
+ * Every series is written in milliseconds as results_jvm_*.npy in the same layout as the Python results,
+ * so that plot_results.py shows both side by side.
+ *
+ * Usage (from the repository root): java A5_JVM_Sync.SyncBenchmark [--threads=2] [--iterations=10000]
+ *        [--warmup=10000] [--messages=10000] [--locks=TAS,TTAS,TICKET,MCS,CLH,SEMAPHORE,REENTRANT_LOCK]
+ *        [--ipc=UNIX_SOCKET,SHARED_RING|none] [--results=Uebung2/Loesung/results]
+ */
+public class SyncBenchmark {
+    private static final Logger logger = Logger.getLogger(SyncBenchmark.class.getName());
+
+    enum LockKind {
+        TAS("spinlock_tas", SpinLocks.TasLock::new),
+        TTAS("spinlock_ttas", SpinLocks.TtasLock::new),
+        TICKET("spinlock_ticket", SpinLocks.TicketLock::new),
+        MCS("spinlock_mcs", SpinLocks.McsLock::new),
+        CLH("spinlock_clh", SpinLocks.ClhLock::new),
+        SEMAPHORE("semaphore", () -> {
+            Semaphore semaphore = new Semaphore(1);
+            return new BenchmarkLock() {
+                @Override
+                public void lock() {
+                    semaphore.acquireUninterruptibly();
+                }
+
+                @Override
+                public void unlock() {
+                    semaphore.release();
+                }
+            };
+        }),
+        REENTRANT_LOCK("reentrantlock", () -> {
+            ReentrantLock lock = new ReentrantLock();
+            return new BenchmarkLock() {
+                @Override
+                public void lock() {
+                    lock.lock();
+                }
+
+                @Override
+                public void unlock() {
+                    lock.unlock();
+                }
+            };
+        });
+
+        final String fileName;
+        final Supplier<BenchmarkLock> factory;
+
+        LockKind(String name, Supplier<BenchmarkLock> factory) {
+            this.fileName = "results_jvm_" + name + ".npy";
+            this.factory = factory;
+        }
+    }
+
+    // Einstellungen aus der Kommandozeile
+    static final class Config {
+        int threads = 2;
+        int iterations = 10_000;
+        int warmup = 10_000;
+        int messages = 10_000;
+        EnumSet<LockKind> locks = EnumSet.allOf(LockKind.class);
+        EnumSet<IpcBenchmark.Transport> transports = EnumSet.allOf(IpcBenchmark.Transport.class);
+        Path results = Paths.get("Uebung2/Loesung/results");
+        // Nur im Kindprozess gesetzt: als Echo-Server für die IPC-Messung laufen
+        IpcBenchmark.Transport serve;
+        Path path;
+    }
+
+    // Wird nur unter dem jeweiligen Lock verändert; am Ende muss er der Anzahl der Durchläufe entsprechen
+    private static long counter;
+
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Aufruf: java A5_JVM_Sync.SyncBenchmark [--threads=2] [--iterations=10000]"
+                    + " [--warmup=10000] [--messages=10000] [--locks=TAS,TTAS,TICKET,MCS,CLH,SEMAPHORE,REENTRANT_LOCK]"
+                    + " [--ipc=UNIX_SOCKET,SHARED_RING|none] [--results=Uebung2/Loesung/results]");
+            System.exit(1);
+            return;
+        }
+        try {
+            if (config.serve != null) {
+                IpcBenchmark.serve(config.serve, config.path);
+                return;
+            }
+            for (LockKind kind : config.locks) {
+                double[] latencies = measureLock(kind, config);
+                report(kind.name(), config.results.resolve(kind.fileName), latencies);
+            }
+            for (IpcBenchmark.Transport transport : config.transports) {
+                double[] latencies = IpcBenchmark.measure(transport, config.warmup, config.messages);
+                String fileName = "results_jvm_ipc_" + transport.name().toLowerCase(Locale.ROOT) + ".npy";
+                report(transport.name(), config.results.resolve(fileName), latencies);
+            }
+        } catch (IOException e) {
+            System.err.println("Fehler bei der Messung: " + e.getMessage());
+            logger.log(Level.SEVERE, "An error occurred while running the benchmark", e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.SEVERE, "Thread was interrupted", e);
+        }
+    }
+
+    /*
+     * Alle Threads erwerben den Lock abwechselnd; gemessen wird die Zeit von lock() bis zum Erwerb.
+     * Liefert die Latenzen aller Threads in Millisekunden, ohne die Aufwärmdurchläufe.
+     */
+    static double[] measureLock(LockKind kind, Config config) throws InterruptedException {
+        BenchmarkLock lock = kind.factory.get();
+        double[] latencies = new double[config.threads * config.iterations];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[config.threads];
+        counter = 0;
+        for (int t = 0; t < config.threads; t++) {
+            int offset = t * config.iterations;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    logger.log(Level.SEVERE, "Thread was interrupted", e);
+                    return;
+                }
+                for (int i = 0; i < config.warmup + config.iterations; i++) {
+                    long startTime = System.nanoTime();
+                    lock.lock();
+                    long elapsedTime = System.nanoTime() - startTime;
+                    try {
+                        counter++;
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (i >= config.warmup) {
+                        latencies[offset + i - config.warmup] = elapsedTime / 1e6;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long expected = (long) config.threads * (config.warmup + config.iterations);
+        if (counter != expected) {
+            System.err.println("Wechselseitiger Ausschluss verletzt bei " + kind + ": " + counter + " statt " + expected);
+        }
+        return latencies;
+    }
+
+    // Gibt Mittelwert, Standardabweichung und 95%-Konfidenzintervall wie die Python-Skripte aus und speichert die Werte
+    private static void report(String name, Path file, double[] latencies) throws IOException {
+        NpyWriter.write(file, latencies);
+        int n = latencies.length;
+        double mean = 0;
+        for (double latency : latencies) {
+            mean += latency;
+        }
+        mean /= n;
+        double squares = 0;
+        for (double latency : latencies) {
+            squares += (latency - mean) * (latency - mean);
+        }
+        double stdDev = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+        // Für die hier üblichen n >= 1000 weicht der t-Wert kaum von 1,96 ab
+        double ciMargin = 1.96 * stdDev / Math.sqrt(n);
+        System.out.println(name + " -> " + file);
+        System.out.printf(Locale.ROOT, "Mean Latency: %.6f ms%n", mean);
+        System.out.printf(Locale.ROOT, "Standard Deviation: %.6f ms%n", stdDev);
+        System.out.printf(Locale.ROOT, "95%% Confidence Interval: [%.6f, %.6f] ms%n%n", mean - ciMargin, mean + ciMargin);
+    }
+
+    static Config parseArgs(String[] args) {
+        Config config = new Config();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Unbekanntes Argument: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "threads":
+                    config.threads = Integer.parseInt(value);
+                    break;
+                case "iterations":
+                    config.iterations = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    config.warmup = Integer.parseInt(value);
+                    break;
+                case "messages":
+                    config.messages = Integer.parseInt(value);
+                    break;
+                case "locks":
+                    config.locks = EnumSet.noneOf(LockKind.class);
+                    for (String lock : value.split(",")) {
+                        if (!lock.isBlank() && !lock.trim().equalsIgnoreCase("none")) {
+                            config.locks.add(LockKind.valueOf(lock.trim().toUpperCase(Locale.ROOT)));
+                        }
+                    }
+                    break;
+                case "ipc":
+                    config.transports = EnumSet.noneOf(IpcBenchmark.Transport.class);
+                    for (String transport : value.split(",")) {
+                        if (!transport.isBlank() && !transport.trim().equalsIgnoreCase("none")) {
+                            config.transports.add(IpcBenchmark.Transport.valueOf(transport.trim().toUpperCase(Locale.ROOT)));
+                        }
+                    }
+                    break;
+                case "results":
+                    config.results = Paths.get(value);
+                    break;
+                case "serve":
+                    config.serve = IpcBenchmark.Transport.valueOf(value);
+                    break;
+                case "path":
+                    config.path = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unbekannte Option: --" + name);
+            }
+        }
+        if (config.threads <= 0 || config.iterations <= 0 || config.messages <= 0 || config.warmup < 0) {
+            throw new IllegalArgumentException("--threads, --iterations und --messages müssen positiv sein");
+        }
+        return config;
+    }
+}
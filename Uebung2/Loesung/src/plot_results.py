@@ -15,44 +15,72 @@ file_order = [
     "results_docker.npy"
 ]
 
-# Listen zur Speicherung der Daten initialisieren
-methods = []
-means = []
-conf_intervals = []
-
-# Dateien in der gewünschten Reihenfolge verarbeiten
-for file_name in file_order:
-    file_path = os.path.join(results_dir, file_name)
-    if os.path.exists(file_path):  # Überprüfen, ob die Datei existiert
-        latency_results = np.load(file_path)
-        methods.append(file_name.replace('.npy', ''))  # Dateiname als Methodenlabel verwenden
-
-        # Mittelwert, Standardabweichung und 95 % Konfidenzintervall berechnen
-        mean_latency = np.mean(latency_results)
-        std_dev_latency = np.std(latency_results, ddof=1)
-        n = len(latency_results)
-        t_value = stats.t.ppf(0.975, df=n - 1)
-        ci_margin = t_value * (std_dev_latency / np.sqrt(n))
-
-        means.append(mean_latency)
-        conf_intervals.append(ci_margin)
+# Ergebnisse der JVM-Variante (A5_JVM_Sync.SyncBenchmark) im selben Format
+jvm_file_order = [
+    "results_jvm_spinlock_tas.npy",
+    "results_jvm_spinlock_ttas.npy",
+    "results_jvm_spinlock_ticket.npy",
+    "results_jvm_spinlock_mcs.npy",
+    "results_jvm_spinlock_clh.npy",
+    "results_jvm_semaphore.npy",
+    "results_jvm_reentrantlock.npy",
+    "results_jvm_ipc_unix_socket.npy",
+    "results_jvm_ipc_shared_ring.npy"
+]
+
+
+# Lädt die vorhandenen Dateien und berechnet Mittelwert und 95 % Konfidenzintervall je Datei
+def load_results(file_names):
+    methods = []
+    means = []
+    conf_intervals = []
+    for file_name in file_names:
+        file_path = os.path.join(results_dir, file_name)
+        if os.path.exists(file_path):  # Überprüfen, ob die Datei existiert
+            latency_results = np.load(file_path)
+            methods.append(file_name.replace('.npy', ''))  # Dateiname als Methodenlabel verwenden
+
+            # Mittelwert, Standardabweichung und 95 % Konfidenzintervall berechnen
+            mean_latency = np.mean(latency_results)
+            std_dev_latency = np.std(latency_results, ddof=1)
+            n = len(latency_results)
+            t_value = stats.t.ppf(0.975, df=n - 1)
+            ci_margin = t_value * (std_dev_latency / np.sqrt(n))
+
+            means.append(mean_latency)
+            conf_intervals.append(ci_margin)
+    return methods, means, conf_intervals
 
-# Liniendiagramm mit Konfidenzbändern erstellen
-plt.figure(figsize=(10, 6))
 
-x_positions = np.arange(len(methods))
-# Linien zeichnen, die die Mittelwertlatenzen verbinden, mit benutzerdefinierter Linienbreite
-plt.plot(x_positions, means, color='blue', marker='o', label='Mean Latency', linewidth=1, markersize=5)
+# Zeichnet eine Messreihe als Linie mit Konfidenzbändern ab der Position start
+def plot_series(methods, means, conf_intervals, start, color, label):
+    x_positions = np.arange(start, start + len(methods))
+    # Linien zeichnen, die die Mittelwertlatenzen verbinden, mit benutzerdefinierter Linienbreite
+    plt.plot(x_positions, means, color=color, marker='o', label=label, linewidth=1, markersize=5)
+
+    # Konfidenzbänder hinzufügen
+    for i, (mean, ci) in enumerate(zip(means, conf_intervals)):
+        plt.fill_between([x_positions[i] - 0.2, x_positions[i] + 0.2],
+                         [mean - ci, mean - ci],
+                         [mean + ci, mean + ci],
+                         color=color, alpha=0.2, label=f'95% CI ({label})' if i == 0 else "")
+
+
+python_results = load_results(file_order)
+jvm_results = load_results(jvm_file_order)
+methods = python_results[0] + jvm_results[0]
+
+# Liniendiagramm mit Konfidenzbändern erstellen
+plt.figure(figsize=(12, 6) if jvm_results[0] else (10, 6))
 
-# Konfidenzbänder hinzufügen
-for i, (mean, ci) in enumerate(zip(means, conf_intervals)):
-    plt.fill_between([x_positions[i] - 0.2, x_positions[i] + 0.2],
-                     [mean - ci, mean - ci],
-                     [mean + ci, mean + ci],
-                     color='blue', alpha=0.2, label='95% CI' if i == 0 else "")
+plot_series(*python_results, 0, 'blue', 'Mean Latency (Python)' if jvm_results[0] else 'Mean Latency')
+if jvm_results[0]:
+    plot_series(*jvm_results, len(python_results[0]), 'orange', 'Mean Latency (JVM)')
+    # Die JVM-Latenzen liegen im Mikrosekundenbereich, daher logarithmische Achse
+    plt.yscale('log')
 
 # Diagramm anpassen
-plt.xticks(x_positions, methods, rotation=45)
+plt.xticks(np.arange(len(methods)), methods, rotation=45, ha='right')
 plt.title('Latenztrends mit Konfidenzbändern (Liniendiagramm)')
 plt.xlabel('IPC-Methode')
 plt.ylabel('Latenz (ms)')
@@ -1,7 +1,17 @@
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class BrainstormingTool {
@@ -9,7 +19,24 @@ public class BrainstormingTool {
     private static final Logger logger = Logger.getLogger(BrainstormingTool.class.getName());
 
     private static final String IDEAS_DIR = "ideas";
+    // Katalog und Suchindex liegen neben dem Ideen-Ordner: er ist das ZFS-Dataset der Transaktionen,
+    // und jede Aktualisierung der Indexdateien würde sonst die vorab erstellten Snapshots entwerten
+    private static final String INDEX_DIR = ".ideas_index";
     private static final Scanner scanner = new Scanner(System.in);
+    // Anzahl der Ideen pro Seite bei der Auswahl
+    private static final int PAGE_SIZE = 20;
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm").withZone(ZoneId.systemDefault());
+
+    // Katalog der Ideen; wird beim Start geladen und über den WatchService aktuell gehalten
+    private static IdeaIndex index;
+    // Volltextindex über die Ideen; erhält dieselben Aktualisierungen wie der Katalog
+    private static IdeaSearchIndex searchIndex;
+    // Mit anderen laufenden Instanzen geteilte Versionstabelle; null, falls sie nicht geöffnet werden konnte
+    private static SharedVersionTable versionTable;
+    // Erstellt Snapshots vorab und löscht die nicht mehr benötigten, damit sie sich über eine lange Sitzung nicht ansammeln
+    private static final SnapshotLifecycleService snapshots =
+            new SnapshotLifecycleService(new ZfsSnapshotBackend(), 1, 10, 1, TimeUnit.MINUTES);
 
     public static void main(String[] args) {
         // Zunächst sicherstellen, dass der Ordner für die Ideen existiert
@@ -22,13 +49,44 @@ public class BrainstormingTool {
                 return;
             }
         }
+        try {
+            versionTable = SharedVersionTable.open(transactionTablePath(dir));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Gemeinsame Versionstabelle konnte nicht geöffnet werden, Konflikte mit anderen Instanzen werden nur über Prüfsummen erkannt.");
+            logger.severe(e.getMessage());
+        }
+        Path indexDir = Paths.get(INDEX_DIR);
+        try {
+            Files.createDirectories(indexDir);
+        } catch (IOException e) {
+            System.err.println("Fehler beim Erstellen des Ordners '" + INDEX_DIR + "'.");
+            logger.severe(e.getMessage());
+            return;
+        }
+        snapshots.start();
+        index = new IdeaIndex(dir.toPath(), indexDir);
+        searchIndex = new IdeaSearchIndex(dir.toPath(), indexDir);
+        searchIndex.open();
+        index.addListener(searchIndex);
+        try {
+            index.open();
+        } catch (IOException e) {
+            System.err.println("Fehler beim Laden des Ideen-Index.");
+            logger.severe(e.getMessage());
+            return;
+        }
+        // Nur Ideen, die sich seit dem letzten Lauf geändert haben, werden neu indiziert
+        searchIndex.synchronize(index.entries());
         // Hauptmenü mit Benutzerauswahl über die Konsole
         while (true) {
+            // Meldungen der letzten Transaktion ausgeben, bevor das Menü erscheint
+            TransactionEventBus.shared().flush();
             System.out.println("\nBrainstorming Tool");
             System.out.println("1. Neue Idee anlegen");
             System.out.println("2. Ideen lesen");
             System.out.println("3. Idee kommentieren");
-            System.out.println("4. Beenden");
+            System.out.println("4. Ideen durchsuchen");
+            System.out.println("5. Beenden");
             System.out.print("Auswahl: ");
             int choice = scanner.nextInt();
             scanner.nextLine(); // Zeilenumbruch konsumieren
@@ -44,6 +102,10 @@ public class BrainstormingTool {
                     commentOnIdea();
                     break;
                 case 4:
+                    searchIdeas();
+                    break;
+                case 5:
+                    snapshots.close();
                     System.out.println("Programm beendet.");
                     System.exit(0);
                 default:
@@ -52,12 +114,25 @@ public class BrainstormingTool {
         }
     }
 
+    /*
+     * Die gemeinsame Versionstabelle darf nicht im Ideen-Ordner liegen: er ist das ZFS-Dataset, das
+     * ein Rollback zurücksetzt, und damit würden auch Versionen und Locks der Tabelle zurückgesetzt.
+     * Bevorzugt wird /dev/shm, sonst das temporäre Verzeichnis. Der Name hängt vom Ideen-Ordner ab,
+     * damit sich alle Instanzen auf demselben Ordner dieselbe Tabelle teilen.
+     */
+    private static Path transactionTablePath(File dir) {
+        String name = "brainstorming_" + Integer.toHexString(dir.getAbsolutePath().hashCode()) + ".transaction_table";
+        Path shm = Paths.get("/dev/shm");
+        Path parent = Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Paths.get(System.getProperty("java.io.tmpdir"));
+        return parent.resolve(name);
+    }
+
     private static void addNewIdea() {
         // Eindeutigen Dateinamen für die neue Idee generieren
         String filePath = IDEAS_DIR + "/idea_" + System.currentTimeMillis() + ".txt";
 
         // Transaktion starten und Datei registrieren
-        TransactionManager tm = new TransactionManager();
+        TransactionManager tm = newTransactionManager();
         tm.beginTransaction();
         // Datei erstellen falls nicht vorhanden
         try {
@@ -72,6 +147,7 @@ public class BrainstormingTool {
         tm.registerFile(filePath);
 
         // editor öffnen und Idee eingeben
+        TransactionEventBus.shared().flush();
         System.out.println("Bitte geben Sie Ihre Idee ein. Der Editor öffnet sich...");
         try {
             ProcessBuilder pb = new ProcessBuilder("nano", filePath);
@@ -85,33 +161,74 @@ public class BrainstormingTool {
             return;
         }
         // Commit der Transaktion
-        tm.commitTransaction();
+        if (!tm.commitTransaction()) {
+            TransactionEventBus.shared().flush();
+            System.out.println("Die Idee konnte wegen eines Konflikts nicht gespeichert werden.");
+        }
+        // Nicht auf das Ereignis des WatchService warten, damit die Idee sofort in der Liste steht
+        index.refresh(new File(filePath).getName());
     }
 
     /*
      * Liest eine vorhandene Idee aus einer Datei.
      */
     private static void readIdeas() {
-        File dir = new File(IDEAS_DIR);
-        File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
-        if (files == null || files.length == 0) {
-            System.out.println("Keine Ideen vorhanden.");
+        IdeaIndex.Entry selected = selectIdea("Bitte wählen Sie eine Idee aus");
+        if (selected != null) {
+            showIdea(selected);
+        }
+    }
+
+    /*
+     * Sucht Ideen, die alle eingegebenen Wörter enthalten, über den Volltextindex.
+     */
+    private static void searchIdeas() {
+        System.out.print("Suchbegriffe (Wort* für Wortanfänge): ");
+        String query = scanner.nextLine();
+        long start = System.nanoTime();
+        Set<String> names = searchIndex.search(query);
+        // Treffer in der Reihenfolge des Katalogs, damit die Nummern denen der Ideenliste entsprechen
+        List<Integer> positions = new ArrayList<>();
+        for (String name : names) {
+            int position = index.indexOf(name);
+            if (position >= 0) {
+                positions.add(position);
+            }
+        }
+        Collections.sort(positions);
+        long micros = (System.nanoTime() - start) / 1000;
+        if (positions.isEmpty()) {
+            System.out.println("Keine passenden Ideen gefunden (" + micros + " us).");
             return;
         }
-        System.out.println("Verfügbare Ideen:");
-        for (int i = 0; i < files.length; i++) {
-            System.out.println((i + 1) + ". " + files[i].getName());
+        System.out.println(positions.size() + " Treffer (" + micros + " us):");
+        for (int i = 0; i < Math.min(positions.size(), PAGE_SIZE); i++) {
+            System.out.println(describe(positions.get(i) + 1, index.get(positions.get(i))));
+        }
+        if (positions.size() > PAGE_SIZE) {
+            System.out.println("... und " + (positions.size() - PAGE_SIZE) + " weitere.");
+        }
+        System.out.print("Idee anzeigen (Nummer, Enter = zurück): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return;
         }
-        System.out.print("Bitte wählen Sie eine Idee aus: ");
-        int choice = scanner.nextInt();
-        scanner.nextLine();
-        if (choice < 1 || choice > files.length) {
+        int choice;
+        try {
+            choice = Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            choice = 0;
+        }
+        if (choice < 1 || choice > index.size()) {
             System.out.println("Ungültige Auswahl.");
             return;
         }
-        File selected = files[choice - 1];
+        showIdea(index.get(choice - 1));
+    }
+
+    private static void showIdea(IdeaIndex.Entry selected) {
         try {
-            List<String> lines = java.nio.file.Files.readAllLines(selected.toPath());
+            List<String> lines = Files.readAllLines(Paths.get(IDEAS_DIR, selected.getName()));
             System.out.println("Inhalt der Datei " + selected.getName() + ":");
             for (String line : lines) {
                 System.out.println(line);
@@ -122,35 +239,37 @@ public class BrainstormingTool {
         }
     }
 
+    /*
+     * Transaktionen prüfen über die gemeinsame Versionstabelle, sodass auch Commits anderer laufender
+     * Instanzen erkannt werden, ohne die Dateien erneut zu hashen.
+     */
+    private static TransactionManager newTransactionManager() {
+        TransactionManager tm = new TransactionManager(snapshots);
+        if (versionTable != null) {
+            tm.setValidationMode(ValidationMode.VERSIONED);
+            tm.setVersionTable(versionTable);
+            tm.setPathLockTable(versionTable.pathLockTable());
+        }
+        return tm;
+    }
+
     /*
      * Ermöglicht es dem Benutzer, eine vorhandene Idee zu kommentieren.
      */
     private static void commentOnIdea() {
-        File dir = new File(IDEAS_DIR);
-        File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
-        if (files == null || files.length == 0) {
-            System.out.println("Keine Ideen vorhanden.");
+        IdeaIndex.Entry entry = selectIdea("Wählen Sie eine Idee zum Kommentieren");
+        if (entry == null) {
             return;
         }
-        System.out.println("Verfügbare Ideen:");
-        for (int i = 0; i < files.length; i++) {
-            System.out.println((i + 1) + ". " + files[i].getName());
-        }
-        System.out.print("Wählen Sie eine Idee zum Kommentieren: ");
-        int choice = scanner.nextInt();
-        scanner.nextLine();
-        if (choice < 1 || choice > files.length) {
-            System.out.println("Ungültige Auswahl.");
-            return;
-        }
-        File selected = files[choice - 1];
+        File selected = new File(IDEAS_DIR, entry.getName());
 
         // Beginne eine Transaktion für die Kommentierung
-        TransactionManager tm = new TransactionManager();
+        TransactionManager tm = newTransactionManager();
         tm.beginTransaction();
         tm.registerFile(selected.getAbsolutePath());
 
         // Editor öffnen und Kommentar hinzufügen
+        TransactionEventBus.shared().flush();
         System.out.println("Bitte fügen Sie Ihren Kommentar hinzu. Der Editor öffnet sich...");
         try {
             ProcessBuilder pb = new ProcessBuilder("nano", selected.getAbsolutePath());
@@ -163,6 +282,64 @@ public class BrainstormingTool {
             tm.rollbackTransaction();
             return;
         }
-        tm.commitTransaction();
+        if (!tm.commitTransaction()) {
+            TransactionEventBus.shared().flush();
+            System.out.println("Der Kommentar wurde wegen eines Konflikts verworfen.");
+        }
+        index.refresh(selected.getName());
+    }
+
+    /*
+     * Zeigt die Ideen seitenweise aus dem Index an und liefert die gewählte Idee, oder null bei
+     * Abbruch bzw. ungültiger Eingabe. Die Nummern gelten über alle Seiten hinweg.
+     */
+    private static IdeaIndex.Entry selectIdea(String prompt) {
+        int page = 0;
+        while (true) {
+            int count = index.size();
+            if (count == 0) {
+                System.out.println("Keine Ideen vorhanden.");
+                return null;
+            }
+            int pages = (count + PAGE_SIZE - 1) / PAGE_SIZE;
+            page = Math.min(page, pages - 1);
+            System.out.println("Verfügbare Ideen (Seite " + (page + 1) + " von " + pages + "):");
+            List<IdeaIndex.Entry> entries = index.page(page, PAGE_SIZE);
+            for (int i = 0; i < entries.size(); i++) {
+                System.out.println(describe(page * PAGE_SIZE + i + 1, entries.get(i)));
+            }
+            System.out.print(prompt + " (Nummer, n = nächste Seite, p = vorherige Seite, q = zurück): ");
+            String input = scanner.nextLine().trim();
+            if (input.equals("n")) {
+                page = Math.min(page + 1, pages - 1);
+                continue;
+            }
+            if (input.equals("p")) {
+                page = Math.max(page - 1, 0);
+                continue;
+            }
+            if (input.equals("q")) {
+                return null;
+            }
+            int choice;
+            try {
+                choice = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                choice = 0;
+            }
+            // Die Anzahl erneut abfragen, da der Index zwischenzeitlich kleiner geworden sein kann
+            if (choice < 1 || choice > index.size()) {
+                System.out.println("Ungültige Auswahl.");
+                return null;
+            }
+            return index.get(choice - 1);
+        }
+    }
+
+    // Eine Zeile der Ideenliste: Nummer, Titel, Dateiname, Datum und Größe
+    private static String describe(int number, IdeaIndex.Entry entry) {
+        String title = entry.getTitle().isEmpty() ? "(ohne Titel)" : entry.getTitle();
+        return number + ". " + title + " [" + entry.getName() + ", "
+                + DATE_FORMAT.format(Instant.ofEpochMilli(entry.getTimestamp())) + ", " + entry.getSize() + " Bytes]";
     }
 }
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fasst gleichzeitig eintreffende beginTransaction-Aufrufe zu einer gemeinsamen Snapshot-Epoche
+ * zusammen. Eine Epoche sammelt höchstens das konfigurierte Zeitfenster lang Teilnehmer (oder bis
+ * die maximale Batchgröße erreicht ist); danach wird ein einziger Snapshot für alle Teilnehmer
+ * erstellt. Der Snapshot wird per Referenzzählung freigegeben, sobald alle Transaktionen der
+ * Epoche abgeschlossen sind.
+ *
+ * Die Teilnehmer warten auf ein gemeinsames Future statt per Object.wait auf den Monitor des
+ * Backends, sodass auch tausende virtuelle Threads in einer Epoche keine Träger-Threads belegen.
+ *
+ * Da jeder Teilnehmer erst nach dem Erstellen des Snapshots weiterläuft, ist der gemeinsame
+ * Snapshot für jede Transaktion ein konsistenter Wiederherstellungspunkt. Sinnvoll ist das für
+ * Backends, die das gesamte Dataset sichern (ZFS); Backends mit Before-Images pro Transaktion
+ * sollten nicht zusammengefasst werden, da ein Rollback sonst auch die Dateien anderer Teilnehmer
+ * zurücksetzt.
+ */
+public class CoalescingSnapshotBackend implements SnapshotBackend {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(CoalescingSnapshotBackend.class.getName());
+
+    private final SnapshotBackend delegate;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    // Epoche, die gerade Teilnehmer sammelt (null, wenn keine offen ist)
+    private Epoch openEpoch;
+
+    /**
+     * @param window       maximale Wartezeit des ersten Teilnehmers auf weitere Teilnehmer
+     * @param maxBatchSize Anzahl Teilnehmer, ab der der Snapshot sofort erstellt wird
+     */
+    public CoalescingSnapshotBackend(SnapshotBackend delegate, long window, TimeUnit unit, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize muss mindestens 1 sein: " + maxBatchSize);
+        }
+        this.delegate = delegate;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public Snapshot createSnapshot() {
+        return createSnapshotAsync().join();
+    }
+
+    /**
+     * Tritt der offenen Epoche bei. Der Snapshot wird erstellt, sobald die Batchgröße erreicht oder
+     * das Zeitfenster des ersten Teilnehmers abgelaufen ist; bis dahin wartet kein Thread.
+     */
+    @Override
+    public CompletableFuture<Snapshot> createSnapshotAsync() {
+        Epoch epoch;
+        boolean leader;
+        boolean full;
+        synchronized (this) {
+            leader = openEpoch == null;
+            if (leader) {
+                openEpoch = new Epoch();
+            }
+            epoch = openEpoch;
+            epoch.references++;
+            full = epoch.references >= maxBatchSize;
+        }
+        if (full) {
+            closeEpoch(epoch);
+        } else if (leader) {
+            CompletableFuture.delayedExecutor(windowNanos, TimeUnit.NANOSECONDS).execute(() -> closeEpoch(epoch));
+        }
+        return epoch.snapshot.thenApply(snapshot -> snapshot == null ? null : new SharedSnapshot(epoch, snapshot));
+    }
+
+    // Schließt die Epoche und erstellt ihren Snapshot; nur der erste Aufruf pro Epoche hat eine Wirkung
+    private void closeEpoch(Epoch epoch) {
+        synchronized (this) {
+            if (epoch.closed) {
+                return;
+            }
+            epoch.closed = true;
+            if (openEpoch == epoch) {
+                openEpoch = null;
+            }
+        }
+        try {
+            delegate.createSnapshotAsync().whenComplete((created, error) -> {
+                if (error != null) {
+                    logger.log(Level.SEVERE, "Fehler beim Erstellen des gemeinsamen Snapshots.", error);
+                }
+                // Auch bei einem Fehler abschließen, sonst warten die Teilnehmer ewig
+                epoch.snapshot.complete(error == null ? created : null);
+            });
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Fehler beim Erstellen des gemeinsamen Snapshots.", e);
+            epoch.snapshot.complete(null);
+        }
+    }
+
+    // Snapshot-Epoche mit Referenzzähler; alle Felder außer snapshot werden unter dem Backend-Monitor geändert
+    private static final class Epoch {
+        private final CompletableFuture<Snapshot> snapshot = new CompletableFuture<>();
+        private int references;
+        private boolean closed;
+    }
+
+    // Sicht einer einzelnen Transaktion auf den gemeinsamen Snapshot
+    private class SharedSnapshot implements Snapshot {
+        private final Epoch epoch;
+        private final Snapshot snapshot;
+        private boolean released;
+
+        private SharedSnapshot(Epoch epoch, Snapshot snapshot) {
+            this.epoch = epoch;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public String getName() {
+            return snapshot.getName();
+        }
+
+        @Override
+        public void protect(Path file) throws IOException {
+            snapshot.protect(file);
+        }
+
+        @Override
+        public void protectAppend(Path file, long length) throws IOException {
+            snapshot.protectAppend(file, length);
+        }
+
+        @Override
+        public boolean rollback() {
+            return snapshot.rollback();
+        }
+
+        /**
+         * Gibt die Referenz dieser Transaktion frei; der letzte Teilnehmer gibt den Snapshot frei.
+         */
+        @Override
+        public void release() {
+            boolean last;
+            synchronized (CoalescingSnapshotBackend.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                last = --epoch.references == 0;
+            }
+            if (last) {
+                try {
+                    snapshot.release();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Snapshot '" + snapshot.getName() + "' konnte nicht freigegeben werden.", e);
+                }
+            }
+        }
+    }
+}
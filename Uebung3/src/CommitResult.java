@@ -0,0 +1,67 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ergebnis eines Commits: Status, die Dateien, an denen ein Konflikt festgestellt wurde, und die
+ * Dauer der einzelnen Schritte in Nanosekunden.
+ */
+public final class CommitResult {
+
+    public enum Status {
+        // Keine Konflikte, die Änderungen bleiben bestehen
+        COMMITTED,
+        // Konflikt festgestellt, die Änderungen wurden zurückgesetzt bzw. vor dem Schreiben verworfen
+        ROLLED_BACK,
+        // Konflikt festgestellt, das Zurücksetzen ist aber fehlgeschlagen
+        ROLLBACK_FAILED
+    }
+
+    private final Status status;
+    private final List<String> conflictingPaths;
+    private final long validationNanos;
+    private final long rollbackNanos;
+    private final long totalNanos;
+
+    CommitResult(Status status, List<String> conflictingPaths, long validationNanos, long rollbackNanos,
+                 long totalNanos) {
+        this.status = status;
+        this.conflictingPaths = Collections.unmodifiableList(conflictingPaths);
+        this.validationNanos = validationNanos;
+        this.rollbackNanos = rollbackNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isCommitted() {
+        return status == Status.COMMITTED;
+    }
+
+    /**
+     * Pfade mit Konflikt; im Modus VERSIONED die normalisierten absoluten Pfade. Leer bei einem Commit.
+     */
+    public List<String> getConflictingPaths() {
+        return conflictingPaths;
+    }
+
+    public long getValidationNanos() {
+        return validationNanos;
+    }
+
+    // 0, wenn kein Rollback nötig war
+    public long getRollbackNanos() {
+        return rollbackNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Status: " + status + ", Konflikte: " + conflictingPaths + ", Prüfung: " + validationNanos / 1000
+                + " us, Rollback: " + rollbackNanos / 1000 + " us, Gesamt: " + totalNanos / 1000 + " us";
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Gibt die Ereignisse in der bisherigen Form auf der Konsole aus. Die Zeilen eines Durchlaufs werden
+ * gesammelt und in endOfBatch mit einem einzigen Schreibaufruf ausgegeben.
+ */
+public class ConsoleTransactionListener implements TransactionListener {
+    private final PrintStream out;
+    private final StringBuilder pending = new StringBuilder();
+
+    public ConsoleTransactionListener() {
+        this(System.out);
+    }
+
+    public ConsoleTransactionListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onEvent(TransactionEventType type, String path, Object detail) {
+        switch (type) {
+            case BEGIN:
+                line("Transaktion startet...");
+                break;
+            case SNAPSHOT_CREATED:
+                line("Snapshot '" + detail + "' erfolgreich erstellt.");
+                break;
+            case SNAPSHOTS_DESTROYED:
+                line(detail + " nicht mehr benötigte Snapshots gelöscht.");
+                break;
+            case REGISTERED:
+                line("Datei registriert: " + path);
+                line("Initiale Metadaten: " + detail);
+                break;
+            case REGISTERED_VERSION:
+                line("Datei registriert: " + path);
+                line("Initiale Version: " + detail);
+                break;
+            case REGISTERED_APPEND:
+                line("Datei zum Anhängen registriert: " + path);
+                line("Initiale Länge: " + detail);
+                break;
+            case COMMIT_STARTED:
+                line("Transaktion wird committet...");
+                break;
+            case COMMITTED:
+                line("Kein Konflikt. Transaktion abgeschlossen.");
+                break;
+            case CONFLICT:
+                line("Konflikt festgestellt. Rollback wird durchgeführt.");
+                break;
+            case ABORTED:
+                line("Konflikt festgestellt. Transaktion abgebrochen, es wurde nichts geschrieben.");
+                break;
+            case VERSION_CONFLICT:
+                line("Konflikt festgestellt für Datei: " + path);
+                break;
+            case APPEND_CONFLICT:
+                line("Konflikt festgestellt für Datei: " + path + " (ersetzt oder gekürzt)");
+                break;
+            case LOCK_CONFLICT:
+                line("Konflikt festgestellt für Datei: " + path + " (wird gerade committet)");
+                break;
+            case HASH_CONFLICT:
+                FileMetadata[] metadata = (FileMetadata[]) detail;
+                line("Konflikt festgestellt für Datei: " + path);
+                line("Ursprünglich: " + metadata[0]);
+                line("Aktuell: " + metadata[1]);
+                break;
+            case BLOCK_CONFLICT:
+                line("Konflikt festgestellt für Datei: " + path + ", geänderte Bereiche: " + ranges(detail));
+                break;
+            case BLOCKS_MERGED:
+                line("Nicht überlappende Änderungen in Datei: " + path + ", Bereiche: " + ranges(detail));
+                break;
+            case ROLLBACK_STARTED:
+                line("Rollback der Transaktion...");
+                break;
+            case ROLLBACK_FINISHED:
+                line("Rollback der registrierten Dateien erfolgreich.");
+                break;
+            case SNAPSHOT_ROLLED_BACK:
+                line("Rollback auf Snapshot '" + detail + "' erfolgreich.");
+                break;
+            case WRITE_STAGED:
+                line("Schreibvorgang für Datei '" + path + "' vorgemerkt.");
+                break;
+            case FILE_WRITTEN:
+                line("Schreiben in Datei '" + path + "' erfolgreich"
+                        + (Boolean.TRUE.equals(detail) ? " (Write-Ahead-Log)." : "."));
+                break;
+            case FILE_WRITTEN_AT:
+                line("Schreiben in Datei '" + path + "' ab Position " + detail + " erfolgreich.");
+                break;
+            case FILE_APPENDED:
+                line("Anhängen an Datei '" + path + "' erfolgreich.");
+                break;
+            case FILE_READ:
+                line("Datei '" + path + "' gelesen (" + detail + " Zeichen).");
+                break;
+            case FILE_DELETED:
+                line("Datei '" + path + "' wurde gelöscht.");
+                break;
+            default:
+                line(type + " " + path);
+        }
+    }
+
+    @Override
+    public void endOfBatch() {
+        out.print(pending);
+        out.flush();
+        pending.setLength(0);
+    }
+
+    private void line(String text) {
+        pending.append(text).append(System.lineSeparator());
+    }
+
+    // Formatiert Byte-Bereiche {von, bis} als "[von, bis)"
+    private static String ranges(Object detail) {
+        StringBuilder text = new StringBuilder();
+        for (Object range : (List<?>) detail) {
+            long[] r = (long[]) range;
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append('[').append(r[0]).append(", ").append(r[1]).append(')');
+        }
+        return text.toString();
+    }
+}
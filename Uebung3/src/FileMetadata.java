@@ -1,9 +1,14 @@
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -13,14 +18,48 @@ public class FileMetadata {
     // Logger für Protokollierung
     private static final Logger logger = Logger.getLogger(FileMetadata.class.getName());
 
+    // Größe des wiederverwendeten Lesepuffers pro Thread
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Ab dieser Dateigröße wird die Datei abschnittsweise in den Speicher gemappt statt gelesen
+    private static final long MAP_THRESHOLD = 4L * 1024 * 1024;
+    // Größe eines gemappten Abschnitts, damit der Adressraum auch bei sehr großen Dateien begrenzt bleibt
+    private static final long MAP_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // MessageDigest ist nicht threadsicher, daher eine Instanz pro Thread
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 nicht verfügbar", e);
+        }
+    });
+    // Direkter Puffer pro Thread, damit beim Hashen keine Heap-Kopien der Datei entstehen
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
     private final long lastModified;
     private final long size;
     private final String hash;
+    // Stat-Daten zum Zeitpunkt der Erfassung (null, falls nicht verfügbar)
+    private final FileStat stat;
+    // Merkle-Baum über die Blöcke der Datei (nur im Blockmodus, sonst null); hash ist dann dessen Wurzel
+    private final MerkleTree blocks;
 
     public FileMetadata(long lastModified, long size, String hash) {
+        this(lastModified, size, hash, null);
+    }
+
+    public FileMetadata(long lastModified, long size, String hash, FileStat stat) {
+        this(lastModified, size, hash, stat, null);
+    }
+
+    private FileMetadata(long lastModified, long size, String hash, FileStat stat, MerkleTree blocks) {
         this.lastModified = lastModified;
         this.size = size;
         this.hash = hash;
+        this.stat = stat;
+        this.blocks = blocks;
     }
 
     // Getter für den Hashwert
@@ -28,31 +67,118 @@ public class FileMetadata {
         return hash;
     }
 
+    // Getter für die Stat-Daten
+    public FileStat getStat() {
+        return stat;
+    }
+
+    // Getter für den Merkle-Baum
+    public MerkleTree getBlocks() {
+        return blocks;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Wie fromFile, berechnet aber statt eines Hashwertes über die ganze Datei einen Merkle-Baum über
+     * Blöcke fester Größe. Nach eigenen Schreibvorgängen über FileOperation werden nur die geänderten
+     * Blöcke und ihre Pfade zur Wurzel neu gehasht.
+     */
+    public static FileMetadata fromFileBlocks(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        FileStat stat;
+        try {
+            stat = FileStat.of(path);
+        } catch (NoSuchFileException e) {
+            MerkleTree empty = MerkleTree.empty(MerkleTree.DEFAULT_BLOCK_SIZE);
+            return new FileMetadata(0, 0, empty.getRootHash(), null, empty);
+        }
+        long lastModified = TimeUnit.NANOSECONDS.toMillis(stat.getLastModifiedNanos());
+        TransactionEvents.HashEvent event =
+                TransactionMetrics.ENABLED ? TransactionMetrics.start(new TransactionEvents.HashEvent()) : null;
+        MerkleTree tree = MerkleTree.forFile(path, stat);
+        if (event != null) {
+            TransactionMetrics.get().recordHash(event, path, tree.getSize());
+        }
+        return new FileMetadata(lastModified, tree.getSize(), tree.getRootHash(), stat, tree);
+    }
+
     public static FileMetadata fromFile(String filePath) throws IOException {
-        File file = new File(filePath);
-        long lastModified = file.lastModified();
-        long size = file.length();
-        String hash = computeHash(file.toPath());
-        return new FileMetadata(lastModified, size, hash);
+        Path path = Paths.get(filePath);
+        // Stat-Daten vor dem Hashen lesen: ändert sich die Datei währenddessen, weichen sie beim
+        // nächsten Vergleich ab und es wird erneut gehasht
+        FileStat stat;
+        try {
+            stat = FileStat.of(path);
+        } catch (NoSuchFileException e) {
+            // Wie File.lastModified()/length(): eine fehlende Datei gilt als leer
+            return new FileMetadata(0, 0, "");
+        }
+        long lastModified = TimeUnit.NANOSECONDS.toMillis(stat.getLastModifiedNanos());
+        HashCache cache = HashCache.shared();
+        String hash = cache.lookup(filePath, stat);
+        if (hash == null) {
+            hash = computeHash(path);
+            // Nur cachen, wenn sich die Datei während des Hashens nicht verändert hat
+            if (stat.matches(FileStat.of(path))) {
+                cache.store(filePath, stat, hash);
+            }
+        }
+        return new FileMetadata(lastModified, stat.getSize(), hash, stat);
     }
 
+    /*
+     * Berechnet den SHA-256-Hashwert für die Datei. Die Datei wird dabei nicht komplett in den
+     * Heap geladen, sondern in Blöcken gelesen bzw. abschnittsweise gemappt, sodass der
+     * Speicherverbrauch unabhängig von der Dateigröße konstant bleibt.
+     */
     private static String computeHash(Path path) {
-        // Berechnet den SHA-256-Hashwert für die Datei
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] fileBytes = Files.readAllBytes(path);
-            byte[] hashBytes = digest.digest(fileBytes);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
+        TransactionEvents.HashEvent event =
+                TransactionMetrics.ENABLED ? TransactionMetrics.start(new TransactionEvents.HashEvent()) : null;
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                    long length = Math.min(MAP_CHUNK_SIZE, size - position);
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    digest.update(mapped);
+                }
+            } else {
+                ByteBuffer buffer = BUFFER.get();
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            String hash = toHex(digest.digest());
+            if (event != null) {
+                TransactionMetrics.get().recordHash(event, path, size);
             }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException | IOException e) {
+            return hash;
+        } catch (IOException e) {
+            digest.reset();
             logger.severe("Fehler beim Berechnen des Hashwertes: " + e.getMessage());
             return "";
         }
     }
 
+    // Wandelt die Hash-Bytes über eine Nachschlagetabelle in einen Hex-String um
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            chars[i * 2] = HEX_DIGITS[v >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[v & 0x0f];
+        }
+        return new String(chars);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
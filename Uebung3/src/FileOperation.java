@@ -1,5 +1,9 @@
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
@@ -11,13 +15,53 @@ public class FileOperation {
     // Logger für Protokollierung
     private static final Logger logger = Logger.getLogger(FileOperation.class.getName());
 
+    // Direkter Puffer pro Thread für append/writeAt, damit der JDK keine temporäre Kopie anlegen muss
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    // Im dauerhaften Modus laufen alle Schreibvorgänge über das Write-Ahead-Log (sonst null)
+    private final WriteAheadLog writeAheadLog;
+    // Im Transaktionsmodus werden Schreibvorgänge nur vorgemerkt und beim Commit übertragen (sonst null)
+    private final TransactionManager transaction;
+
+    public FileOperation() {
+        this(null, null);
+    }
+
+    /**
+     * Dauerhafter Modus: write kehrt erst zurück, wenn der Inhalt im Write-Ahead-Log gesichert ist.
+     * Die Zieldatei wird im Hintergrund aktualisiert; read und delete warten vorher darauf.
+     */
+    public FileOperation(WriteAheadLog writeAheadLog) {
+        this(writeAheadLog, null);
+    }
+
+    /**
+     * Transaktionsmodus: write, append und writeAt merken die Änderung nur in der Transaktion vor und
+     * registrieren die Datei dort, falls nötig. Erst commitTransaction überträgt alle Änderungen unter
+     * den Locks der beteiligten Dateien; bei einem Konflikt wird nichts geschrieben. read liefert den
+     * Inhalt einschließlich der eigenen vorgemerkten Änderungen.
+     */
+    public FileOperation(TransactionManager transaction) {
+        this(null, transaction);
+    }
+
+    private FileOperation(WriteAheadLog writeAheadLog, TransactionManager transaction) {
+        this.writeAheadLog = writeAheadLog;
+        this.transaction = transaction;
+    }
+
     /**
      * Schreibt den gegebenen Inhalt in die Datei (erstellt sie, falls sie nicht existiert).
      */
     public void write(String filePath, String content) {
         try {
-            Files.write(Paths.get(filePath), content.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            System.out.println("Schreiben in Datei '" + filePath + "' erfolgreich.");
+            if (transaction != null) {
+                transaction.stage(filePath, new StagedWrites.Write(StagedWrites.Kind.WRITE, 0, content.getBytes()));
+                return;
+            }
+            writeNow(filePath, content.getBytes());
         } catch (IOException e) {
             System.err.println("Fehler beim Schreiben in Datei: " + filePath);
             logger.severe("Fehler beim Schreiben in Datei: " + filePath);
@@ -25,16 +69,125 @@ public class FileOperation {
     }
 
     /**
-     * Liest den Inhalt der Datei und gibt ihn aus.
+     * Hängt den Inhalt an das Ende der Datei an (erstellt sie, falls sie nicht existiert).
+     * Der bisherige Inhalt wird weder gelesen noch neu geschrieben; die Kosten hängen also nur von
+     * der Länge des angehängten Inhalts ab.
      */
-    public void read(String filePath) {
+    public void append(String filePath, String content) {
         try {
-            String content = new String(Files.readAllBytes(Paths.get(filePath)));
-            System.out.println("Inhalt von " + filePath + ":");
-            System.out.println(content);
+            if (transaction != null) {
+                transaction.stage(filePath, new StagedWrites.Write(StagedWrites.Kind.APPEND, 0, content.getBytes()));
+                return;
+            }
+            appendNow(filePath, content.getBytes());
+        } catch (IOException e) {
+            System.err.println("Fehler beim Anhängen an Datei: " + filePath);
+            logger.severe("Fehler beim Anhängen an Datei: " + filePath);
+        }
+    }
+
+    /**
+     * Überschreibt die Datei ab der gegebenen Byte-Position mit dem Inhalt; der Rest der Datei
+     * bleibt unverändert.
+     */
+    public void writeAt(String filePath, long position, String content) {
+        try {
+            if (transaction != null) {
+                transaction.stage(filePath,
+                        new StagedWrites.Write(StagedWrites.Kind.WRITE_AT, position, content.getBytes()));
+                return;
+            }
+            writeAtNow(filePath, position, content.getBytes());
+        } catch (IOException e) {
+            System.err.println("Fehler beim Schreiben in Datei: " + filePath);
+            logger.severe("Fehler beim Schreiben in Datei: " + filePath);
+        }
+    }
+
+    /**
+     * Überträgt einen vorgemerkten Schreibvorgang in die Datei; wird vom TransactionManager beim
+     * Commit aufgerufen. Fehler werden an den Aufrufer weitergegeben, damit er zurücksetzen kann.
+     */
+    void apply(String filePath, StagedWrites.Write write) throws IOException {
+        switch (write.kind) {
+            case WRITE:
+                writeNow(filePath, write.content);
+                break;
+            case APPEND:
+                appendNow(filePath, write.content);
+                break;
+            case WRITE_AT:
+                writeAtNow(filePath, write.position, write.content);
+                break;
+            default:
+                throw new IllegalStateException(write.kind.name());
+        }
+    }
+
+    private void writeNow(String filePath, byte[] content) throws IOException {
+        if (writeAheadLog != null) {
+            writeAheadLog.write(filePath, content);
+            TransactionEventBus.shared().publish(TransactionEventType.FILE_WRITTEN, filePath, Boolean.TRUE);
+            return;
+        }
+        Path path = Paths.get(filePath);
+        FileStat before = statIfTracked(path);
+        Files.write(path, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        recordWrite(path, before, 0, Long.MAX_VALUE);
+        TransactionEventBus.shared().publish(TransactionEventType.FILE_WRITTEN, filePath, null);
+    }
+
+    private void appendNow(String filePath, byte[] content) throws IOException {
+        if (writeAheadLog != null) {
+            writeAheadLog.append(filePath, content);
+        } else {
+            Path path = Paths.get(filePath);
+            FileStat before = statIfTracked(path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeFully(channel, -1, content);
+            }
+            recordWrite(path, before, before == null ? 0 : before.getSize(), Long.MAX_VALUE);
+        }
+        TransactionEventBus.shared().publish(TransactionEventType.FILE_APPENDED, filePath, null);
+    }
+
+    private void writeAtNow(String filePath, long position, byte[] content) throws IOException {
+        if (writeAheadLog != null) {
+            writeAheadLog.writeAt(filePath, position, content);
+        } else {
+            Path path = Paths.get(filePath);
+            FileStat before = statIfTracked(path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                writeFully(channel, position, content);
+            }
+            recordWrite(path, before, position, position + content.length);
+        }
+        TransactionEventBus.shared().publish(TransactionEventType.FILE_WRITTEN_AT, filePath, position);
+    }
+
+    /**
+     * Liest den Inhalt der Datei. Der Inhalt wird zurückgegeben statt über den Ereignisbus gemeldet,
+     * damit er auch ohne Listener bzw. bei verworfenen Ereignissen beim Aufrufer ankommt.
+     *
+     * @return der Inhalt oder null, wenn die Datei nicht gelesen werden konnte
+     */
+    public String read(String filePath) {
+        try {
+            String content;
+            if (transaction != null) {
+                content = new String(transaction.readWithStagedWrites(filePath));
+            } else {
+                awaitPendingWrites(filePath);
+                content = new String(Files.readAllBytes(Paths.get(filePath)));
+            }
+            TransactionEventBus.shared().publish(TransactionEventType.FILE_READ, filePath, content.length());
+            return content;
         } catch (IOException e) {
             System.err.println("Fehler beim Lesen der Datei: " + filePath);
             logger.severe("Fehler beim Lesen der Datei: " + filePath);
+            return null;
         }
     }
 
@@ -44,12 +197,81 @@ public class FileOperation {
      * könnte aber in anderen Anwendungen oder in der Zukunft nützlich sein.
      */
     public void delete(String filePath) {
+        if (transaction != null) {
+            // Löschen lässt sich nicht vormerken; es würde an den Locks des Commits vorbei geschehen
+            System.err.println("Löschen ist im Transaktionsmodus nicht möglich: " + filePath);
+            logger.severe("Löschen ist im Transaktionsmodus nicht möglich: " + filePath);
+            return;
+        }
         try {
+            awaitPendingWrites(filePath);
             Files.deleteIfExists(Paths.get(filePath));
-            System.out.println("Datei '" + filePath + "' wurde gelöscht.");
+            if (writeAheadLog != null) {
+                writeAheadLog.invalidateSize(filePath);
+            }
+            TransactionEventBus.shared().publish(TransactionEventType.FILE_DELETED, filePath, null);
         } catch (IOException e) {
             System.err.println("Fehler beim Löschen der Datei: " + filePath);
             logger.severe(e.getMessage());
         }
     }
+
+    // Schreibt die Bytes über den direkten Puffer; position -1 schreibt an der aktuellen Position
+    private static void writeFully(FileChannel channel, long position, byte[] bytes) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        int offset = 0;
+        while (offset < bytes.length) {
+            int length = Math.min(buffer.capacity(), bytes.length - offset);
+            buffer.clear();
+            buffer.put(bytes, offset, length);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (position < 0) {
+                    channel.write(buffer);
+                } else {
+                    position += channel.write(buffer, position);
+                }
+            }
+            offset += length;
+        }
+    }
+
+    // Stat-Daten vor dem Schreiben, falls für die Datei ein Merkle-Baum zwischengespeichert ist
+    private static FileStat statIfTracked(Path path) {
+        if (!MerkleTree.isCached(path)) {
+            return null;
+        }
+        try {
+            return FileStat.of(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Meldet den geschriebenen Bereich, damit beim nächsten Prüfen nur diese Blöcke neu gehasht werden
+    private static void recordWrite(Path path, FileStat before, long from, long to) {
+        if (before == null) {
+            return;
+        }
+        FileStat after;
+        try {
+            after = FileStat.of(path);
+        } catch (IOException e) {
+            after = null;
+        }
+        MerkleTree.recordWrite(path, before, after, from, to);
+    }
+
+    // Wartet im dauerhaften Modus, bis eigene Schreibvorgänge in der Zieldatei angekommen sind
+    private void awaitPendingWrites(String filePath) throws IOException {
+        if (writeAheadLog == null) {
+            return;
+        }
+        try {
+            writeAheadLog.awaitApplied(filePath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Unterbrochen beim Warten auf das Write-Ahead-Log: " + filePath);
+        }
+    }
 }
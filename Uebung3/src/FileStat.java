@@ -0,0 +1,135 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Günstig abfragbare Stat-Daten einer Datei (Größe, mtime und ctime in Nanosekunden, Inode).
+ * Dient als schneller Vorabvergleich, bevor der vollständige Hashwert berechnet wird.
+ */
+public final class FileStat {
+    // Kennzeichnet Werte, die das Dateisystem nicht liefert
+    public static final long UNKNOWN = -1;
+
+    // Zeitfenster, in dem eine Änderung trotz gleicher Stat-Daten unentdeckt bleiben könnte
+    private static final long RACY_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    // Dateisysteme mit Sekundenauflösung (z.B. FAT, HFS+) brauchen ein größeres Fenster
+    private static final long COARSE_RACY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final long size;
+    private final long lastModifiedNanos;
+    private final long changeTimeNanos;
+    private final long inode;
+    private final long device;
+    // Zeitpunkt der Erfassung, um zu erkennen, ob die Stat-Daten zu "frisch" sind
+    private final long capturedAtNanos;
+
+    private FileStat(long size, long lastModifiedNanos, long changeTimeNanos, long inode, long device,
+                     long capturedAtNanos) {
+        this.size = size;
+        this.lastModifiedNanos = lastModifiedNanos;
+        this.changeTimeNanos = changeTimeNanos;
+        this.inode = inode;
+        this.device = device;
+        this.capturedAtNanos = capturedAtNanos;
+    }
+
+    /**
+     * Liest die Stat-Daten der Datei. Auf Unix-Systemen werden die "unix:*"-Attribute verwendet,
+     * andernfalls nur die BasicFileAttributes (ohne ctime und Inode).
+     */
+    public static FileStat of(Path path) throws IOException {
+        long capturedAt = nowNanos();
+        try {
+            Map<String, Object> attrs = Files.readAttributes(path, "unix:size,lastModifiedTime,ctime,ino,dev");
+            return new FileStat(
+                    (Long) attrs.get("size"),
+                    toNanos((FileTime) attrs.get("lastModifiedTime")),
+                    toNanos((FileTime) attrs.get("ctime")),
+                    (Long) attrs.get("ino"),
+                    (Long) attrs.get("dev"),
+                    capturedAt);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileStat(attrs.size(), toNanos(attrs.lastModifiedTime()), UNKNOWN, UNKNOWN, UNKNOWN,
+                    capturedAt);
+        }
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedNanos() {
+        return lastModifiedNanos;
+    }
+
+    public long getInode() {
+        return inode;
+    }
+
+    /**
+     * Gibt an, ob ein Vergleich der Stat-Daten aussagekräftig ist. Das ist nicht der Fall, wenn
+     * ctime oder Inode fehlen oder die Datei so kurz vor der Erfassung geändert wurde, dass eine
+     * weitere Änderung innerhalb der Zeitstempel-Auflösung dieselben Werte ergeben könnte.
+     */
+    public boolean isTrustworthy() {
+        if (changeTimeNanos == UNKNOWN || inode == UNKNOWN) {
+            return false;
+        }
+        long window = lastModifiedNanos % 1_000_000_000L == 0 ? COARSE_RACY_WINDOW_NANOS : RACY_WINDOW_NANOS;
+        return Math.max(lastModifiedNanos, changeTimeNanos) + window < capturedAtNanos;
+    }
+
+    /**
+     * Vergleicht die Stat-Daten ohne den Erfassungszeitpunkt.
+     */
+    public boolean matches(FileStat other) {
+        return other != null &&
+                size == other.size &&
+                lastModifiedNanos == other.lastModifiedNanos &&
+                changeTimeNanos == other.changeTimeNanos &&
+                inode == other.inode &&
+                device == other.device;
+    }
+
+    /**
+     * Schreibt die Stat-Daten in einen Datenstrom (für persistente Indizes).
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(size);
+        out.writeLong(lastModifiedNanos);
+        out.writeLong(changeTimeNanos);
+        out.writeLong(inode);
+        out.writeLong(device);
+        out.writeLong(capturedAtNanos);
+    }
+
+    /**
+     * Liest Stat-Daten, die zuvor mit writeTo geschrieben wurden.
+     */
+    public static FileStat readFrom(DataInput in) throws IOException {
+        return new FileStat(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static long toNanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    private static long nowNanos() {
+        Instant now = Instant.now();
+        return TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    }
+
+    @Override
+    public String toString() {
+        return "Size: " + size + ", MTime(ns): " + lastModifiedNanos + ", CTime(ns): " + changeTimeNanos +
+                ", Inode: " + inode;
+    }
+}
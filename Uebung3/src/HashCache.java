@@ -0,0 +1,185 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prozessweiter Cache für Datei-Hashwerte, damit dieselbe unveränderte Datei nicht von jedem
+ * TransactionManager erneut gehasht wird. Ein Eintrag gilt nur, solange Pfad, Inode, Größe sowie
+ * mtime und ctime in Nanosekunden unverändert sind. Verdrängt wird nach dem LRU-Prinzip.
+ * Optional kann der Cache in einer Indexdatei gespeichert werden, damit er Neustarts übersteht.
+ */
+public final class HashCache {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(HashCache.class.getName());
+
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    // Kennung und Version des Indexformats
+    private static final int INDEX_MAGIC = 0x48434931; // "HCI1"
+    // Über diese System-Property kann die persistente Indexdatei beim Start aktiviert werden
+    private static final String INDEX_PROPERTY = "hashcache.file";
+
+    private static final HashCache SHARED = createShared();
+
+    private final Map<String, Entry> entries;
+    private int maxEntries;
+    private Path indexFile;
+
+    public HashCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        // accessOrder = true: jeder Treffer verschiebt den Eintrag an das Ende der Verdrängungsreihenfolge
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > HashCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Liefert den Cache, den alle TransactionManager im Prozess gemeinsam nutzen.
+     */
+    public static HashCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Liefert den gespeicherten Hashwert, falls die Datei seit dem Hashen unverändert ist, sonst null.
+     */
+    public synchronized String lookup(String filePath, FileStat currentStat) {
+        Entry entry = entries.get(key(filePath));
+        if (entry == null || !entry.stat.matches(currentStat)) {
+            return null;
+        }
+        return entry.hash;
+    }
+
+    /**
+     * Speichert einen Hashwert. Stat-Daten, denen nicht vertraut werden kann (z.B. weil die Datei
+     * gerade eben geändert wurde), werden nicht aufgenommen, da eine weitere Änderung im selben
+     * Zeitstempel-Intervall sonst einen veralteten Hash liefern würde.
+     */
+    public synchronized void store(String filePath, FileStat stat, String hash) {
+        if (hash.isEmpty() || !stat.isTrustworthy()) {
+            return;
+        }
+        entries.put(key(filePath), new Entry(stat, hash));
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        while (entries.size() > maxEntries) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Lädt den Cache aus der Indexdatei (falls vorhanden) und speichert ihn beim Beenden der JVM wieder dorthin.
+     */
+    public void enablePersistence(Path file) {
+        synchronized (this) {
+            boolean first = indexFile == null;
+            indexFile = file;
+            load(file);
+            if (!first) {
+                return;
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                save();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Hash-Cache konnte nicht gespeichert werden.", e);
+            }
+        }, "hash-cache-save"));
+    }
+
+    /**
+     * Schreibt den Cache in die Indexdatei. Es wird zunächst eine temporäre Datei geschrieben und
+     * dann atomar umbenannt, damit ein Absturz keinen halb geschriebenen Index hinterlässt.
+     */
+    public void save() throws IOException {
+        Path target;
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized (this) {
+            if (indexFile == null) {
+                return;
+            }
+            target = indexFile;
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+        Path absolute = target.toAbsolutePath();
+        Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(snapshot.size());
+            // In LRU-Reihenfolge schreiben, damit die Reihenfolge nach dem Laden erhalten bleibt
+            for (Map.Entry<String, Entry> e : snapshot) {
+                out.writeUTF(e.getKey());
+                e.getValue().stat.writeTo(out);
+                out.writeUTF(e.getValue().hash);
+            }
+        }
+        Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                logger.warning("Unbekanntes Format der Hash-Cache-Datei: " + file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                FileStat stat = FileStat.readFrom(in);
+                String hash = in.readUTF();
+                entries.put(path, new Entry(stat, hash));
+            }
+        } catch (NoSuchFileException e) {
+            // Noch kein Index vorhanden
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Hash-Cache-Datei konnte nicht gelesen werden: " + file, e);
+        }
+    }
+
+    private static String key(String filePath) {
+        return Paths.get(filePath).toAbsolutePath().normalize().toString();
+    }
+
+    private static HashCache createShared() {
+        HashCache cache = new HashCache(DEFAULT_MAX_ENTRIES);
+        String indexFile = System.getProperty(INDEX_PROPERTY);
+        if (indexFile != null && !indexFile.isEmpty()) {
+            cache.enablePersistence(Paths.get(indexFile));
+        }
+        return cache;
+    }
+
+    // Unveränderlicher Cache-Eintrag
+    private static final class Entry {
+        private final FileStat stat;
+        private final String hash;
+
+        private Entry(FileStat stat, String hash) {
+            this.stat = stat;
+            this.hash = hash;
+        }
+    }
+}
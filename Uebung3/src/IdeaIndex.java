@@ -0,0 +1,400 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sortierter Katalog der Ideen-Dateien eines Ordners mit Titel (erste nicht leere Zeile), Größe und
+ * Zeitstempel. Die Ideen sind nach ihrem Zeitstempel sortiert, neue Ideen kommen also ans Ende und
+ * die Nummern der bestehenden bleiben gleich. Abfragen einer Seite oder einer Idee über ihre Nummer
+ * lesen nur den Katalog im Speicher, nicht den Ordner.
+ *
+ * Der Katalog wird in einer Indexdatei im Ordner gespeichert und beim Öffnen geladen. Danach halten
+ * ihn die Ereignisse eines WatchService aktuell; Änderungen, während das Programm nicht lief, gleicht
+ * ein einmaliger Abgleich im Hintergrund aus. Registrierte Listener erfahren von jeder neuen,
+ * geänderten oder gelöschten Idee.
+ */
+public class IdeaIndex implements AutoCloseable {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(IdeaIndex.class.getName());
+
+    // Kennung und Version des Indexformats
+    private static final int INDEX_MAGIC = 0x49445831; // "IDX1"
+    private static final String INDEX_FILE = ".idea_index";
+    private static final String IDEA_PREFIX = "idea_";
+    private static final String IDEA_SUFFIX = ".txt";
+    private static final int MAX_TITLE_LENGTH = 60;
+
+    // Zeitstempel, bei gleichem Zeitstempel der Dateiname
+    private static final Comparator<Entry> ORDER =
+            Comparator.comparingLong(Entry::getTimestamp).thenComparing(Entry::getName);
+
+    private final Path directory;
+    private final Path indexFile;
+    // Nach ORDER sortiert; Dateiname -> Eintrag für Aktualisierungen
+    private final List<Entry> sorted = new ArrayList<>();
+    private final Map<String, Entry> byName = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * Wird über neue, geänderte und gelöschte Ideen benachrichtigt, außerhalb der Sperre des Index
+     * und ggf. vom Thread des WatchService aus.
+     */
+    public interface Listener {
+        void ideaChanged(Entry entry);
+
+        void ideaRemoved(String fileName);
+    }
+
+    public IdeaIndex(Path directory) {
+        this(directory, directory);
+    }
+
+    /**
+     * @param indexDirectory Ordner für die Indexdatei, z.B. außerhalb eines per Snapshot
+     *                       zurückgesetzten Ideen-Ordners; muss existieren
+     */
+    public IdeaIndex(Path directory, Path indexDirectory) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.indexFile = indexDirectory.toAbsolutePath().normalize().resolve(INDEX_FILE);
+    }
+
+    /**
+     * Lädt die Indexdatei und startet die Überwachung des Ordners. Der Katalog ist sofort
+     * verwendbar; der Abgleich mit dem Ordner läuft im Hintergrund.
+     */
+    public void open() throws IOException {
+        load();
+        watchService = directory.getFileSystem().newWatchService();
+        // Erst registrieren, dann abgleichen, damit keine Änderung dazwischen verloren geht
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watcher = new Thread(this::watch, "idea-index-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                save();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Ideen-Index konnte nicht gespeichert werden.", e);
+            }
+        }, "idea-index-save"));
+    }
+
+    /**
+     * Muss vor open() registriert werden, um auch die Änderungen des ersten Abgleichs zu erhalten.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized int size() {
+        return sorted.size();
+    }
+
+    /**
+     * Liefert die Idee mit der gegebenen Position (0-basiert) in der sortierten Reihenfolge.
+     */
+    public synchronized Entry get(int index) {
+        return sorted.get(index);
+    }
+
+    /**
+     * Liefert die Position der Idee in der sortierten Reihenfolge, oder -1, wenn sie nicht im Katalog ist.
+     */
+    public synchronized int indexOf(String fileName) {
+        Entry entry = byName.get(fileName);
+        return entry == null ? -1 : Collections.binarySearch(sorted, entry, ORDER);
+    }
+
+    /**
+     * Liefert eine Kopie des gesamten Katalogs in sortierter Reihenfolge.
+     */
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(sorted);
+    }
+
+    /**
+     * Liefert eine Seite des Katalogs (0-basiert); leer, wenn die Seite hinter dem Ende liegt.
+     */
+    public synchronized List<Entry> page(int page, int pageSize) {
+        int from = page * pageSize;
+        if (from >= sorted.size()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(sorted.subList(from, Math.min(from + pageSize, sorted.size())));
+    }
+
+    /**
+     * Liest die Stat-Daten und den Titel einer Datei neu ein, z.B. direkt nach einem Commit, ohne
+     * auf das Ereignis des WatchService zu warten. Existiert die Datei nicht mehr, wird sie entfernt.
+     */
+    public void refresh(String fileName) {
+        if (!isIdea(fileName)) {
+            return;
+        }
+        Path file = directory.resolve(fileName);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            removeAndNotify(fileName);
+            return;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Idee konnte nicht gelesen werden: " + file, e);
+            return;
+        }
+        long lastModified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            Entry existing = byName.get(fileName);
+            if (existing != null && existing.size == attrs.size() && existing.lastModifiedNanos == lastModified) {
+                return;
+            }
+        }
+        String title = readTitle(file);
+        Entry entry = new Entry(fileName, title, attrs.size(), timestampOf(fileName, attrs), lastModified);
+        put(entry);
+        for (Listener listener : listeners) {
+            listener.ideaChanged(entry);
+        }
+    }
+
+    /**
+     * Schreibt den Katalog in die Indexdatei, zunächst in eine temporäre Datei und dann per
+     * atomarem Umbenennen.
+     */
+    public void save() throws IOException {
+        List<Entry> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(sorted);
+        }
+        Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                out.writeUTF(entry.name);
+                out.writeUTF(entry.title);
+                out.writeLong(entry.size);
+                out.writeLong(entry.timestamp);
+                out.writeLong(entry.lastModifiedNanos);
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                logger.warning("Unbekanntes Format der Ideen-Indexdatei: " + indexFile);
+                return;
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(in.readUTF(), in.readUTF(), in.readLong(), in.readLong(), in.readLong()));
+            }
+            synchronized (this) {
+                for (Entry entry : entries) {
+                    byName.put(entry.name, entry);
+                }
+                sorted.addAll(byName.values());
+                sorted.sort(ORDER);
+            }
+        } catch (NoSuchFileException e) {
+            // Noch kein Index vorhanden, der Abgleich baut ihn auf
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ideen-Indexdatei konnte nicht gelesen werden: " + indexFile, e);
+        }
+    }
+
+    // Hintergrund-Thread: erst einmal vollständig abgleichen, dann nur noch auf Ereignisse reagieren
+    private void watch() {
+        rescan();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Ereignisse gingen verloren, daher den ganzen Ordner abgleichen
+                        rescan();
+                    } else {
+                        refresh(((Path) event.context()).getFileName().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warning("Ideen-Ordner wird nicht mehr überwacht: " + directory);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // close() wurde aufgerufen
+        }
+    }
+
+    // Gleicht den Katalog mit dem Ordner ab; liest nur Dateien neu, deren Größe oder mtime abweicht
+    private void rescan() {
+        Set<String> seen = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, IDEA_PREFIX + "*" + IDEA_SUFFIX)) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                seen.add(fileName);
+                refresh(fileName);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ideen-Ordner konnte nicht gelesen werden: " + directory, e);
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String fileName : byName.keySet()) {
+                if (!seen.contains(fileName)) {
+                    missing.add(fileName);
+                }
+            }
+        }
+        for (String fileName : missing) {
+            // Erneut prüfen: die Datei kann nach dem Auflisten angelegt worden sein
+            if (Files.notExists(directory.resolve(fileName))) {
+                removeAndNotify(fileName);
+            }
+        }
+    }
+
+    private synchronized void put(Entry entry) {
+        Entry previous = byName.put(entry.name, entry);
+        if (previous != null) {
+            sorted.remove(Collections.binarySearch(sorted, previous, ORDER));
+        }
+        int index = Collections.binarySearch(sorted, entry, ORDER);
+        // Neue Ideen haben den größten Zeitstempel und landen am Ende der Liste
+        sorted.add(-index - 1, entry);
+    }
+
+    private void removeAndNotify(String fileName) {
+        if (remove(fileName)) {
+            for (Listener listener : listeners) {
+                listener.ideaRemoved(fileName);
+            }
+        }
+    }
+
+    private synchronized boolean remove(String fileName) {
+        Entry previous = byName.remove(fileName);
+        if (previous == null) {
+            return false;
+        }
+        sorted.remove(Collections.binarySearch(sorted, previous, ORDER));
+        return true;
+    }
+
+    private static boolean isIdea(String fileName) {
+        return fileName.startsWith(IDEA_PREFIX) && fileName.endsWith(IDEA_SUFFIX);
+    }
+
+    // Zeitstempel aus dem Dateinamen (idea_<millis>.txt), sonst die mtime der Datei
+    private static long timestampOf(String fileName, BasicFileAttributes attrs) {
+        try {
+            return Long.parseLong(fileName.substring(IDEA_PREFIX.length(), fileName.length() - IDEA_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return attrs.lastModifiedTime().toMillis();
+        }
+    }
+
+    // Erste nicht leere Zeile; der Rest der Datei wird nicht gelesen
+    private static String readTitle(Path file) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    return line.length() > MAX_TITLE_LENGTH ? line.substring(0, MAX_TITLE_LENGTH) + "..." : line;
+                }
+            }
+        } catch (IOException e) {
+            // Nicht lesbarer oder nicht als UTF-8 kodierter Inhalt: ohne Titel aufnehmen
+        }
+        return "";
+    }
+
+    /**
+     * Unveränderlicher Eintrag des Katalogs.
+     */
+    public static final class Entry {
+        private final String name;
+        private final String title;
+        private final long size;
+        private final long timestamp;
+        private final long lastModifiedNanos;
+
+        private Entry(String name, String title, long size, long timestamp, long lastModifiedNanos) {
+            this.name = name;
+            this.title = title;
+            this.size = size;
+            this.timestamp = timestamp;
+            this.lastModifiedNanos = lastModifiedNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        // Erstellungszeitpunkt in Millisekunden seit 1970
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getLastModifiedNanos() {
+            return lastModifiedNanos;
+        }
+    }
+}
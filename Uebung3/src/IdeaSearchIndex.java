@@ -0,0 +1,509 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Invertierter Index für die Volltextsuche über die Ideen. Der Index liegt als Segmentdatei im
+ * Ideen-Ordner und wird für Abfragen per mmap eingeblendet: Ein Suchbegriff wird per binärer Suche
+ * im sortierten Wörterbuch gefunden, danach werden nur seine Postings gelesen.
+ *
+ * Ideen, die seit dem Schreiben der Segmentdatei angelegt, kommentiert oder gelöscht wurden, stehen
+ * in einem kleinen Delta im Speicher; ihre alten Einträge im Segment werden ausgeblendet. Das Delta
+ * wird über IdeaIndex.Listener gepflegt, erhält also dieselben Aktualisierungen wie der Katalog nach
+ * jedem Commit. Beim Beenden werden Segment und Delta zu einer neuen Segmentdatei zusammengeführt.
+ *
+ * Aufbau der Segmentdatei (Big Endian):
+ * Kopf (Kennung, Anzahl Dokumente, Anzahl Begriffe, Offset des String-Pools, Offset der Postings),
+ * Dokumenttabelle (je Name, Größe, mtime), Begriffstabelle (je Begriff, erstes Posting, Anzahl),
+ * String-Pool (Länge + UTF-8) und die Postings (Dokumentnummern, je Begriff aufsteigend).
+ */
+public class IdeaSearchIndex implements IdeaIndex.Listener {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(IdeaSearchIndex.class.getName());
+
+    // Kennung und Version des Segmentformats
+    private static final int SEGMENT_MAGIC = 0x49535831; // "ISX1"
+    private static final String SEGMENT_FILE = ".idea_search";
+    private static final int HEADER_SIZE = 20;
+    // Name (Offset im Pool), Größe, mtime
+    private static final int DOC_ENTRY_SIZE = 4 + 8 + 8;
+    // Begriff (Offset im Pool), erstes Posting, Anzahl Postings
+    private static final int TERM_ENTRY_SIZE = 4 + 4 + 4;
+    // Kürzere Wörter werden nicht indiziert, längere (z.B. Base64-Blöcke) ebenfalls nicht
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private final Path directory;
+    private final Path segmentFile;
+
+    // Eingeblendetes Segment (null, solange keines geschrieben wurde)
+    private MappedByteBuffer segment;
+    private int docCount;
+    private int termCount;
+    private int docTableOffset;
+    private int termTableOffset;
+    private int postingsOffset;
+    // Dateiname -> Dokumentnummer im Segment
+    private final Map<String, Integer> segmentDocs = new HashMap<>();
+    // Dokumente im Segment, die geändert oder gelöscht wurden
+    private final BitSet staleDocs = new BitSet();
+
+    // Delta: Dateiname -> Eintrag des Katalogs bzw. Begriffe, Begriff -> Dateinamen
+    private final Map<String, IdeaIndex.Entry> deltaDocs = new HashMap<>();
+    private final Map<String, Set<String>> deltaTermsByDoc = new HashMap<>();
+    private final TreeMap<String, Set<String>> deltaPostings = new TreeMap<>();
+
+    public IdeaSearchIndex(Path directory) {
+        this(directory, directory);
+    }
+
+    /**
+     * @param indexDirectory Ordner für die Segmentdatei, z.B. außerhalb eines per Snapshot
+     *                       zurückgesetzten Ideen-Ordners; muss existieren
+     */
+    public IdeaSearchIndex(Path directory, Path indexDirectory) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.segmentFile = indexDirectory.toAbsolutePath().normalize().resolve(SEGMENT_FILE);
+    }
+
+    /**
+     * Blendet die Segmentdatei ein und speichert den Index beim Beenden der JVM.
+     */
+    public void open() {
+        map();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                save();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Suchindex konnte nicht gespeichert werden.", e);
+            }
+        }, "idea-search-save"));
+    }
+
+    /**
+     * Gleicht den Index mit dem Katalog ab: Nur Ideen, deren Größe oder mtime vom Stand im Segment
+     * abweicht, werden neu gelesen; Ideen, die nicht mehr im Katalog stehen, werden ausgeblendet.
+     */
+    public void synchronize(List<IdeaIndex.Entry> catalog) {
+        Set<String> names = new HashSet<>();
+        for (IdeaIndex.Entry entry : catalog) {
+            names.add(entry.getName());
+            if (!isCurrent(entry)) {
+                ideaChanged(entry);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        synchronized (this) {
+            for (String name : segmentDocs.keySet()) {
+                if (!names.contains(name)) {
+                    removed.add(name);
+                }
+            }
+        }
+        for (String name : removed) {
+            ideaRemoved(name);
+        }
+    }
+
+    @Override
+    public void ideaChanged(IdeaIndex.Entry entry) {
+        if (isCurrent(entry)) {
+            return;
+        }
+        Set<String> terms;
+        try {
+            terms = tokenize(new String(Files.readAllBytes(directory.resolve(entry.getName())),
+                    StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            ideaRemoved(entry.getName());
+            return;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Idee konnte nicht indiziert werden: " + entry.getName(), e);
+            return;
+        }
+        synchronized (this) {
+            removeFromDelta(entry.getName());
+            hideInSegment(entry.getName());
+            deltaDocs.put(entry.getName(), entry);
+            deltaTermsByDoc.put(entry.getName(), terms);
+            for (String term : terms) {
+                deltaPostings.computeIfAbsent(term, t -> new HashSet<>()).add(entry.getName());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void ideaRemoved(String fileName) {
+        removeFromDelta(fileName);
+        hideInSegment(fileName);
+    }
+
+    /**
+     * Liefert die Dateinamen der Ideen, die alle Wörter der Anfrage enthalten. Ein Wort mit '*' am
+     * Ende sucht nach allen Wörtern mit diesem Anfang.
+     */
+    public synchronized Set<String> search(String query) {
+        // Treffer im Segment als Dokumentnummern schneiden; Namen erst für das Endergebnis lesen
+        BitSet segmentMatches = null;
+        Set<String> deltaMatches = null;
+        for (String word : query.toLowerCase(Locale.ROOT).split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            String term = prefix ? word.substring(0, word.length() - 1) : word;
+            // Wie beim Indizieren zerlegen; "e-mail" sucht also nur nach "mail" (zu kurze Wörter entfallen)
+            for (String part : tokenize(term)) {
+                BitSet docs = lookupSegment(part, prefix);
+                Set<String> names = lookupDelta(part, prefix);
+                if (segmentMatches == null) {
+                    segmentMatches = docs;
+                    deltaMatches = names;
+                } else {
+                    segmentMatches.and(docs);
+                    deltaMatches.retainAll(names);
+                }
+            }
+        }
+        if (segmentMatches == null) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new LinkedHashSet<>();
+        segmentMatches.andNot(staleDocs);
+        for (int doc = segmentMatches.nextSetBit(0); doc >= 0; doc = segmentMatches.nextSetBit(doc + 1)) {
+            result.add(docName(doc));
+        }
+        result.addAll(deltaMatches);
+        return result;
+    }
+
+    /**
+     * Führt Segment und Delta zu einer neuen Segmentdatei zusammen, sofern sich seit dem Laden etwas
+     * geändert hat. Die Datei wird zunächst unter einem temporären Namen geschrieben und dann atomar
+     * umbenannt.
+     */
+    public synchronized void save() throws IOException {
+        if (deltaDocs.isEmpty() && staleDocs.isEmpty()) {
+            return;
+        }
+        // Neue Dokumentnummern: zuerst die gültigen Dokumente des Segments, dann das Delta
+        List<String> names = new ArrayList<>();
+        List<long[]> stats = new ArrayList<>();
+        int[] renumbered = new int[docCount];
+        for (int doc = 0; doc < docCount; doc++) {
+            if (staleDocs.get(doc)) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = names.size();
+            names.add(docName(doc));
+            int entry = docTableOffset + doc * DOC_ENTRY_SIZE;
+            stats.add(new long[]{segment.getLong(entry + 4), segment.getLong(entry + 12)});
+        }
+        Map<String, Integer> deltaIds = new HashMap<>();
+        for (IdeaIndex.Entry entry : deltaDocs.values()) {
+            deltaIds.put(entry.getName(), names.size());
+            names.add(entry.getName());
+            stats.add(new long[]{entry.getSize(), entry.getLastModifiedNanos()});
+        }
+
+        TreeMap<String, List<Integer>> postings = new TreeMap<>();
+        for (int term = 0; term < termCount; term++) {
+            int entry = termTableOffset + term * TERM_ENTRY_SIZE;
+            int first = segment.getInt(entry + 4);
+            int count = segment.getInt(entry + 8);
+            List<Integer> docs = null;
+            for (int i = 0; i < count; i++) {
+                int doc = renumbered[segment.getInt(postingsOffset + (first + i) * 4)];
+                if (doc >= 0) {
+                    if (docs == null) {
+                        docs = postings.computeIfAbsent(string(segment.getInt(entry)), t -> new ArrayList<>());
+                    }
+                    docs.add(doc);
+                }
+            }
+        }
+        for (Map.Entry<String, Set<String>> e : deltaTermsByDoc.entrySet()) {
+            int doc = deltaIds.get(e.getKey());
+            for (String term : e.getValue()) {
+                postings.computeIfAbsent(term, t -> new ArrayList<>()).add(doc);
+            }
+        }
+        write(names, stats, postings);
+
+        segment = null;
+        segmentDocs.clear();
+        staleDocs.clear();
+        deltaDocs.clear();
+        deltaTermsByDoc.clear();
+        deltaPostings.clear();
+        map();
+    }
+
+    private void write(List<String> names, List<long[]> stats, TreeMap<String, List<Integer>> postings)
+            throws IOException {
+        // String-Pool aufbauen: zuerst die Dateinamen, dann die Begriffe
+        int[] nameOffsets = new int[names.size()];
+        int[] termOffsets = new int[postings.size()];
+        List<byte[]> pool = new ArrayList<>();
+        int poolSize = 0;
+        for (int i = 0; i < names.size(); i++) {
+            byte[] bytes = names.get(i).getBytes(StandardCharsets.UTF_8);
+            nameOffsets[i] = poolSize;
+            pool.add(bytes);
+            poolSize += 2 + bytes.length;
+        }
+        int t = 0;
+        for (String term : postings.keySet()) {
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            termOffsets[t++] = poolSize;
+            pool.add(bytes);
+            poolSize += 2 + bytes.length;
+        }
+        int poolOffset = HEADER_SIZE + names.size() * DOC_ENTRY_SIZE + postings.size() * TERM_ENTRY_SIZE;
+
+        Path tmp = segmentFile.resolveSibling(SEGMENT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(SEGMENT_MAGIC);
+            out.writeInt(names.size());
+            out.writeInt(postings.size());
+            out.writeInt(poolOffset);
+            out.writeInt(poolOffset + poolSize);
+            for (int i = 0; i < names.size(); i++) {
+                out.writeInt(poolOffset + nameOffsets[i]);
+                out.writeLong(stats.get(i)[0]);
+                out.writeLong(stats.get(i)[1]);
+            }
+            int first = 0;
+            t = 0;
+            for (List<Integer> docs : postings.values()) {
+                out.writeInt(poolOffset + termOffsets[t++]);
+                out.writeInt(first);
+                out.writeInt(docs.size());
+                first += docs.size();
+            }
+            for (byte[] bytes : pool) {
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            for (List<Integer> docs : postings.values()) {
+                Collections.sort(docs);
+                for (int doc : docs) {
+                    out.writeInt(doc);
+                }
+            }
+        }
+        Files.move(tmp, segmentFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Blendet die Segmentdatei ein und liest die Dokumenttabelle; ohne gültige Datei bleibt der Index leer
+    private synchronized void map() {
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != SEGMENT_MAGIC) {
+                logger.warning("Unbekanntes Format der Suchindex-Datei: " + segmentFile);
+                return;
+            }
+            if (!isConsistent(buffer)) {
+                // Der Index bleibt leer; synchronize liest dann alle Ideen neu ein und save ersetzt die Datei
+                logger.warning("Suchindex-Datei ist beschädigt und wird neu aufgebaut: " + segmentFile);
+                return;
+            }
+            segment = buffer;
+            docCount = buffer.getInt(4);
+            termCount = buffer.getInt(8);
+            postingsOffset = buffer.getInt(16);
+            docTableOffset = HEADER_SIZE;
+            termTableOffset = docTableOffset + docCount * DOC_ENTRY_SIZE;
+            for (int doc = 0; doc < docCount; doc++) {
+                segmentDocs.put(docName(doc), doc);
+            }
+        } catch (NoSuchFileException e) {
+            // Noch kein Index vorhanden, synchronize baut ihn auf
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Suchindex-Datei konnte nicht gelesen werden: " + segmentFile, e);
+        }
+    }
+
+    /*
+     * Prüft alle Anzahlen und Offsets des Segments gegen die Dateigröße, damit ein abgeschnittenes oder
+     * beschädigtes Segment beim Lesen keine IndexOutOfBoundsException auslöst.
+     */
+    private static boolean isConsistent(ByteBuffer buffer) {
+        long capacity = buffer.capacity();
+        int docs = buffer.getInt(4);
+        int terms = buffer.getInt(8);
+        int pool = buffer.getInt(12);
+        int postings = buffer.getInt(16);
+        if (docs < 0 || terms < 0
+                || pool != HEADER_SIZE + (long) docs * DOC_ENTRY_SIZE + (long) terms * TERM_ENTRY_SIZE
+                || postings < pool || postings > capacity) {
+            return false;
+        }
+        for (int doc = 0; doc < docs; doc++) {
+            if (!isPoolString(buffer, buffer.getInt(HEADER_SIZE + doc * DOC_ENTRY_SIZE), pool, postings)) {
+                return false;
+            }
+        }
+        long postingCount = 0;
+        int termTable = HEADER_SIZE + docs * DOC_ENTRY_SIZE;
+        for (int term = 0; term < terms; term++) {
+            int entry = termTable + term * TERM_ENTRY_SIZE;
+            int first = buffer.getInt(entry + 4);
+            int count = buffer.getInt(entry + 8);
+            if (!isPoolString(buffer, buffer.getInt(entry), pool, postings) || first < 0 || count < 0) {
+                return false;
+            }
+            postingCount = Math.max(postingCount, (long) first + count);
+        }
+        if (postings + postingCount * 4 > capacity) {
+            return false;
+        }
+        for (long i = 0; i < postingCount; i++) {
+            int doc = buffer.getInt((int) (postings + i * 4));
+            if (doc < 0 || doc >= docs) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Ein Eintrag des String-Pools muss mitsamt seiner Länge vollständig im Pool liegen
+    private static boolean isPoolString(ByteBuffer buffer, int offset, int pool, int poolEnd) {
+        return offset >= pool && offset + 2L <= poolEnd && offset + 2L + (buffer.getShort(offset) & 0xFFFF) <= poolEnd;
+    }
+
+    // Prüft, ob der Index die Idee bereits im Stand des Katalogeintrags enthält
+    private synchronized boolean isCurrent(IdeaIndex.Entry entry) {
+        IdeaIndex.Entry delta = deltaDocs.get(entry.getName());
+        if (delta != null) {
+            return delta.getSize() == entry.getSize() && delta.getLastModifiedNanos() == entry.getLastModifiedNanos();
+        }
+        Integer doc = segmentDocs.get(entry.getName());
+        if (doc == null || staleDocs.get(doc)) {
+            return false;
+        }
+        int offset = docTableOffset + doc * DOC_ENTRY_SIZE;
+        return segment.getLong(offset + 4) == entry.getSize()
+                && segment.getLong(offset + 12) == entry.getLastModifiedNanos();
+    }
+
+    // Dokumentnummern im Segment, deren Begriffe passen (einschließlich ausgeblendeter Dokumente)
+    private BitSet lookupSegment(String term, boolean prefix) {
+        BitSet docs = new BitSet(docCount);
+        if (segment == null) {
+            return docs;
+        }
+        // Erster Begriff >= term; bei einer Präfixsuche folgen alle passenden Begriffe direkt danach
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (termAt(mid).compareTo(term) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < termCount; i++) {
+            String candidate = termAt(i);
+            if (prefix ? !candidate.startsWith(term) : !candidate.equals(term)) {
+                break;
+            }
+            int entry = termTableOffset + i * TERM_ENTRY_SIZE;
+            int first = segment.getInt(entry + 4);
+            int count = segment.getInt(entry + 8);
+            for (int p = 0; p < count; p++) {
+                docs.set(segment.getInt(postingsOffset + (first + p) * 4));
+            }
+        }
+        return docs;
+    }
+
+    private Set<String> lookupDelta(String term, boolean prefix) {
+        Map<String, Set<String>> matches = prefix
+                ? deltaPostings.subMap(term, true, term + Character.MAX_VALUE, false)
+                : deltaPostings.subMap(term, true, term, true);
+        Set<String> names = new HashSet<>();
+        for (Set<String> docs : matches.values()) {
+            names.addAll(docs);
+        }
+        return names;
+    }
+
+    private void removeFromDelta(String fileName) {
+        if (deltaDocs.remove(fileName) == null) {
+            return;
+        }
+        for (String term : deltaTermsByDoc.remove(fileName)) {
+            Set<String> docs = deltaPostings.get(term);
+            docs.remove(fileName);
+            if (docs.isEmpty()) {
+                deltaPostings.remove(term);
+            }
+        }
+    }
+
+    private void hideInSegment(String fileName) {
+        Integer doc = segmentDocs.get(fileName);
+        if (doc != null) {
+            staleDocs.set(doc);
+        }
+    }
+
+    private String termAt(int term) {
+        return string(segment.getInt(termTableOffset + term * TERM_ENTRY_SIZE));
+    }
+
+    private String docName(int doc) {
+        return string(segment.getInt(docTableOffset + doc * DOC_ENTRY_SIZE));
+    }
+
+    // Liest einen Eintrag des String-Pools an der absoluten Position
+    private String string(int offset) {
+        int length = segment.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = segment.duplicate();
+        view.position(offset + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Zerlegt Text in kleingeschriebene Wörter aus Buchstaben und Ziffern
+    private static Set<String> tokenize(String text) {
+        Set<String> terms = new HashSet<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH && i - start <= MAX_TERM_LENGTH) {
+                    terms.add(lower.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
@@ -21,8 +21,12 @@ public class Main {
         FileOperation fileOp = new FileOperation();
         fileOp.write(filePath, "Dies ist ein Testinhalt.");
 
-        // Inhalt der Datei lesen
-        fileOp.read(filePath);
+        // Inhalt der Datei lesen und ausgeben
+        String content = fileOp.read(filePath);
+        if (content != null) {
+            System.out.println("Inhalt von " + filePath + ":");
+            System.out.println(content);
+        }
 
         // Die Transaktion wird beendet und überprüft, ob Konflikte aufgetreten sind
         tm.commitTransaction();
@@ -0,0 +1,330 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merkle-Baum über die Blöcke fester Größe einer Datei. Jedes Blatt ist der SHA-256-Hash eines
+ * Blocks, jeder innere Knoten der Hash seiner beiden Kinder; bei ungerader Anzahl wird der letzte
+ * Knoten einer Ebene unverändert übernommen. Der Knoten i der Ebene L deckt damit immer die Blöcke
+ * [i * 2^L, (i + 1) * 2^L) ab, auch wenn zwei Bäume unterschiedlich viele Blöcke haben.
+ *
+ * Ein Baum kann aus einem älteren Baum derselben Datei neu berechnet werden, wobei nur die als
+ * geändert markierten Blöcke, die hinzugekommenen Blöcke und ihre Pfade zur Wurzel gehasht werden.
+ * diff liefert die Byte-Bereiche, in denen sich zwei Bäume unterscheiden, und steigt dabei nur in
+ * Teilbäume mit unterschiedlichem Hash ab.
+ */
+public final class MerkleTree {
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    private static final int MAX_CACHED_TREES = 1_000;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Unterschiedliche Präfixe für Blätter und innere Knoten, damit beide nie denselben Hash ergeben
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 nicht verfügbar", e);
+        }
+    });
+
+    // Pfad -> zuletzt berechneter Baum; wird über recordWrite an eigene Schreibvorgänge angepasst
+    private static final Map<String, CachedTree> CACHE = new LinkedHashMap<String, CachedTree>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedTree> eldest) {
+            return size() > MAX_CACHED_TREES;
+        }
+    };
+
+    private final int blockSize;
+    private final long size;
+    // levels[0] sind die Blatt-Hashes, die letzte Ebene enthält nur die Wurzel
+    private final byte[][][] levels;
+
+    private MerkleTree(int blockSize, long size, byte[][][] levels) {
+        this.blockSize = blockSize;
+        this.size = size;
+        this.levels = levels;
+    }
+
+    /**
+     * Liest und hasht alle Blöcke der Datei.
+     */
+    public static MerkleTree build(FileChannel channel, int blockSize) throws IOException {
+        long size = channel.size();
+        int blocks = blockCount(size, blockSize);
+        byte[][] leaves = new byte[blocks][];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(blockSize);
+        for (int i = 0; i < blocks; i++) {
+            leaves[i] = hashBlock(channel, buffer, (long) i * blockSize, size);
+        }
+        return new MerkleTree(blockSize, size, buildLevels(leaves, null, null));
+    }
+
+    /**
+     * Baum einer leeren bzw. nicht vorhandenen Datei.
+     */
+    public static MerkleTree empty(int blockSize) {
+        return new MerkleTree(blockSize, 0, buildLevels(new byte[0][], null, null));
+    }
+
+    /**
+     * Berechnet den Baum für den aktuellen Inhalt der Datei. Blöcke, die weder in dirtyRanges liegen
+     * noch durch eine Größenänderung betroffen sind, werden aus diesem Baum übernommen.
+     *
+     * @param dirtyRanges geänderte Byte-Bereiche als {von, bis}, bis exklusiv
+     */
+    public MerkleTree rehash(FileChannel channel, List<long[]> dirtyRanges) throws IOException {
+        long newSize = channel.size();
+        int blocks = blockCount(newSize, blockSize);
+        int oldBlocks = levels[0].length;
+        BitSet changed = new BitSet(blocks);
+        for (long[] range : dirtyRanges) {
+            int from = (int) Math.min(range[0] / blockSize, blocks);
+            int to = (int) Math.min((range[1] - 1) / blockSize + 1, blocks);
+            changed.set(from, Math.max(from, to));
+        }
+        if (newSize != size) {
+            // Der bisher letzte Block ist nun länger oder kürzer, alle dahinter sind neu
+            changed.set(Math.max(0, Math.min(blockCount(size, blockSize), blocks) - 1), blocks);
+        }
+        byte[][] leaves = new byte[blocks][];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(blockSize);
+        for (int i = 0; i < blocks; i++) {
+            if (i < oldBlocks && !changed.get(i)) {
+                leaves[i] = levels[0][i];
+            } else {
+                changed.set(i);
+                leaves[i] = hashBlock(channel, buffer, (long) i * blockSize, newSize);
+            }
+        }
+        return new MerkleTree(blockSize, newSize, buildLevels(leaves, levels, changed));
+    }
+
+    /**
+     * Liefert den Baum für die Datei; ein zwischengespeicherter Baum wird übernommen bzw. nur in den
+     * über recordWrite gemeldeten Bereichen neu gehasht. Wie bei METADATA_FIRST wird dabei darauf
+     * vertraut, dass jede andere Änderung an Größe, mtime oder ctime erkennbar ist.
+     */
+    public static MerkleTree forFile(Path path, FileStat stat) throws IOException {
+        String key = VersionTable.key(path.toString());
+        CachedTree cached;
+        synchronized (CACHE) {
+            cached = CACHE.get(key);
+        }
+        if (cached != null && cached.expected.matches(stat) && cached.dirty.isEmpty()) {
+            return cached.tree;
+        }
+        boolean incremental = cached != null && cached.expected.matches(stat);
+        MerkleTree tree;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> dirty;
+            synchronized (CACHE) {
+                dirty = incremental ? new ArrayList<>(cached.dirty) : null;
+            }
+            tree = incremental ? cached.tree.rehash(channel, dirty) : build(channel, DEFAULT_BLOCK_SIZE);
+        }
+        synchronized (CACHE) {
+            // Wie im HashCache: frisch geänderten Dateien nur trauen, wenn die Änderung gemeldet wurde,
+            // und nur speichern, wenn sich die Datei während des Hashens nicht verändert hat
+            if ((stat.isTrustworthy() || incremental) && stat.matches(FileStat.of(path))) {
+                CACHE.put(key, new CachedTree(tree, stat));
+            } else {
+                CACHE.remove(key);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Gibt an, ob für die Datei ein Baum zwischengespeichert ist; nur dann lohnt sich recordWrite.
+     */
+    public static boolean isCached(Path path) {
+        synchronized (CACHE) {
+            return CACHE.containsKey(VersionTable.key(path.toString()));
+        }
+    }
+
+    /**
+     * Meldet einen eigenen Schreibvorgang. Passt der Zustand vor dem Schreiben zum gespeicherten
+     * Baum, bleibt er gültig und beim nächsten forFile wird nur der Bereich neu gehasht; andernfalls
+     * wird er verworfen.
+     *
+     * @param to exklusives Ende des geschriebenen Bereichs, Long.MAX_VALUE für "bis zum Dateiende"
+     */
+    public static void recordWrite(Path path, FileStat before, FileStat after, long from, long to) {
+        String key = VersionTable.key(path.toString());
+        synchronized (CACHE) {
+            CachedTree cached = CACHE.get(key);
+            if (cached == null) {
+                return;
+            }
+            if (before == null || after == null || !cached.expected.matches(before)) {
+                CACHE.remove(key);
+                return;
+            }
+            cached.expected = after;
+            cached.dirty.add(new long[]{from, to});
+        }
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getRootHash() {
+        byte[] root = levels[levels.length - 1][0];
+        char[] chars = new char[root.length * 2];
+        for (int i = 0; i < root.length; i++) {
+            int v = root[i] & 0xff;
+            chars[i * 2] = HEX_DIGITS[v >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[v & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Liefert die Byte-Bereiche {von, bis}, in denen sich die Bäume unterscheiden; aneinander
+     * grenzende Bereiche werden zusammengefasst. Ist eine Datei länger, gehört ihr Überhang dazu.
+     */
+    public List<long[]> diff(MerkleTree other) {
+        if (other.blockSize != blockSize) {
+            throw new IllegalArgumentException("Unterschiedliche Blockgrößen: " + blockSize + ", " + other.blockSize);
+        }
+        List<long[]> ranges = new ArrayList<>();
+        int top = Math.min(levels.length, other.levels.length) - 1;
+        for (int i = 0; i < Math.max(levels[top].length, other.levels[top].length); i++) {
+            diff(other, top, i, ranges);
+        }
+        return ranges;
+    }
+
+    private void diff(MerkleTree other, int level, int index, List<long[]> ranges) {
+        boolean inThis = index < levels[level].length;
+        boolean inOther = index < other.levels[level].length;
+        if (inThis && inOther && Arrays.equals(levels[level][index], other.levels[level][index])) {
+            return;
+        }
+        if (level > 0 && inThis && inOther) {
+            diff(other, level - 1, 2 * index, ranges);
+            diff(other, level - 1, 2 * index + 1, ranges);
+            return;
+        }
+        // Blatt mit unterschiedlichem Hash oder Teilbaum, der nur in einem der Bäume existiert
+        long from = ((long) index << level) * blockSize;
+        long to = Math.min(((long) (index + 1) << level) * blockSize, Math.max(size, other.size));
+        if (from >= to) {
+            return;
+        }
+        long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last[1] == from) {
+            last[1] = to;
+        } else {
+            ranges.add(new long[]{from, to});
+        }
+    }
+
+    private static int blockCount(long size, int blockSize) {
+        long blocks = (size + blockSize - 1) / blockSize;
+        if (blocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Datei zu groß für Blockgröße " + blockSize + ": " + size);
+        }
+        return (int) blocks;
+    }
+
+    private static byte[] hashBlock(FileChannel channel, ByteBuffer buffer, long position, long size)
+            throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), size - position));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                // Datei wurde während des Lesens gekürzt; der Block wird mit dem gelesenen Teil gehasht
+                break;
+            }
+        }
+        buffer.flip();
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        digest.update(LEAF_PREFIX);
+        digest.update(buffer);
+        return digest.digest();
+    }
+
+    /*
+     * Baut die inneren Ebenen auf. Sind ein alter Baum und die geänderten Blätter angegeben, werden
+     * nur Knoten neu gehasht, unter denen sich etwas geändert hat.
+     */
+    private static byte[][][] buildLevels(byte[][] leaves, byte[][][] old, BitSet changedLeaves) {
+        List<byte[][]> result = new ArrayList<>();
+        result.add(leaves);
+        if (leaves.length == 0) {
+            MessageDigest digest = DIGEST.get();
+            digest.reset();
+            digest.update(LEAF_PREFIX);
+            result.add(new byte[][]{digest.digest()});
+            return result.toArray(new byte[0][][]);
+        }
+        byte[][] current = leaves;
+        BitSet changed = changedLeaves;
+        int level = 0;
+        while (current.length > 1) {
+            int width = (current.length + 1) / 2;
+            byte[][] parents = new byte[width][];
+            BitSet changedParents = new BitSet(width);
+            byte[][] oldParents = old != null && level + 1 < old.length ? old[level + 1] : null;
+            for (int i = 0; i < width; i++) {
+                // Der letzte Knoten einer Ebene hängt von der Anzahl der Knoten ab und wird immer neu berechnet
+                boolean reuse = oldParents != null && i < oldParents.length && i < width - 1
+                        && !changed.get(2 * i) && !changed.get(2 * i + 1) && i < oldParents.length - 1;
+                if (reuse) {
+                    parents[i] = oldParents[i];
+                    continue;
+                }
+                changedParents.set(i);
+                if (2 * i + 1 < current.length) {
+                    MessageDigest digest = DIGEST.get();
+                    digest.reset();
+                    digest.update(NODE_PREFIX);
+                    digest.update(current[2 * i]);
+                    digest.update(current[2 * i + 1]);
+                    parents[i] = digest.digest();
+                } else {
+                    parents[i] = current[2 * i];
+                }
+            }
+            result.add(parents);
+            current = parents;
+            changed = changedParents;
+            level++;
+        }
+        return result.toArray(new byte[0][][]);
+    }
+
+    // Eintrag des Caches: Baum, erwartete Stat-Daten nach den gemeldeten Schreibvorgängen, geänderte Bereiche
+    private static final class CachedTree {
+        private final MerkleTree tree;
+        private FileStat expected;
+        private final List<long[]> dirty = new ArrayList<>();
+
+        private CachedTree(MerkleTree tree, FileStat stat) {
+            this.tree = tree;
+            this.expected = stat;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prüft die registrierten Dateien einer Transaktion parallel auf Konflikte.
+ * Die Anzahl gleichzeitiger Dateizugriffe wird über eine Semaphore begrenzt, damit auch bei
+ * Executors mit sehr vielen Threads (z.B. virtuellen Threads) das Speichersystem nicht überlastet wird.
+ */
+public class ParallelValidator implements AutoCloseable {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(ParallelValidator.class.getName());
+
+    private final ExecutorService executor;
+    private final Semaphore ioPermits;
+    // Nur selbst erzeugte Pools werden beim Schließen beendet
+    private final boolean ownsExecutor;
+
+    /**
+     * Erzeugt einen Validator mit einem eigenen, begrenzten ForkJoinPool.
+     */
+    public ParallelValidator(int parallelism) {
+        this(new ForkJoinPool(parallelism), parallelism, true);
+    }
+
+    /**
+     * Verwendet einen vorhandenen Executor (z.B. einen Executor mit virtuellen Threads) und
+     * begrenzt die gleichzeitigen Dateizugriffe auf maxConcurrentIo.
+     */
+    public ParallelValidator(ExecutorService executor, int maxConcurrentIo) {
+        this(executor, maxConcurrentIo, false);
+    }
+
+    private ParallelValidator(ExecutorService executor, int maxConcurrentIo, boolean ownsExecutor) {
+        if (maxConcurrentIo < 1) {
+            throw new IllegalArgumentException("maxConcurrentIo muss mindestens 1 sein: " + maxConcurrentIo);
+        }
+        this.executor = executor;
+        this.ioPermits = new Semaphore(maxConcurrentIo);
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Wendet die Prüfung parallel auf alle Dateien an. Ist stopAtFirstConflict gesetzt, werden
+     * nach dem ersten Konflikt keine weiteren Dateien mehr gelesen.
+     *
+     * @param check liefert true, wenn für die Datei ein Konflikt vorliegt
+     */
+    public boolean hasConflict(Map<String, FileMetadata> originalMetadata,
+                               BiPredicate<String, FileMetadata> check, boolean stopAtFirstConflict) {
+        return !findConflicts(originalMetadata, check, stopAtFirstConflict).isEmpty();
+    }
+
+    /**
+     * Wie hasConflict, liefert aber die Pfade der Dateien mit Konflikt. Dateien, deren Prüfung
+     * fehlgeschlagen ist oder durch eine Unterbrechung nicht abgeschlossen wurde, zählen als Konflikt.
+     */
+    public List<String> findConflicts(Map<String, FileMetadata> originalMetadata,
+                                      BiPredicate<String, FileMetadata> check, boolean stopAtFirstConflict) {
+        List<String> conflicts = new ArrayList<>();
+        if (originalMetadata.size() <= 1) {
+            // Für eine einzelne Datei lohnt sich die Übergabe an einen anderen Thread nicht
+            for (Map.Entry<String, FileMetadata> entry : originalMetadata.entrySet()) {
+                if (check.test(entry.getKey(), entry.getValue())) {
+                    conflicts.add(entry.getKey());
+                }
+            }
+            return conflicts;
+        }
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executor);
+        // Futures vergleichen per Identität; über die Zuordnung wird das Ergebnis einer Datei zugeordnet
+        Map<Future<Boolean>, String> pending = new HashMap<>();
+        for (Map.Entry<String, FileMetadata> entry : originalMetadata.entrySet()) {
+            pending.put(completionService.submit(() -> checkFile(entry.getKey(), entry.getValue(), check, stop)),
+                    entry.getKey());
+        }
+        List<Future<Boolean>> futures = new ArrayList<>(pending.keySet());
+
+        try {
+            while (!pending.isEmpty()) {
+                Future<Boolean> future = completionService.take();
+                String filePath = pending.remove(future);
+                try {
+                    if (future.get()) {
+                        conflicts.add(filePath);
+                        if (stopAtFirstConflict) {
+                            stop.set(true);
+                            break;
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    logger.log(Level.SEVERE, "Fehler bei der parallelen Konfliktprüfung: " + filePath, e.getCause());
+                    conflicts.add(filePath);
+                    stop.set(true);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop.set(true);
+            // Ohne vollständige Prüfung kann Konfliktfreiheit nicht zugesichert werden
+            conflicts.addAll(pending.values());
+        }
+        if (stop.get()) {
+            // Noch wartende Prüfungen verwerfen; laufende Lesevorgänge werden nicht unterbrochen
+            for (Future<Boolean> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return conflicts;
+    }
+
+    private boolean checkFile(String filePath, FileMetadata oldMeta, BiPredicate<String, FileMetadata> check,
+                              AtomicBoolean stop) throws InterruptedException {
+        if (stop.get()) {
+            return false;
+        }
+        ioPermits.acquire();
+        try {
+            return !stop.get() && check.test(filePath, oldMeta);
+        } finally {
+            ioPermits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ein Lock pro Datei für den Commit von Transaktionen mit vorgemerkten Schreibvorgängen. Die Locks
+ * einer Transaktion werden immer in der globalen Reihenfolge der normalisierten Pfade (siehe
+ * VersionTable.key) angefordert und in umgekehrter Reihenfolge freigegeben. Da keine Transaktion
+ * auf ein Lock wartet, während sie ein in dieser Reihenfolge späteres hält, entstehen keine Deadlocks.
+ *
+ * Transaktionen auf disjunkten Dateien blockieren sich gegenseitig nicht.
+ *
+ * Die Locks gehören keinem Thread, damit eine Transaktion sie auch über die asynchronen Methoden des
+ * TransactionManager hinweg halten und in einem anderen Thread freigeben kann. Sie sind daher nicht
+ * wiedereintrittsfähig.
+ */
+public class PathLockTable {
+    private static final PathLockTable SHARED = new PathLockTable();
+
+    private final ConcurrentHashMap<String, Semaphore> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Liefert die Tabelle, die alle TransactionManager im Prozess gemeinsam nutzen.
+     */
+    public static PathLockTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Sperrt alle Pfade in kanonischer Reihenfolge. Mehrfach genannte oder unterschiedlich
+     * geschriebene Pfade derselben Datei werden nur einmal gesperrt.
+     *
+     * @return Handle, dessen close() alle Locks wieder freigibt
+     */
+    public Locks lockAll(Collection<String> filePaths) {
+        TreeSet<String> keys = new TreeSet<>();
+        for (String filePath : filePaths) {
+            keys.add(VersionTable.key(filePath));
+        }
+        List<Semaphore> held = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Semaphore lock = lock(key);
+            lock.acquireUninterruptibly();
+            held.add(lock);
+        }
+        return new Locks(() -> {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).release();
+            }
+        });
+    }
+
+    /**
+     * Sperrt den Pfad nur, wenn er gerade frei ist, und wartet nie. Für Transaktionen, die bereits
+     * Locks halten und ein weiteres außerhalb der kanonischen Reihenfolge brauchen.
+     *
+     * @return Handle zum Freigeben oder null, wenn der Pfad gesperrt ist
+     */
+    public Locks tryLock(String filePath) {
+        Semaphore lock = lock(VersionTable.key(filePath));
+        return lock.tryAcquire() ? new Locks(lock::release) : null;
+    }
+
+    private Semaphore lock(String key) {
+        return locks.computeIfAbsent(key, k -> new Semaphore(1));
+    }
+
+    /**
+     * Gibt an, ob gerade ein Commit die Datei gesperrt hat. Liest nur den Zustand des Locks und
+     * blockiert nie; gedacht für Nur-Lese-Transaktionen, die selbst keine Locks anfordern.
+     */
+    public boolean isLocked(String filePath) {
+        Semaphore lock = locks.get(VersionTable.key(filePath));
+        return lock != null && lock.availablePermits() == 0;
+    }
+
+    /**
+     * Die von lockAll gehaltenen Locks; close() gibt sie in umgekehrter Reihenfolge frei.
+     */
+    public static final class Locks implements AutoCloseable {
+        private Runnable release;
+
+        Locks(Runnable release) {
+            this.release = release;
+        }
+
+        @Override
+        public void close() {
+            if (release != null) {
+                release.run();
+                release = null;
+            }
+        }
+    }
+}
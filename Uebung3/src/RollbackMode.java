@@ -0,0 +1,14 @@
+/**
+ * Legt fest, wie der TransactionManager eine Transaktion zurücksetzt.
+ */
+public enum RollbackMode {
+    /**
+     * Rollback über den Snapshot des SnapshotBackends (bei ZFS das gesamte Dataset, Standard).
+     */
+    SNAPSHOT,
+    /**
+     * Rollback über ein Undo-Log pro Transaktion: Nur die registrierten Dateien werden aus ihren
+     * Before-Images wiederhergestellt. Änderungen anderer Transaktionen bleiben erhalten.
+     */
+    UNDO_LOG
+}
@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshot-Backend ohne ZFS: Statt das gesamte Dataset zu sichern, wird von jeder registrierten
+ * Datei vor der ersten Änderung ein Abbild (Before-Image) im Schattenverzeichnis abgelegt und beim
+ * Rollback zurückgespielt (siehe UndoLog). Es wird kein externer Prozess gestartet, daher kostet
+ * ein Snapshot nur so viel wie das Kopieren der registrierten Dateien.
+ *
+ * Hardlinks werden bewusst nicht verwendet: FileOperation schreibt Dateien an Ort und Stelle
+ * (TRUNCATE_EXISTING), ein Hardlink würde die Änderung also mitsehen. Reflinks lassen sich aus
+ * Java nicht ohne nativen Code anlegen, daher wird immer kopiert.
+ */
+public class ShadowCopySnapshotBackend implements SnapshotBackend {
+    // Prozessweit eindeutig, damit sich mehrere Backends ein Schattenverzeichnis teilen können
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final Path shadowRoot;
+
+    /**
+     * Legt die Before-Images in einem temporären Verzeichnis des Prozesses ab, das beim Beenden der
+     * JVM gelöscht wird.
+     */
+    public ShadowCopySnapshotBackend() {
+        this(UndoLog.temporaryRoot("transaction_shadow"));
+    }
+
+    public ShadowCopySnapshotBackend(Path shadowRoot) {
+        this.shadowRoot = shadowRoot;
+    }
+
+    @Override
+    public Snapshot createSnapshot() {
+        // Das Verzeichnis wird erst beim ersten Before-Image angelegt
+        return new ShadowSnapshot("shadow_snapshot_" + sequence.incrementAndGet());
+    }
+
+    private class ShadowSnapshot implements Snapshot {
+        private final String name;
+        private final UndoLog undoLog;
+
+        private ShadowSnapshot(String name) {
+            this.name = name;
+            this.undoLog = new UndoLog(shadowRoot);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Sichert die Datei, sofern sie in diesem Snapshot noch nicht gesichert wurde.
+         */
+        @Override
+        public void protect(Path file) throws IOException {
+            undoLog.record(file);
+        }
+
+        /**
+         * Merkt sich nur die Länge; das Rollback kürzt die Datei wieder darauf.
+         */
+        @Override
+        public void protectAppend(Path file, long length) throws IOException {
+            undoLog.recordAppend(file, length);
+        }
+
+        /**
+         * Spielt alle gesicherten Dateien zurück. Dateien, die beim Snapshot noch nicht existierten,
+         * werden gelöscht.
+         */
+        @Override
+        public boolean rollback() {
+            boolean success = undoLog.restore();
+            if (success) {
+                TransactionEventBus.shared().publish(TransactionEventType.SNAPSHOT_ROLLED_BACK, null, name);
+            } else {
+                System.err.println("Fehler beim Rollback auf Snapshot '" + name + "'.");
+            }
+            return success;
+        }
+
+        /**
+         * Löscht die Before-Images.
+         */
+        @Override
+        public void release() {
+            undoLog.discard();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Versionstabelle in einer in den Speicher gemappten Datei, die sich mehrere Prozesse auf demselben
+ * Rechner teilen. So erkennen auch TransactionManager in verschiedenen JVMs (z.B. zwei laufende
+ * BrainstormingTools) ihre Commits gegenseitig, ohne Hintergrundprozess und ohne Systemaufruf pro
+ * Prüfung: alle Zugriffe sind Lese- bzw. CAS-Operationen per VarHandle direkt auf der Abbildung.
+ *
+ * Die Tabelle hat eine feste Anzahl von Einträgen mit offener Adressierung (lineares Sondieren). Ein
+ * Eintrag enthält den 64-Bit-Hash des normalisierten Pfades, ein Versionswort und ein Commit-Lock.
+ * Im Versionswort stehen die Version (obere Bits) und die Prozess-ID des Prozesses, der den Eintrag
+ * gerade prüft und erhöht (untere PID_BITS Bits, 0 = frei); Sperren und Entsperren ist damit ein
+ * einziges CAS. Stirbt ein Prozess, während er einen Eintrag hält, übernimmt ein wartender Prozess
+ * den Eintrag, sobald er festgestellt hat, dass der Besitzer nicht mehr läuft.
+ *
+ * Einträge werden nie entfernt. Zwei Pfade mit gleichem Hash teilen sich einen Eintrag; das führt
+ * höchstens zu unnötigen Konflikten, nie zu übersehenen.
+ *
+ * Die Datei darf nicht in einem Dateisystem liegen, das per Snapshot zurückgesetzt wird (z.B. im
+ * ZFS-Dataset der überwachten Dateien): ein Rollback setzte sonst auch Versionen und Locks zurück,
+ * und andere Prozesse übersähen danach Commits. Geeignet ist z.B. /dev/shm.
+ */
+public class SharedVersionTable extends VersionTable {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(SharedVersionTable.class.getName());
+
+    public static final int DEFAULT_SLOTS = 1 << 16;
+    // "SVT1"
+    private static final int MAGIC = 0x53565431;
+    private static final int HEADER_SIZE = 64;
+    // Hash, Versionswort, Commit-Lock, Auffüllung auf 32 Bytes
+    private static final int SLOT_SIZE = 32;
+    private static final int VERSION_OFFSET = 8;
+    private static final int LOCK_OFFSET = 16;
+    // Linux vergibt Prozess-IDs bis höchstens 2^22
+    private static final int PID_BITS = 23;
+    private static final long PID_MASK = (1L << PID_BITS) - 1;
+    // Wie lange auf einen Eintrag gewartet wird, bevor geprüft wird, ob sein Besitzer noch lebt
+    private static final long OWNER_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final long pid;
+    // Pfad -> Index des Eintrags; erspart nach dem ersten Zugriff Hashen und Sondieren
+    private final ConcurrentHashMap<String, Integer> slotCache = new ConcurrentHashMap<>();
+    private final PathLockTable pathLocks = new SharedPathLocks();
+
+    private SharedVersionTable(MappedByteBuffer buffer, int slots, long pid) {
+        super(1);
+        this.buffer = buffer;
+        this.slots = slots;
+        this.pid = pid;
+    }
+
+    public static SharedVersionTable open(Path file) throws IOException {
+        return open(file, DEFAULT_SLOTS);
+    }
+
+    /**
+     * Öffnet die Tabelle bzw. legt sie mit der angegebenen Anzahl von Einträgen an. Existiert die Datei
+     * bereits, gilt ihre Größe. Nur das Anlegen ist über eine Dateisperre gegen andere Prozesse geschützt.
+     */
+    public static SharedVersionTable open(Path file, int slotCount) throws IOException {
+        long pid = ProcessHandle.current().pid();
+        if (pid <= 0 || pid > PID_MASK) {
+            throw new IOException("Prozess-ID passt nicht in die Versionstabelle: " + pid);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                MappedByteBuffer buffer;
+                int slots;
+                if (channel.size() == 0) {
+                    slots = slotCount;
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+                    buffer.putInt(4, slots);
+                    // Die Kennung zuletzt, damit nur vollständig angelegte Tabellen gültig sind
+                    INTS.setRelease(buffer, 0, MAGIC);
+                    buffer.force();
+                } else {
+                    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                    if ((int) INTS.getAcquire(header, 0) != MAGIC) {
+                        throw new IOException("Keine gültige Versionstabelle: " + file);
+                    }
+                    slots = header.getInt(4);
+                    if (channel.size() < HEADER_SIZE + (long) slots * SLOT_SIZE) {
+                        throw new IOException("Versionstabelle ist unvollständig: " + file);
+                    }
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+                }
+                return new SharedVersionTable(buffer, slots, pid);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Liefert eine PathLockTable, deren Locks in derselben Datei liegen und damit auch zwischen
+     * Prozessen wirken. Für vorgemerkte Schreibvorgänge zusammen mit dieser Tabelle verwenden.
+     */
+    public PathLockTable pathLockTable() {
+        return pathLocks;
+    }
+
+    @Override
+    public long currentVersion(String key) {
+        return (long) LONGS.getAcquire(buffer, offset(slotFor(key)) + VERSION_OFFSET) >>> PID_BITS;
+    }
+
+    @Override
+    public List<String> validateAndBump(Map<String, Long> readVersions) {
+        int[] held = lockVersions(readVersions.keySet());
+        boolean bump = false;
+        try {
+            List<String> conflicts = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : readVersions.entrySet()) {
+                if (currentVersion(entry.getKey()) != entry.getValue()) {
+                    conflicts.add(entry.getKey());
+                }
+            }
+            bump = conflicts.isEmpty();
+            return conflicts;
+        } finally {
+            unlockVersions(held, bump);
+        }
+    }
+
+    @Override
+    public void bump(Collection<String> keys) {
+        unlockVersions(lockVersions(keys), true);
+    }
+
+    // Sperrt die Versionswörter in aufsteigender Reihenfolge der Einträge (dadurch keine Deadlocks)
+    private int[] lockVersions(Collection<String> keys) {
+        int[] sorted = sortedSlots(keys);
+        for (int slot : sorted) {
+            acquire(offset(slot) + VERSION_OFFSET);
+        }
+        return sorted;
+    }
+
+    // Gibt die Versionswörter in umgekehrter Reihenfolge frei, bei bump mit erhöhter Version
+    private void unlockVersions(int[] sorted, boolean bump) {
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            int index = offset(sorted[i]) + VERSION_OFFSET;
+            long version = (long) LONGS.getOpaque(buffer, index) >>> PID_BITS;
+            LONGS.setRelease(buffer, index, (bump ? version + 1 : version) << PID_BITS);
+        }
+    }
+
+    /*
+     * Trägt die eigene Prozess-ID in die unteren Bits des Wortes ein, sobald dort keine steht. Läuft
+     * der eingetragene Besitzer nicht mehr, wird der Eintrag übernommen; die Version bleibt dabei erhalten.
+     */
+    private void acquire(int index) {
+        int spins = 0;
+        long waitingSince = 0;
+        while (true) {
+            long word = (long) LONGS.getAcquire(buffer, index);
+            long owner = word & PID_MASK;
+            if (owner == 0) {
+                if (LONGS.compareAndSet(buffer, index, word, word | pid)) {
+                    return;
+                }
+                continue;
+            }
+            if (++spins < SPIN_LIMIT) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Thread.yield();
+            long now = System.nanoTime();
+            if (waitingSince == 0) {
+                waitingSince = now;
+            } else if (now - waitingSince > OWNER_CHECK_NANOS) {
+                if (owner != pid && !isAlive(owner)
+                        && LONGS.compareAndSet(buffer, index, word, word & ~PID_MASK)) {
+                    logger.warning("Eintrag der Versionstabelle von beendetem Prozess " + owner + " übernommen.");
+                }
+                waitingSince = now;
+            }
+        }
+    }
+
+    private static boolean isAlive(long pid) {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    // Eindeutige Einträge der Pfade in aufsteigender Reihenfolge
+    private int[] sortedSlots(Collection<String> keys) {
+        TreeSet<Integer> sorted = new TreeSet<>();
+        for (String key : keys) {
+            sorted.add(slotFor(key));
+        }
+        return sorted.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /*
+     * Sucht den Eintrag des Pfades und legt ihn bei Bedarf per CAS auf das Hash-Feld an. Der Index
+     * wird pro Prozess gemerkt, da Einträge ihren Platz nie wechseln.
+     */
+    private int slotFor(String key) {
+        Integer cached = slotCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long hash = hash(key);
+        int start = (int) Long.remainderUnsigned(hash, slots);
+        for (int i = 0; i < slots; i++) {
+            int slot = (start + i) % slots;
+            int index = offset(slot);
+            long stored = (long) LONGS.getAcquire(buffer, index);
+            if (stored == 0 && LONGS.compareAndSet(buffer, index, 0L, hash)) {
+                stored = hash;
+            } else if (stored == 0) {
+                stored = (long) LONGS.getAcquire(buffer, index);
+            }
+            if (stored == hash) {
+                slotCache.put(key, slot);
+                return slot;
+            }
+        }
+        throw new IllegalStateException("Versionstabelle ist voll (" + slots + " Einträge)");
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // FNV-1a über den Pfad mit abschließender Durchmischung; in allen JVMs gleich, 0 bedeutet "frei"
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /*
+     * Commit-Locks für vorgemerkte Schreibvorgänge im dritten Wort jedes Eintrags (Prozess-ID des
+     * Besitzers, 0 = frei). Threads desselben Prozesses schließen sich ebenfalls aus, da nur ein
+     * freies Wort übernommen werden kann.
+     */
+    private final class SharedPathLocks extends PathLockTable {
+        @Override
+        public Locks lockAll(Collection<String> filePaths) {
+            List<String> keys = new ArrayList<>();
+            for (String filePath : filePaths) {
+                keys.add(VersionTable.key(filePath));
+            }
+            int[] sorted = sortedSlots(keys);
+            for (int slot : sorted) {
+                acquire(offset(slot) + LOCK_OFFSET);
+            }
+            return new Locks(() -> {
+                for (int i = sorted.length - 1; i >= 0; i--) {
+                    LONGS.setRelease(buffer, offset(sorted[i]) + LOCK_OFFSET, 0L);
+                }
+            });
+        }
+
+        @Override
+        public Locks tryLock(String filePath) {
+            int index = offset(slotFor(VersionTable.key(filePath))) + LOCK_OFFSET;
+            if (!LONGS.compareAndSet(buffer, index, 0L, pid)
+                    && !(releaseIfOwnerDead(index) && LONGS.compareAndSet(buffer, index, 0L, pid))) {
+                return null;
+            }
+            return new Locks(() -> LONGS.setRelease(buffer, index, 0L));
+        }
+
+        @Override
+        public boolean isLocked(String filePath) {
+            int index = offset(slotFor(VersionTable.key(filePath))) + LOCK_OFFSET;
+            long word = (long) LONGS.getAcquire(buffer, index);
+            return (word & PID_MASK) != 0 && !releaseIfOwnerDead(index);
+        }
+
+        // Gibt ein Lock frei, dessen Besitzer nicht mehr läuft; true, wenn es danach frei ist
+        private boolean releaseIfOwnerDead(int index) {
+            long word = (long) LONGS.getAcquire(buffer, index);
+            long owner = word & PID_MASK;
+            if (owner == 0) {
+                return true;
+            }
+            if (owner == pid || isAlive(owner)) {
+                return false;
+            }
+            if (LONGS.compareAndSet(buffer, index, word, word & ~PID_MASK)) {
+                logger.warning("Lock der Versionstabelle von beendetem Prozess " + owner + " freigegeben.");
+                return true;
+            }
+            return ((long) LONGS.getAcquire(buffer, index) & PID_MASK) == 0;
+        }
+    }
+}
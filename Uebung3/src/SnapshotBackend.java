@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Abstraktion für die Wiederherstellungspunkte, die der TransactionManager zu Beginn einer
+ * Transaktion anlegt und bei einem Konflikt zurückspielt.
+ */
+public interface SnapshotBackend {
+
+    /**
+     * Legt einen neuen Wiederherstellungspunkt an.
+     *
+     * @return der Snapshot oder null, falls er nicht erstellt werden konnte
+     */
+    Snapshot createSnapshot();
+
+    /**
+     * Asynchrone Variante von createSnapshot. Backends, die auf externe Prozesse warten, erfüllen
+     * das Future, ohne dafür einen Thread zu blockieren; standardmäßig wird createSnapshot direkt
+     * im aufrufenden Thread ausgeführt.
+     *
+     * @return Future mit dem Snapshot oder null, falls er nicht erstellt werden konnte
+     */
+    default CompletableFuture<Snapshot> createSnapshotAsync() {
+        return CompletableFuture.completedFuture(createSnapshot());
+    }
+
+    /**
+     * Ein einzelner Wiederherstellungspunkt einer Transaktion.
+     */
+    interface Snapshot {
+
+        String getName();
+
+        /**
+         * Wird für jede registrierte Datei aufgerufen, bevor die Transaktion sie verändert.
+         * Backends, die das gesamte Dateisystem sichern (ZFS), müssen hier nichts tun.
+         */
+        default void protect(Path file) throws IOException {
+        }
+
+        /**
+         * Wird für Dateien aufgerufen, an die die Transaktion nur anhängt. Für das Rollback genügt
+         * dann die bisherige Länge; standardmäßig wird wie bei protect gesichert.
+         */
+        default void protectAppend(Path file, long length) throws IOException {
+            protect(file);
+        }
+
+        /**
+         * Stellt den Zustand zum Zeitpunkt des Snapshots wieder her.
+         *
+         * @return true, wenn das Rollback erfolgreich war
+         */
+        boolean rollback();
+
+        /**
+         * Asynchrone Variante von rollback; standardmäßig wird rollback direkt ausgeführt.
+         */
+        default CompletableFuture<Boolean> rollbackAsync() {
+            return CompletableFuture.completedFuture(rollback());
+        }
+
+        /**
+         * Gibt den Snapshot frei, nachdem die Transaktion abgeschlossen ist.
+         */
+        default void release() {
+        }
+    }
+}
@@ -0,0 +1,450 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verwaltet die ZFS-Snapshots eines ZfsSnapshotBackend über ihre gesamte Lebensdauer:
+ * - Snapshots werden im Hintergrund vorab erstellt, sodass beginTransaction in der Regel einen
+ *   fertigen Snapshot aus dem Vorrat erhält, statt auf "zfs snapshot" zu warten.
+ * - Es wird verfolgt, welche Snapshots noch von laufenden Transaktionen referenziert werden.
+ * - Nicht mehr referenzierte Snapshots werden periodisch gelöscht, wobei die jüngsten
+ *   keepUnreferenced erhalten bleiben. Aufeinanderfolgende Snapshots werden dabei mit einem einzigen
+ *   "zfs destroy pool@a%b,c" entfernt.
+ *
+ * Ein vorab erstellter Snapshot ist nur dann ein gültiger Wiederherstellungspunkt, wenn sich das Dataset
+ * seitdem nicht verändert hat. Vor der Ausgabe wird daher über die ZFS-Eigenschaft written@snapshot
+ * geprüft, dass seitdem nichts geschrieben wurde (auch nicht außerhalb von Transaktionen). Ist das nicht
+ * der Fall, wird wie bisher ein neuer Snapshot erstellt. Aufgefüllt wird erst, wenn eine Transaktion
+ * endet und der Vorrat leer ist; so entstehen bei gleichzeitigen Transaktionen nicht ständig Snapshots,
+ * die schon bei ihrer Ausgabe veraltet sind. Das Dataset sollte deshalb nur die Dateien der Transaktionen
+ * enthalten, keine Dateien, die eine Anwendung nebenbei schreibt (z.B. Indizes).
+ *
+ * Vor einem Rollback löscht der Dienst die jüngeren Snapshots, die er selbst erstellt hat und die
+ * niemand mehr referenziert (Vorrat und nicht mehr referenzierte). Anschließend wird ein einfaches
+ * "zfs rollback" ausgeführt; gibt es danach noch jüngere Snapshots, etwa von laufenden Transaktionen
+ * oder fremde, lehnt zfs das Rollback ab. Gelöscht werden nur Snapshots, die dieser Dienst selbst
+ * erstellt hat.
+ */
+public class SnapshotLifecycleService implements SnapshotBackend, AutoCloseable {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(SnapshotLifecycleService.class.getName());
+
+    // Obergrenze für die Einträge eines zfs destroy, damit die Kommandozeile nicht zu lang wird
+    private static final int MAX_RANGES_PER_DESTROY = 256;
+
+    private enum State { POOLED, REFERENCED, UNREFERENCED }
+
+    // Vorab erstellter Snapshot und die Generation, in der er erstellt wurde
+    private static final class Pooled {
+        private final ZfsSnapshotBackend.ZfsSnapshot snapshot;
+        private final long generation;
+
+        private Pooled(ZfsSnapshotBackend.ZfsSnapshot snapshot, long generation) {
+            this.snapshot = snapshot;
+            this.generation = generation;
+        }
+    }
+
+    private final ZfsSnapshotBackend delegate;
+    private final int poolSize;
+    private final int keepUnreferenced;
+    private final long retentionIntervalNanos;
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean verifyUnchanged = true;
+
+    // Alle Felder ab hier werden unter dem Monitor des Dienstes geändert
+    // Zustand aller Snapshots, die dieser Dienst erstellt und noch nicht gelöscht hat
+    private final Map<String, State> states = new HashMap<>();
+    // Vorrat, jüngster Snapshot zuletzt
+    private final Deque<Pooled> ready = new ArrayDeque<>();
+    // Wird nach jedem Rollback (ohne Prüfung über written@snapshot auch nach jedem Transaktionsende)
+    // erhöht; ältere Snapshots im Vorrat sind damit veraltet
+    private long generation;
+    // Snapshots für den Vorrat, deren zfs-Prozess noch läuft
+    private int creating;
+    private boolean closed;
+
+    /**
+     * @param poolSize           Anzahl vorab erstellter Snapshots (mehrere nur bei gleichzeitigen Transaktionen sinnvoll)
+     * @param keepUnreferenced   Anzahl nicht mehr referenzierter Snapshots, die erhalten bleiben (jüngste zuerst)
+     * @param retentionInterval  Abstand zwischen zwei Löschdurchläufen
+     */
+    public SnapshotLifecycleService(ZfsSnapshotBackend delegate, int poolSize, int keepUnreferenced,
+                                    long retentionInterval, TimeUnit unit) {
+        if (poolSize < 0 || keepUnreferenced < 0 || retentionInterval <= 0) {
+            throw new IllegalArgumentException("Ungültige Einstellungen: poolSize=" + poolSize
+                    + ", keepUnreferenced=" + keepUnreferenced + ", retentionInterval=" + retentionInterval);
+        }
+        this.delegate = delegate;
+        this.poolSize = poolSize;
+        this.keepUnreferenced = keepUnreferenced;
+        this.retentionIntervalNanos = unit.toNanos(retentionInterval);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-lifecycle");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ohne Prüfung über written@snapshot wird ein Snapshot aus dem Vorrat nur anhand der Generation
+     * ausgegeben: jedes Transaktionsende macht den Vorrat ungültig, und Änderungen außerhalb von
+     * Transaktionen werden nicht bemerkt.
+     */
+    public void setVerifyUnchanged(boolean verifyUnchanged) {
+        this.verifyUnchanged = verifyUnchanged;
+    }
+
+    /**
+     * Füllt den Vorrat und startet die periodische Löschung.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::enforceRetention, retentionIntervalNanos, retentionIntervalNanos,
+                TimeUnit.NANOSECONDS);
+        refill();
+    }
+
+    @Override
+    public Snapshot createSnapshot() {
+        return createSnapshotAsync().join();
+    }
+
+    /**
+     * Gibt den jüngsten gültigen Snapshot aus dem Vorrat aus, oder erstellt einen neuen, wenn der Vorrat
+     * leer ist bzw. das Dataset seit dem Snapshot verändert wurde.
+     */
+    @Override
+    public CompletableFuture<Snapshot> createSnapshotAsync() {
+        ZfsSnapshotBackend.ZfsSnapshot pooled = takeReady();
+        if (pooled == null) {
+            return createReferenced();
+        }
+        if (!verifyUnchanged) {
+            return CompletableFuture.completedFuture(new LifecycleSnapshot(pooled));
+        }
+        return delegate.writtenSinceAsync(pooled.getName()).thenCompose(written -> {
+            if (written == 0) {
+                return CompletableFuture.completedFuture(new LifecycleSnapshot(pooled));
+            }
+            // Das Dataset wurde seit dem Snapshot verändert, z.B. außerhalb einer Transaktion
+            unreferenced(pooled.getName());
+            return createReferenced();
+        });
+    }
+
+    // Entnimmt den jüngsten Snapshot der aktuellen Generation; veraltete werden zum Löschen freigegeben
+    private synchronized ZfsSnapshotBackend.ZfsSnapshot takeReady() {
+        ZfsSnapshotBackend.ZfsSnapshot taken = null;
+        for (Iterator<Pooled> it = ready.descendingIterator(); it.hasNext(); ) {
+            Pooled pooled = it.next();
+            if (pooled.generation != generation) {
+                it.remove();
+                states.put(pooled.snapshot.getName(), State.UNREFERENCED);
+            } else if (taken == null) {
+                it.remove();
+                taken = pooled.snapshot;
+                states.put(taken.getName(), State.REFERENCED);
+            }
+        }
+        return taken;
+    }
+
+    // Erstellt einen Snapshot direkt für die aufrufende Transaktion
+    private CompletableFuture<Snapshot> createReferenced() {
+        return delegate.createZfsSnapshotAsync().thenApply(snapshot -> {
+            if (snapshot == null) {
+                return null;
+            }
+            synchronized (this) {
+                states.put(snapshot.getName(), State.REFERENCED);
+            }
+            return new LifecycleSnapshot(snapshot);
+        });
+    }
+
+    // Startet so viele Snapshots für den Vorrat, dass er nach ihrem Abschluss wieder voll ist
+    private void refill() {
+        long startGeneration;
+        int missing;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            missing = poolSize - ready.size() - creating;
+            if (missing <= 0) {
+                return;
+            }
+            creating += missing;
+            startGeneration = generation;
+        }
+        for (int i = 0; i < missing; i++) {
+            delegate.createZfsSnapshotAsync().whenComplete((snapshot, error) -> pooledCreated(snapshot, startGeneration));
+        }
+    }
+
+    private synchronized void pooledCreated(ZfsSnapshotBackend.ZfsSnapshot snapshot, long startGeneration) {
+        creating--;
+        if (snapshot == null) {
+            return;
+        }
+        // Die Generation hat sich während der Erstellung geändert: der Snapshot ist schon veraltet
+        if (closed || startGeneration != generation) {
+            states.put(snapshot.getName(), State.UNREFERENCED);
+            return;
+        }
+        states.put(snapshot.getName(), State.POOLED);
+        ready.addLast(new Pooled(snapshot, startGeneration));
+    }
+
+    private synchronized void unreferenced(String name) {
+        if (states.containsKey(name)) {
+            states.put(name, State.UNREFERENCED);
+        }
+    }
+
+    // Eine Transaktion ist zu Ende gegangen und hat das Dataset womöglich verändert
+    private void transactionEnded(String name) {
+        synchronized (this) {
+            if (states.get(name) == State.REFERENCED) {
+                states.put(name, State.UNREFERENCED);
+            }
+            if (!verifyUnchanged) {
+                generation++;
+            }
+            // Solange noch Snapshots im Vorrat sind, entscheidet written@snapshot bei der Ausgabe
+            if (!ready.isEmpty() || creating > 0) {
+                return;
+            }
+        }
+        refill();
+    }
+
+    // Das Rollback hat das Dataset verändert; Snapshots im Vorrat sind damit veraltet
+    private synchronized void rolledBack() {
+        generation++;
+        releasePool();
+    }
+
+    private synchronized void releasePool() {
+        for (Pooled pooled : ready) {
+            states.put(pooled.snapshot.getName(), State.UNREFERENCED);
+        }
+        ready.clear();
+    }
+
+    /*
+     * Löscht vor einem Rollback die jüngeren Snapshots des Dienstes, die niemand mehr referenziert,
+     * damit zfs das Rollback nicht ablehnt. Läuft auf dem Thread der periodischen Löschung, damit kein
+     * Snapshot von beiden gleichzeitig gelöscht wird.
+     */
+    private CompletableFuture<Void> destroyNewerAsync(String name) {
+        try {
+            return CompletableFuture.runAsync(() -> destroyNewer(name), scheduler);
+        } catch (RejectedExecutionException e) {
+            // Dienst bereits geschlossen
+            destroyNewer(name);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void destroyNewer(String name) {
+        releasePool();
+        List<String> existing;
+        try {
+            existing = delegate.listSnapshots();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Snapshots konnten nicht aufgelistet werden.", e);
+            return;
+        }
+        int index = existing.indexOf(name);
+        if (index < 0) {
+            return;
+        }
+        Set<String> destroy = new HashSet<>();
+        synchronized (this) {
+            for (String newer : existing.subList(index + 1, existing.size())) {
+                if (states.get(newer) == State.UNREFERENCED) {
+                    destroy.add(newer);
+                }
+            }
+        }
+        int destroyed = destroy(existing, destroy);
+        if (destroyed > 0) {
+            TransactionEventBus.shared().publish(TransactionEventType.SNAPSHOTS_DESTROYED, null, destroyed);
+        }
+    }
+
+    /**
+     * Löscht alle nicht mehr referenzierten Snapshots bis auf die jüngsten keepUnreferenced. Die Reihenfolge
+     * wird bei zfs erfragt; nur zusammenhängende Folgen solcher Snapshots werden als Bereich a%b gelöscht,
+     * damit kein referenzierter oder fremder Snapshot dazwischen erfasst wird.
+     *
+     * @return Anzahl der gelöschten Snapshots
+     */
+    int enforceRetention() {
+        synchronized (this) {
+            long unreferenced = states.values().stream().filter(state -> state == State.UNREFERENCED).count();
+            if (unreferenced <= keepUnreferenced) {
+                return 0;
+            }
+        }
+        List<String> existing;
+        try {
+            existing = delegate.listSnapshots();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Snapshots konnten nicht aufgelistet werden.", e);
+            return 0;
+        }
+        Set<String> destroy = new HashSet<>();
+        synchronized (this) {
+            // Nicht mehr vorhandene Snapshots (z.B. von Hand gelöscht) vergessen
+            Set<String> present = new HashSet<>(existing);
+            states.entrySet().removeIf(entry -> entry.getValue() == State.UNREFERENCED && !present.contains(entry.getKey()));
+            List<String> unreferenced = new ArrayList<>();
+            for (String name : existing) {
+                if (states.get(name) == State.UNREFERENCED) {
+                    unreferenced.add(name);
+                }
+            }
+            destroy.addAll(unreferenced.subList(0, Math.max(0, unreferenced.size() - keepUnreferenced)));
+        }
+        int destroyed = destroy(existing, destroy);
+        if (destroyed > 0) {
+            TransactionEventBus.shared().publish(TransactionEventType.SNAPSHOTS_DESTROYED, null, destroyed);
+        }
+        return destroyed;
+    }
+
+    // Löscht die Snapshots in Bereichen von höchstens MAX_RANGES_PER_DESTROY Einträgen pro zfs destroy
+    private int destroy(List<String> existing, Set<String> destroy) {
+        List<String> ranges = ranges(existing, destroy);
+        int destroyed = 0;
+        for (int from = 0; from < ranges.size(); from += MAX_RANGES_PER_DESTROY) {
+            List<String> batch = ranges.subList(from, Math.min(ranges.size(), from + MAX_RANGES_PER_DESTROY));
+            if (!delegate.destroyAsync(batch).join()) {
+                System.err.println("Fehler beim Löschen nicht mehr benötigter Snapshots.");
+                break;
+            }
+            destroyed += forget(batch, existing);
+        }
+        return destroyed;
+    }
+
+    // Fasst aufeinanderfolgende zu löschende Snapshots zu Bereichen "erster%letzter" zusammen
+    static List<String> ranges(List<String> ordered, Set<String> destroy) {
+        List<String> ranges = new ArrayList<>();
+        String first = null;
+        String last = null;
+        for (String name : ordered) {
+            if (destroy.contains(name)) {
+                if (first == null) {
+                    first = name;
+                }
+                last = name;
+            } else if (first != null) {
+                ranges.add(first.equals(last) ? first : first + "%" + last);
+                first = null;
+            }
+        }
+        if (first != null) {
+            ranges.add(first.equals(last) ? first : first + "%" + last);
+        }
+        return ranges;
+    }
+
+    // Entfernt die Snapshots der gelöschten Bereiche aus der Verwaltung
+    private synchronized int forget(List<String> ranges, List<String> ordered) {
+        int count = 0;
+        for (String range : ranges) {
+            int percent = range.indexOf('%');
+            int start = ordered.indexOf(percent < 0 ? range : range.substring(0, percent));
+            int end = ordered.indexOf(percent < 0 ? range : range.substring(percent + 1));
+            for (int i = start; i <= end; i++) {
+                states.remove(ordered.get(i));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Beendet den Hintergrundbetrieb. Der Vorrat wird freigegeben und ein letzter Löschdurchlauf
+     * ausgeführt; Snapshots noch laufender Transaktionen bleiben erhalten.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        releasePool();
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warning("Löschdurchlauf wurde nicht rechtzeitig beendet.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.SEVERE, "Warten auf den Löschdurchlauf wurde unterbrochen.", e);
+            return;
+        }
+        enforceRetention();
+    }
+
+    // Sicht einer Transaktion auf einen Snapshot des Dienstes; meldet Rollback und Freigabe
+    private class LifecycleSnapshot implements Snapshot {
+        private final ZfsSnapshotBackend.ZfsSnapshot snapshot;
+        private boolean released;
+
+        private LifecycleSnapshot(ZfsSnapshotBackend.ZfsSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public String getName() {
+            return snapshot.getName();
+        }
+
+        @Override
+        public boolean rollback() {
+            return rollbackAsync().join();
+        }
+
+        @Override
+        public CompletableFuture<Boolean> rollbackAsync() {
+            return destroyNewerAsync(snapshot.getName()).thenCompose(ignored -> snapshot.rollbackAsync()).thenApply(success -> {
+                if (success) {
+                    rolledBack();
+                }
+                return success;
+            });
+        }
+
+        @Override
+        public void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            transactionEnded(snapshot.getName());
+        }
+    }
+}
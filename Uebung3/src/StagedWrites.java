@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Schreibvorgänge einer Transaktion, die erst beim Commit in die Dateien übertragen werden.
+ * Pro Datei (normalisierter Pfad, siehe VersionTable.key) bleibt die Reihenfolge der Aufrufe erhalten.
+ */
+class StagedWrites {
+
+    enum Kind { WRITE, APPEND, WRITE_AT }
+
+    // Ein einzelner vorgemerkter Schreibvorgang; position wird nur bei WRITE_AT verwendet
+    static final class Write {
+        final Kind kind;
+        final long position;
+        final byte[] content;
+
+        Write(Kind kind, long position, byte[] content) {
+            this.kind = kind;
+            this.position = position;
+            this.content = content;
+        }
+    }
+
+    private final Map<String, List<Write>> writes = new LinkedHashMap<>();
+
+    void add(String key, Write write) {
+        writes.computeIfAbsent(key, k -> new ArrayList<>()).add(write);
+    }
+
+    boolean isEmpty() {
+        return writes.isEmpty();
+    }
+
+    Set<String> paths() {
+        return writes.keySet();
+    }
+
+    List<Write> writesFor(String key) {
+        return writes.getOrDefault(key, Collections.emptyList());
+    }
+
+    boolean contains(String key) {
+        return writes.containsKey(key);
+    }
+
+    // Wird nur angehängt, genügt beim Zurücksetzen das Kürzen auf die alte Länge
+    boolean isAppendOnly(String key) {
+        for (Write write : writesFor(key)) {
+            if (write.kind != Kind.APPEND) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Liefert die Byte-Bereiche {von, bis}, die die vorgemerkten Schreibvorgänge der Datei überschreiben.
+     * WRITE ersetzt die ganze Datei; Anhängen überschreibt nichts und erscheint daher nicht.
+     */
+    List<long[]> writtenRanges(String key) {
+        List<long[]> ranges = new ArrayList<>();
+        for (Write write : writesFor(key)) {
+            if (write.kind == Kind.WRITE) {
+                ranges.add(new long[]{0, Long.MAX_VALUE});
+            } else if (write.kind == Kind.WRITE_AT) {
+                ranges.add(new long[]{write.position, write.position + write.content.length});
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Wendet die vorgemerkten Schreibvorgänge der Datei auf ihren aktuellen Inhalt an, damit die
+     * Transaktion ihre eigenen Änderungen liest.
+     */
+    byte[] applyTo(String key, byte[] content) {
+        byte[] result = content;
+        for (Write write : writesFor(key)) {
+            switch (write.kind) {
+                case WRITE:
+                    result = write.content.clone();
+                    break;
+                case APPEND:
+                    byte[] appended = Arrays.copyOf(result, result.length + write.content.length);
+                    System.arraycopy(write.content, 0, appended, result.length, write.content.length);
+                    result = appended;
+                    break;
+                case WRITE_AT:
+                    int end = (int) write.position + write.content.length;
+                    if (end > result.length) {
+                        result = Arrays.copyOf(result, end);
+                    }
+                    System.arraycopy(write.content, 0, result, (int) write.position, write.content.length);
+                    break;
+                default:
+                    throw new IllegalStateException(write.kind.name());
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        writes.clear();
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Benchmarks für den Transaktions-Stack (FileMetadata, TransactionManager, Konfliktprüfung).
+ * Statt ZFS wird ein Snapshot-Backend ohne Wirkung verwendet, damit die Messungen auf jedem
+ * Linux-System laufen und nur die Kosten im Java-Code erfassen.
+ *
+ * Aufruf: java TransactionBenchmark [--dir=<Verzeichnis>] [--max-size=<Bytes>] [--seconds=<s>]
+ *
+ * Gemessen werden:
+ * 1. Durchsatz von FileMetadata.fromFile für Dateigrößen von 1 KB bis max-size (ohne und mit Hash-Cache)
+ * 2. Latenz von registerFile + commitTransaction in Abhängigkeit von der Anzahl registrierter Dateien
+ * 3. Commit-Durchsatz bei wachsender Thread-Anzahl, die alle dieselbe Datei registrieren
+ */
+public class TransactionBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+
+    private static final long[] FILE_SIZES = {
+            1024L, 64L * 1024, 1024L * 1024, 16L * 1024 * 1024, 256L * 1024 * 1024, 1024L * 1024 * 1024};
+    private static final int[] REGISTERED_FILE_COUNTS = {1, 10, 100, 1000};
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(option(args, "dir", System.getProperty("java.io.tmpdir") + "/transaction_bench"));
+        long maxSize = Long.parseLong(option(args, "max-size", String.valueOf(1024L * 1024 * 1024)));
+        long seconds = Long.parseLong(option(args, "seconds", "1"));
+        Files.createDirectories(dir);
+        // Die Statusmeldungen der Transaktionsklassen würden die Messung verfälschen
+        TransactionEventBus.shared().setSilent(true);
+
+        benchmarkFromFile(dir, maxSize);
+        benchmarkCommitLatency(dir);
+        benchmarkContendedCommits(dir, seconds);
+    }
+
+    /*
+     * 1. FileMetadata.fromFile: Durchsatz in MB/s. "kalt" leert vor jedem Aufruf den Hash-Cache,
+     * "Cache" misst den Fall einer unveränderten, bereits gehashten Datei.
+     */
+    private static void benchmarkFromFile(Path dir, long maxSize) throws IOException {
+        System.out.println("== FileMetadata.fromFile ==");
+        System.out.printf("%12s %14s %14s %14s%n", "Größe", "kalt [ms/op]", "kalt [MB/s]", "Cache [us/op]");
+        for (long size : FILE_SIZES) {
+            if (size > maxSize) {
+                break;
+            }
+            Path file = createFile(dir.resolve("size_" + size + ".bin"), size);
+            String path = file.toString();
+            // Bei großen Dateien reichen weniger Wiederholungen
+            int repetitions = (int) Math.max(1, Math.min(1000, (64L * 1024 * 1024) / size));
+            Stats cold = measure(() -> {
+                for (int i = 0; i < repetitions; i++) {
+                    HashCache.shared().clear();
+                    FileMetadata.fromFile(path);
+                }
+            }, repetitions);
+            // Stat-Daten müssen "alt genug" sein, damit der Cache sie aufnimmt
+            sleepQuietly(50);
+            FileMetadata.fromFile(path);
+            Stats cached = measure(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    FileMetadata.fromFile(path);
+                }
+            }, 1000);
+            double coldMs = cold.meanNanos / 1e6;
+            double throughput = size / (cold.meanNanos / 1e9) / (1024 * 1024);
+            System.out.printf(Locale.ROOT, "%12s %14.3f %14.1f %14.2f%n", formatSize(size), coldMs, throughput,
+                    cached.meanNanos / 1e3);
+        }
+    }
+
+    /*
+     * 2. registerFile + commitTransaction mit n registrierten, unveränderten Dateien.
+     */
+    private static void benchmarkCommitLatency(Path dir) throws IOException {
+        System.out.println();
+        System.out.println("== registerFile + commitTransaction (Latenz pro Transaktion) ==");
+        System.out.printf("%8s %16s %16s %16s%n", "Dateien", "HASH [us]", "METADATA [us]", "VERSIONED [us]");
+        for (int count : REGISTERED_FILE_COUNTS) {
+            List<String> files = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                files.add(createFile(dir.resolve("commit_" + i + ".txt"), 4096).toString());
+            }
+            sleepQuietly(50);
+            int repetitions = Math.max(5, 2000 / count);
+            StringBuilder row = new StringBuilder(String.format("%8d", count));
+            for (ValidationMode mode : ValidationMode.values()) {
+                Stats stats = measure(() -> {
+                    for (int r = 0; r < repetitions; r++) {
+                        TransactionManager tm = new TransactionManager(new NoopSnapshotBackend());
+                        tm.setValidationMode(mode);
+                        tm.beginTransaction();
+                        for (String file : files) {
+                            tm.registerFile(file);
+                        }
+                        tm.commitTransaction();
+                    }
+                }, repetitions);
+                row.append(String.format(Locale.ROOT, " %16.1f", stats.meanNanos / 1e3));
+            }
+            System.out.println(row);
+        }
+    }
+
+    /*
+     * 3. Commit-Durchsatz: alle Threads registrieren dieselbe Datei und committen so schnell wie möglich.
+     */
+    private static void benchmarkContendedCommits(Path dir, long seconds) throws Exception {
+        System.out.println();
+        System.out.println("== Commits unter Konkurrenz (eine gemeinsame Datei, VERSIONED) ==");
+        System.out.printf("%8s %16s %12s%n", "Threads", "Commits/s", "Abbrüche");
+        String shared = createFile(dir.resolve("contended.txt"), 4096).toString();
+        for (int threads : THREAD_COUNTS) {
+            long[] result = runContended(shared, threads, seconds);
+            System.out.printf(Locale.ROOT, "%8d %16.0f %12d%n", threads, result[0] / (double) seconds, result[1]);
+        }
+    }
+
+    // Liefert {Commits, Abbrüche}
+    private static long[] runContended(String file, int threads, long seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        VersionTable versions = new VersionTable(64);
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    long commits = 0;
+                    long aborts = 0;
+                    start.await();
+                    while (running.get()) {
+                        TransactionManager tm = new TransactionManager(new NoopSnapshotBackend());
+                        tm.setValidationMode(ValidationMode.VERSIONED);
+                        tm.setVersionTable(versions);
+                        tm.beginTransaction();
+                        tm.registerFile(file);
+                        if (tm.commitTransaction()) {
+                            commits++;
+                        } else {
+                            aborts++;
+                        }
+                    }
+                    return new long[]{commits, aborts};
+                }));
+            }
+            start.countDown();
+            TimeUnit.SECONDS.sleep(seconds);
+            running.set(false);
+            long commits = 0;
+            long aborts = 0;
+            for (Future<long[]> future : futures) {
+                long[] r = future.get();
+                commits += r[0];
+                aborts += r[1];
+            }
+            return new long[]{commits, aborts};
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Führt Aufwärm- und Messdurchläufe aus und liefert die mittlere Zeit pro Operation
+    private static Stats measure(Benchmark benchmark, int operationsPerIteration) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            benchmark.run();
+        }
+        long[] samples = new long[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            benchmark.run();
+            samples[i] = (System.nanoTime() - start) / operationsPerIteration;
+        }
+        return new Stats(samples);
+    }
+
+    private static Path createFile(Path file, long size) throws IOException {
+        if (Files.exists(file) && Files.size(file) == size) {
+            return file;
+        }
+        ByteBuffer chunk = ByteBuffer.allocateDirect(1024 * 1024);
+        byte[] random = new byte[chunk.capacity()];
+        ThreadLocalRandom.current().nextBytes(random);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long remaining = size;
+            while (remaining > 0) {
+                int length = (int) Math.min(chunk.capacity(), remaining);
+                chunk.clear();
+                chunk.put(random, 0, length);
+                chunk.flip();
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                remaining -= length;
+            }
+        }
+        return file;
+    }
+
+    private static String formatSize(long size) {
+        if (size >= 1024L * 1024 * 1024) {
+            return size / (1024L * 1024 * 1024) + " GB";
+        }
+        if (size >= 1024L * 1024) {
+            return size / (1024L * 1024) + " MB";
+        }
+        return size / 1024 + " KB";
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Benchmark {
+        void run() throws IOException;
+    }
+
+    // Ergebnis eines Messlaufs (Mittelwert über die Messdurchläufe)
+    private static final class Stats {
+        private final double meanNanos;
+
+        private Stats(long[] samples) {
+            this.meanNanos = Arrays.stream(samples).average().orElse(0);
+        }
+    }
+
+    // Snapshot-Backend ohne Wirkung, ersetzt ZFS in den Benchmarks
+    static final class NoopSnapshotBackend implements SnapshotBackend {
+        @Override
+        public Snapshot createSnapshot() {
+            return new Snapshot() {
+                @Override
+                public String getName() {
+                    return "noop";
+                }
+
+                @Override
+                public boolean rollback() {
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stellt Transaktionsereignisse asynchron an die registrierten TransactionListener zu. Die
+ * Ereignisse landen in einem begrenzten, lock-freien Ringpuffer und werden von einem einzigen
+ * Hintergrund-Thread ausgeliefert; der Transaktions-Thread schreibt nur drei Felder und gibt
+ * den Platz frei, ohne zu blockieren und ohne Objekte zu erzeugen.
+ *
+ * Ist der Puffer voll, wird das Ereignis verworfen und gezählt (getDroppedEvents), statt die
+ * Transaktion aufzuhalten. Im stillen Modus (setSilent bzw. -Dtransaction.silent=true) oder ohne
+ * Listener kehrt publish sofort zurück.
+ */
+public class TransactionEventBus {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(TransactionEventBus.class.getName());
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    // Höchstens so lange schläft der Hintergrund-Thread, wenn der Puffer leer ist
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Prozessweiter Bus, der standardmäßig auf der Konsole ausgibt
+    private static final TransactionEventBus SHARED = createShared();
+
+    private final int capacity;
+    private final int mask;
+    // Pro Platz: Position, ab der ein Produzent (== Position) bzw. der Konsument (== Position + 1) ihn nutzen darf
+    private final AtomicLongArray sequences;
+    private final TransactionEventType[] types;
+    private final String[] paths;
+    private final Object[] details;
+    // Nächste freie Position für Produzenten
+    private final AtomicLong tail = new AtomicLong();
+    // Nächste zu lesende Position; wird nur vom Hintergrund-Thread geschrieben
+    private volatile long head;
+    private volatile boolean sleeping;
+    private volatile boolean silent;
+    private final LongAdder dropped = new LongAdder();
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread consumer;
+
+    public TransactionEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Anzahl der Ereignisse, die gepuffert werden können (wird auf eine Zweierpotenz aufgerundet)
+     */
+    public TransactionEventBus(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.types = new TransactionEventType[this.capacity];
+        this.paths = new String[this.capacity];
+        this.details = new Object[this.capacity];
+        this.consumer = new Thread(this::consume, "transaction-events");
+        consumer.setDaemon(true);
+        consumer.start();
+        // Beim Beenden des Programms noch ausstehende Ereignisse ausgeben
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1, TimeUnit.SECONDS)));
+    }
+
+    private static TransactionEventBus createShared() {
+        TransactionEventBus bus = new TransactionEventBus();
+        bus.subscribe(new ConsoleTransactionListener());
+        bus.setSilent(Boolean.getBoolean("transaction.silent"));
+        return bus;
+    }
+
+    public static TransactionEventBus shared() {
+        return SHARED;
+    }
+
+    public void subscribe(TransactionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Im stillen Modus werden keine Ereignisse angenommen; die Listener bleiben registriert.
+     */
+    public void setSilent(boolean silent) {
+        this.silent = silent;
+    }
+
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Übergibt ein Ereignis an den Hintergrund-Thread. Blockiert nie.
+     */
+    public void publish(TransactionEventType type, String path, Object detail) {
+        if (silent || listeners.isEmpty()) {
+            return;
+        }
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                // Platz ist noch vom vorigen Umlauf belegt: Puffer voll
+                dropped.increment();
+                return;
+            }
+            // Ein anderer Produzent war schneller, mit der neuen Position erneut versuchen
+        }
+        types[index] = type;
+        paths[index] = path;
+        details[index] = detail;
+        sequences.set(index, position + 1);
+        if (sleeping) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Wartet, bis alle bisher veröffentlichten Ereignisse zugestellt wurden, z.B. bevor ein Programm
+     * die Konsole an einen Editor übergibt.
+     */
+    public void flush() {
+        flush(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return false, wenn die Zeit abgelaufen ist, bevor alle Ereignisse zugestellt wurden
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (head < target) {
+            if (Thread.currentThread() == consumer || System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        return true;
+    }
+
+    private void consume() {
+        while (true) {
+            if (drain() == 0) {
+                // Erst als schlafend markieren, dann erneut prüfen: ein Produzent, der danach
+                // veröffentlicht, sieht die Markierung und weckt den Thread
+                sleeping = true;
+                if (!isReadable(head)) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    private boolean isReadable(long position) {
+        return sequences.get((int) (position & mask)) == position + 1;
+    }
+
+    // Stellt alle lesbaren Ereignisse zu und liefert ihre Anzahl
+    private int drain() {
+        int count = 0;
+        long position = head;
+        // Höchstens einen Umlauf am Stück, damit endOfBatch auch unter Dauerlast regelmäßig kommt
+        while (count < capacity && isReadable(position)) {
+            int index = (int) (position & mask);
+            TransactionEventType type = types[index];
+            String path = paths[index];
+            Object detail = details[index];
+            paths[index] = null;
+            details[index] = null;
+            sequences.set(index, position + capacity);
+            position++;
+            for (TransactionListener listener : listeners) {
+                try {
+                    listener.onEvent(type, path, detail);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Fehler in TransactionListener", e);
+                }
+            }
+            count++;
+        }
+        if (count > 0) {
+            for (TransactionListener listener : listeners) {
+                try {
+                    listener.endOfBatch();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Fehler in TransactionListener", e);
+                }
+            }
+            head = position;
+        }
+        return count;
+    }
+}
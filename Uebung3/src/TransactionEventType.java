@@ -0,0 +1,56 @@
+/**
+ * Art eines Ereignisses, das TransactionManager, FileOperation und die Snapshot-Backends über den
+ * TransactionEventBus melden. Pfad und Detail des Ereignisses hängen von der Art ab (siehe jeweils).
+ */
+public enum TransactionEventType {
+    // Transaktion gestartet
+    BEGIN,
+    // Snapshot erstellt; Detail: Name des Snapshots
+    SNAPSHOT_CREATED,
+    // Nicht mehr benötigte Snapshots gelöscht (SnapshotLifecycleService); Detail: Anzahl (Integer)
+    SNAPSHOTS_DESTROYED,
+    // Datei registriert; Detail: FileMetadata
+    REGISTERED,
+    // Datei registriert (Modus VERSIONED); Detail: Version (Long)
+    REGISTERED_VERSION,
+    // Datei zum Anhängen registriert; Detail: Länge (Long)
+    REGISTERED_APPEND,
+    // Commit begonnen
+    COMMIT_STARTED,
+    // Commit erfolgreich
+    COMMITTED,
+    // Konflikt beim Commit, es folgt ein Rollback
+    CONFLICT,
+    // Konflikt beim Commit einer Transaktion, die noch nichts geschrieben hat; kein Rollback nötig
+    ABORTED,
+    // Konflikt anhand der Version
+    VERSION_CONFLICT,
+    // Datei wird gerade von einem anderen Commit geschrieben (Nur-Lese-Transaktion)
+    LOCK_CONFLICT,
+    // Datei, an die angehängt wurde, wurde ersetzt oder gekürzt
+    APPEND_CONFLICT,
+    // Konflikt anhand des Hashwertes; Detail: FileMetadata[] {ursprünglich, aktuell}
+    HASH_CONFLICT,
+    // Konflikt anhand der geänderten Blöcke (Modus BLOCKS); Detail: List<long[]> geänderte Byte-Bereiche
+    BLOCK_CONFLICT,
+    // Fremde Änderungen überschneiden sich nicht mit den eigenen (Modus BLOCKS); Detail: wie BLOCK_CONFLICT
+    BLOCKS_MERGED,
+    // Rollback begonnen
+    ROLLBACK_STARTED,
+    // Rollback der registrierten Dateien per Undo-Log erfolgreich
+    ROLLBACK_FINISHED,
+    // Rollback auf einen Snapshot erfolgreich; Detail: Name des Snapshots
+    SNAPSHOT_ROLLED_BACK,
+    // Schreibvorgang für den Commit vorgemerkt; Detail: StagedWrites.Kind
+    WRITE_STAGED,
+    // Datei geschrieben; Detail: Boolean.TRUE, wenn über das Write-Ahead-Log
+    FILE_WRITTEN,
+    // Datei ab einer Position geschrieben; Detail: Position (Long)
+    FILE_WRITTEN_AT,
+    // An Datei angehängt
+    FILE_APPENDED,
+    // Datei gelesen; Detail: Anzahl gelesener Zeichen (Integer)
+    FILE_READ,
+    // Datei gelöscht
+    FILE_DELETED
+}
@@ -0,0 +1,92 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR-Events für die einzelnen Phasen einer Transaktion. Sie werden nur erzeugt, wenn die
+ * Instrumentierung mit -Dtransaction.metrics=true eingeschaltet ist (siehe TransactionMetrics),
+ * und lassen sich dann z.B. mit -XX:StartFlightRecording aufzeichnen und in JMC auswerten.
+ */
+public final class TransactionEvents {
+
+    private TransactionEvents() {
+    }
+
+    /**
+     * Gemeinsame Basis: merkt sich zusätzlich zur JFR-Startzeit den Startzeitpunkt in Nanosekunden,
+     * damit dieselbe Dauer auch in die Statistiken des MBeans eingehen kann.
+     */
+    @Category({"OS", "Transaktionen"})
+    abstract static class PhaseEvent extends Event {
+        private transient long startNanos;
+
+        void start() {
+            startNanos = System.nanoTime();
+            begin();
+        }
+
+        // Beendet das Event, schreibt es in die Aufzeichnung und liefert die Dauer in Nanosekunden
+        long finish() {
+            long elapsed = System.nanoTime() - startNanos;
+            end();
+            commit();
+            return elapsed;
+        }
+    }
+
+    @Name("os.transaction.Snapshot")
+    @Label("Snapshot erstellen")
+    @Description("Erstellen des Wiederherstellungspunkts in beginTransaction")
+    public static final class SnapshotEvent extends PhaseEvent {
+        @Label("Snapshot")
+        String snapshot;
+    }
+
+    @Name("os.transaction.Hash")
+    @Label("Datei hashen")
+    @Description("Berechnung des SHA-256-Hashwertes einer Datei (Cache-Treffer erzeugen kein Event)")
+    public static final class HashEvent extends PhaseEvent {
+        @Label("Pfad")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("os.transaction.Validation")
+    @Label("Konfliktprüfung")
+    @Description("Prüfung der registrierten Dateien beim Commit")
+    public static final class ValidationEvent extends PhaseEvent {
+        @Label("Modus")
+        String mode;
+
+        @Label("Dateien")
+        int files;
+
+        @Label("Konflikt")
+        boolean conflict;
+    }
+
+    @Name("os.transaction.Commit")
+    @Label("Commit")
+    @Description("Gesamter commitTransaction-Aufruf einschließlich Prüfung und ggf. Rollback")
+    public static final class CommitEvent extends PhaseEvent {
+        @Label("Committet")
+        boolean committed;
+    }
+
+    @Name("os.transaction.Rollback")
+    @Label("Rollback")
+    @Description("Zurücksetzen per Snapshot oder Undo-Log")
+    public static final class RollbackEvent extends PhaseEvent {
+        @Label("Modus")
+        String mode;
+
+        @Label("Erfolgreich")
+        boolean success;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Empfänger für Ereignisse des TransactionEventBus. Alle Aufrufe kommen nacheinander aus dem
+ * Hintergrund-Thread des Busses, niemals aus dem Thread, der die Transaktion ausführt; ein
+ * langsamer Listener bremst also nicht die Transaktionen, sondern füllt nur den Puffer.
+ */
+public interface TransactionListener {
+
+    /**
+     * @param type   Art des Ereignisses
+     * @param path   betroffene Datei oder null
+     * @param detail zusätzliche Angabe je nach Art (siehe TransactionEventType) oder null
+     */
+    void onEvent(TransactionEventType type, String path, Object detail);
+
+    /**
+     * Wird aufgerufen, nachdem alle zurzeit gepufferten Ereignisse zugestellt wurden, z.B. um
+     * gesammelte Ausgaben auf einmal zu schreiben.
+     */
+    default void endOfBatch() {
+    }
+}
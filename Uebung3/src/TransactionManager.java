@@ -1,6 +1,23 @@
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,141 +29,810 @@ public class TransactionManager {
     private static final Logger logger = Logger.getLogger(TransactionManager.class.getName());
     // Speichert die ursprünglichen Dateimetadaten (Pfad -> FileMetadata)
     private final Map<String, FileMetadata> initialMetadata;
-    private final SnapshotManager snapshotManager;
+    private final SnapshotBackend snapshotBackend;
+    // Snapshot der laufenden Transaktion (null, falls keiner erstellt werden konnte)
+    private SnapshotBackend.Snapshot currentSnapshot;
+    // Die Transaktion braucht noch einen Snapshot, der erst bei der ersten Registrierung erstellt wird
+    private boolean snapshotPending;
+    // Art des Rollbacks und ggf. das Undo-Log der laufenden Transaktion
+    private RollbackMode rollbackMode = RollbackMode.SNAPSHOT;
+    private UndoLog undoLog;
     private final ConflictDetector conflictDetector;
+    // Art der Konfliktprüfung beim Commit
+    private ValidationMode validationMode = ValidationMode.HASH;
+    // Im Modus VERSIONED: gelesene Versionen (Pfad-Schlüssel -> Version) und die verwendete Tabelle
+    private final Map<String, Long> readVersions;
+    // Dateien, an die nur angehängt wird: Pfad -> Stat-Daten bei der Registrierung (null, falls nicht vorhanden)
+    private final Map<String, FileStat> appendRegistrations;
+    // Locks der Dateien, an die die Transaktion direkt anhängt; bis zum Ende der Transaktion gehalten
+    private final List<PathLockTable.Locks> appendLocks = new ArrayList<>();
+    private VersionTable versionTable = VersionTable.shared();
+    // Über eine gebundene FileOperation vorgemerkte Schreibvorgänge und die Locks für deren Commit
+    private final StagedWrites stagedWrites = new StagedWrites();
+    private PathLockTable pathLocks = PathLockTable.shared();
+    // Nur-Lese-Transaktion: kein Snapshot, keine Locks, keine Schreibvorgänge
+    private boolean readOnly;
+    // Empfängt die Statusmeldungen; die Ausgabe erfolgt asynchron im Hintergrund
+    private final TransactionEventBus events = TransactionEventBus.shared();
+    // Optional: Write-Ahead-Log, dessen ausstehende Schreibvorgänge vor dem Lesen abgewartet werden
+    private WriteAheadLog writeAheadLog;
+    // Optional: prüft die registrierten Dateien nebenläufig statt nacheinander
+    private ParallelValidator parallelValidator;
+    // Bricht die Prüfung beim ersten Konflikt ab, statt alle Konflikte zu melden
+    private boolean stopAtFirstConflict;
+    // Executor für die asynchronen Methoden und der zuletzt eingereihte asynchrone Schritt
+    private Executor asyncExecutor;
+    private CompletableFuture<?> lastAsyncStep = CompletableFuture.completedFuture(null);
+
+    // Gemeinsamer Pool für Snapshot- und Hash-I/O der asynchronen Methoden, wird erst bei Bedarf erzeugt
+    private static final class AsyncExecutorHolder {
+        private static final AtomicInteger threadCount = new AtomicInteger();
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+                Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), runnable -> {
+                    Thread thread = new Thread(runnable, "transaction-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
 
     public TransactionManager() {
+        this(new ZfsSnapshotBackend());
+    }
+
+    /**
+     * Erzeugt einen TransactionManager mit einem anderen Snapshot-Backend, z.B. dem
+     * ShadowCopySnapshotBackend auf Systemen ohne ZFS.
+     */
+    public TransactionManager(SnapshotBackend snapshotBackend) {
         this.initialMetadata = new HashMap<>();
-        this.snapshotManager = new SnapshotManager();
+        this.readVersions = new HashMap<>();
+        this.appendRegistrations = new HashMap<>();
+        this.snapshotBackend = snapshotBackend;
         this.conflictDetector = new ConflictDetector();
     }
 
     /**
-     * Startet eine Transaktion, indem ein ZFS-Snapshot erstellt wird.
+     * Legt fest, wie beim Commit auf Konflikte geprüft wird. METADATA_FIRST vermeidet das
+     * Neu-Hashen unveränderter Dateien, verlässt sich dafür aber auf die Stat-Daten des Dateisystems.
+     */
+    public void setValidationMode(ValidationMode validationMode) {
+        this.validationMode = validationMode;
+    }
+
+    /**
+     * Ersetzt die prozessweite VersionTable, z.B. um Transaktionen in getrennte Gruppen aufzuteilen.
+     */
+    public void setVersionTable(VersionTable versionTable) {
+        this.versionTable = versionTable;
+    }
+
+    /**
+     * Ersetzt die prozessweite PathLockTable; nur Transaktionen mit derselben Tabelle schließen sich
+     * beim Commit gegenseitig aus.
+     */
+    public void setPathLockTable(PathLockTable pathLocks) {
+        this.pathLocks = pathLocks;
+    }
+
+    /**
+     * Muss gesetzt werden, wenn die Dateien dieser Transaktion über eine FileOperation im dauerhaften
+     * Modus geschrieben werden. registerFile und der Commit lesen die Dateien dann erst, nachdem
+     * alle Schreibvorgänge aus dem Log in die Dateien übertragen wurden.
+     */
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * Lässt die Konfliktprüfung beim Commit über den gegebenen Validator parallel laufen.
+     * Der Validator kann von mehreren TransactionManagern gemeinsam genutzt werden; null schaltet
+     * auf die sequentielle Prüfung zurück.
+     */
+    public void setParallelValidator(ParallelValidator parallelValidator) {
+        this.parallelValidator = parallelValidator;
+    }
+
+    /**
+     * Wenn gesetzt, endet die Konfliktprüfung beim ersten gefundenen Konflikt. Weitere Konflikte
+     * werden dann nicht mehr ausgegeben, das Ergebnis (Commit oder Rollback) bleibt gleich.
+     */
+    public void setStopAtFirstConflict(boolean stopAtFirstConflict) {
+        this.stopAtFirstConflict = stopAtFirstConflict;
+    }
+
+    /**
+     * Legt fest, wie bei einem Konflikt zurückgesetzt wird. Mit UNDO_LOG werden nur die in dieser
+     * Transaktion registrierten Dateien wiederhergestellt, statt das gesamte Dataset zurückzusetzen.
+     * Wirkt ab der nächsten beginTransaction.
+     */
+    public void setRollbackMode(RollbackMode rollbackMode) {
+        this.rollbackMode = rollbackMode;
+    }
+
+    /**
+     * Ersetzt den gemeinsamen Pool, auf dem beginAsync, registerFileAsync und commitAsync laufen.
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Startet eine Transaktion. Der Snapshot (standardmäßig per ZFS) wird erst erstellt, wenn die
+     * erste Datei per registerFile oder registerAppend registriert wird; Transaktionen, die nur über
+     * eine gebundene FileOperation vormerken, brauchen keinen. Direkte Änderungen vor der ersten
+     * Registrierung werden daher von einem Rollback nicht erfasst.
      */
     public void beginTransaction() {
-        System.out.println("Transaktion startet...");
-        snapshotManager.createSnapshot();
+        events.publish(TransactionEventType.BEGIN, null, null);
+        started();
+    }
+
+    /**
+     * Startet eine Transaktion, die Dateien nur liest. Es wird weder ein Snapshot noch ein Undo-Log
+     * angelegt, und der Commit prüft die registrierten Dateien ohne Locks. Vormerken von
+     * Schreibvorgängen führt zu einer IllegalStateException.
+     */
+    public void beginReadOnlyTransaction() {
+        events.publish(TransactionEventType.BEGIN, null, null);
+        resetTransactionState();
+        currentSnapshot = null;
+        snapshotPending = false;
+        undoLog = null;
+        readOnly = true;
+    }
+
+    private void started() {
+        resetTransactionState();
+        readOnly = false;
+        currentSnapshot = null;
+        snapshotPending = true;
+        undoLog = rollbackMode == RollbackMode.UNDO_LOG ? new UndoLog() : null;
+    }
+
+    // Erstellt den Snapshot der Transaktion, falls er noch fehlt
+    private void ensureSnapshot() {
+        if (snapshotPending) {
+            snapshotPending = false;
+            TransactionEvents.SnapshotEvent event =
+                    TransactionMetrics.ENABLED ? TransactionMetrics.start(new TransactionEvents.SnapshotEvent()) : null;
+            snapshotCreated(snapshotBackend.createSnapshot(), event);
+        }
+    }
+
+    private CompletableFuture<Void> ensureSnapshotAsync() {
+        if (!snapshotPending) {
+            return CompletableFuture.completedFuture(null);
+        }
+        snapshotPending = false;
+        TransactionEvents.SnapshotEvent event =
+                TransactionMetrics.ENABLED ? TransactionMetrics.start(new TransactionEvents.SnapshotEvent()) : null;
+        return snapshotBackend.createSnapshotAsync().thenAccept(snapshot -> snapshotCreated(snapshot, event));
+    }
+
+    private void snapshotCreated(SnapshotBackend.Snapshot snapshot, TransactionEvents.SnapshotEvent event) {
+        currentSnapshot = snapshot;
+        if (event != null) {
+            TransactionMetrics.get().recordSnapshot(event, currentSnapshot);
+        }
     }
 
     /**
      * Registriert eine Datei zur Überwachung. Der Zustand wird vor Transaktionsänderungen erfasst.
      */
     public void registerFile(String filePath) {
+        ensureSnapshot();
+        register(filePath);
+    }
+
+    private void register(String filePath) {
         try {
-            FileMetadata metadata = FileMetadata.fromFile(filePath);
+            awaitPendingWrites(filePath);
+            if (currentSnapshot != null) {
+                // Backends mit Before-Images sichern die Datei, bevor sie verändert wird
+                currentSnapshot.protect(Paths.get(filePath));
+            }
+            if (undoLog != null) {
+                undoLog.record(Paths.get(filePath));
+            }
+            if (validationMode == ValidationMode.VERSIONED) {
+                // Statt die Datei zu hashen, wird nur ihre aktuelle Version gemerkt
+                String key = VersionTable.key(filePath);
+                long version = versionTable.currentVersion(key);
+                readVersions.put(key, version);
+                events.publish(TransactionEventType.REGISTERED_VERSION, filePath, version);
+                return;
+            }
+            FileMetadata metadata = validationMode == ValidationMode.BLOCKS
+                    ? FileMetadata.fromFileBlocks(filePath) : FileMetadata.fromFile(filePath);
             initialMetadata.put(filePath, metadata);
-            System.out.println("Datei registriert: " + filePath);
-            System.out.println("Initiale Metadaten: " + metadata);
+            events.publish(TransactionEventType.REGISTERED, filePath, metadata);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Fehler beim Erfassen der Metadaten für: " + filePath, e);
+        }
+    }
+
+    /**
+     * Registriert eine Datei, an die die Transaktion nur anhängt (FileOperation.append). Anhängen
+     * anderer Transaktionen vor der Registrierung gilt nicht als Konflikt; beim Commit wird nur
+     * geprüft, dass die Datei weder ersetzt noch gekürzt wurde. Weder Registrierung noch Commit lesen
+     * den Dateiinhalt.
+     *
+     * Da direkt angehängt wird, hält die Transaktion das Lock der Datei bis zu ihrem Ende. Ein
+     * Rollback, das die Datei auf die Länge bei der Registrierung kürzt, entfernt so nur die eigenen
+     * Daten. Gewartet wird nur auf das erste solche Lock; ist eine weitere Datei gerade gesperrt,
+     * wird eine IllegalStateException geworfen (sonst wären Deadlocks möglich) und die Transaktion
+     * sollte zurückgesetzt werden.
+     */
+    public void registerAppend(String filePath) {
+        if (!stagedWrites.isEmpty()) {
+            throw new IllegalStateException("Direktes Anhängen und vorgemerkte Schreibvorgänge lassen sich nicht mischen: "
+                    + filePath);
+        }
+        if (!appendRegistrations.containsKey(filePath)) {
+            PathLockTable.Locks lock = appendLocks.isEmpty()
+                    ? pathLocks.lockAll(Collections.singletonList(filePath)) : pathLocks.tryLock(filePath);
+            if (lock == null) {
+                throw new IllegalStateException("Datei ist von einer anderen Transaktion gesperrt: " + filePath);
+            }
+            appendLocks.add(lock);
+        }
+        ensureSnapshot();
+        protectAppend(filePath);
+    }
+
+    // Merkt die aktuelle Länge für das Rollback und die Prüfung beim Commit
+    private void protectAppend(String filePath) {
+        try {
+            awaitPendingWrites(filePath);
+            Path path = Paths.get(filePath);
+            FileStat stat = statIfExists(path);
+            long length = stat == null ? 0 : stat.getSize();
+            if (currentSnapshot != null) {
+                currentSnapshot.protectAppend(path, length);
+            }
+            if (undoLog != null) {
+                undoLog.recordAppend(path, length);
+            }
+            appendRegistrations.put(filePath, stat);
+            events.publish(TransactionEventType.REGISTERED_APPEND, filePath, length);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Fehler beim Erfassen der Metadaten für: " + filePath, e);
         }
     }
 
+    /**
+     * Merkt einen Schreibvorgang einer gebundenen FileOperation vor. Noch nicht registrierte Dateien
+     * werden dabei registriert: nur angehängte per registerAppend, alle anderen per registerFile.
+     */
+    void stage(String filePath, StagedWrites.Write write) {
+        if (readOnly) {
+            throw new IllegalStateException("Schreibzugriff in einer Nur-Lese-Transaktion: " + filePath);
+        }
+        String key = VersionTable.key(filePath);
+        boolean registered = initialMetadata.containsKey(filePath) || readVersions.containsKey(key);
+        if (!appendLocks.isEmpty()) {
+            throw new IllegalStateException("Direktes Anhängen und vorgemerkte Schreibvorgänge lassen sich nicht mischen: "
+                    + filePath);
+        }
+        if (write.kind == StagedWrites.Kind.APPEND) {
+            // Vorgemerktes Anhängen wird erst beim Commit unter den Locks ausgeführt, daher hier kein Lock
+            if (!registered && !appendRegistrations.containsKey(filePath) && !stagedWrites.contains(key)) {
+                protectAppend(filePath);
+            }
+        } else if (!registered) {
+            // Vorgemerkte Schreibvorgänge werden über Before-Images zurückgesetzt, ein Snapshot ist unnötig
+            register(filePath);
+        }
+        stagedWrites.add(key, write);
+        events.publish(TransactionEventType.WRITE_STAGED, filePath, write.kind);
+    }
+
+    /**
+     * Liest die Datei einschließlich der vorgemerkten Schreibvorgänge dieser Transaktion.
+     * Eine nicht vorhandene Datei, in die geschrieben werden soll, gilt als leer.
+     */
+    byte[] readWithStagedWrites(String filePath) throws IOException {
+        awaitPendingWrites(filePath);
+        String key = VersionTable.key(filePath);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(Paths.get(filePath));
+        } catch (NoSuchFileException e) {
+            if (!stagedWrites.contains(key)) {
+                throw e;
+            }
+            content = new byte[0];
+        }
+        return stagedWrites.applyTo(key, content);
+    }
+
     /**
      * Prüft am Ende der Transaktion, ob Konflikte aufgetreten sind. Bei Konflikten wird ein Rollback ausgeführt.
+     *
+     * Wurden Schreibvorgänge über eine gebundene FileOperation vorgemerkt, werden zuerst die Locks
+     * aller beteiligten Dateien in globaler Reihenfolge angefordert, dann wird geprüft und erst
+     * danach geschrieben. Bei einem Konflikt wurde nichts geschrieben und es ist kein Rollback nötig.
+     * Nur-Lese-Transaktionen werden ohne Locks geprüft.
+     *
+     * @return true, wenn die Transaktion committet wurde, false bei einem Konflikt (Rollback)
+     */
+    public boolean commitTransaction() {
+        return commit().isCommitted();
+    }
+
+    /**
+     * Asynchrone Variante von beginTransaction.
+     *
+     * Die asynchronen Methoden eines TransactionManagers werden in der Reihenfolge ihres Aufrufs
+     * nacheinander ausgeführt, auch ohne dass der Aufrufer auf die Futures wartet. So kann ein
+     * Thread viele Transaktionen gleichzeitig anstoßen, ohne für jede zu blockieren. Synchrone
+     * Methoden dürfen erst aufgerufen werden, wenn alle eingereihten asynchronen Schritte fertig sind.
+     */
+    public CompletableFuture<Void> beginAsync() {
+        return enqueueAsync(() -> {
+            events.publish(TransactionEventType.BEGIN, null, null);
+            started();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Asynchrone Variante von registerFile; das Hashen der Datei läuft auf dem I/O-Pool. Fehlt der
+     * Snapshot noch, wird er vorher erstellt; Backends mit asynchroner Snapshot-Erstellung (ZFS über
+     * Process.onExit()) belegen dabei keinen Thread des I/O-Pools, bis der Snapshot fertig ist.
      */
-    public void commitTransaction() {
-        System.out.println("Transaktion wird committet...");
-        if (conflictDetector.hasConflict(initialMetadata)) {
-            System.out.println("Konflikt festgestellt. Rollback wird durchgeführt.");
-            rollbackTransaction();
+    public CompletableFuture<Void> registerFileAsync(String filePath) {
+        return enqueueAsync(() -> ensureSnapshotAsync().thenApply(ignored -> {
+            registerFile(filePath);
+            return null;
+        }));
+    }
+
+    /**
+     * Asynchrone Variante von registerAppend.
+     */
+    public CompletableFuture<Void> registerAppendAsync(String filePath) {
+        return enqueueAsync(() -> ensureSnapshotAsync().thenApply(ignored -> {
+            registerAppend(filePath);
+            return null;
+        }));
+    }
+
+    /**
+     * Asynchroner Commit. Das Ergebnis enthält neben dem Status die Dateien mit Konflikt und die
+     * Dauer von Prüfung und Rollback.
+     */
+    public CompletableFuture<CommitResult> commitAsync() {
+        return enqueue(this::commit);
+    }
+
+    private <T> CompletableFuture<T> enqueue(Supplier<T> step) {
+        return enqueueAsync(() -> CompletableFuture.completedFuture(step.get()));
+    }
+
+    // Hängt den Schritt an den vorherigen an; ein fehlgeschlagener Schritt hält die folgenden nicht auf
+    private synchronized <T> CompletableFuture<T> enqueueAsync(Supplier<CompletableFuture<T>> step) {
+        Executor executor = asyncExecutor != null ? asyncExecutor : AsyncExecutorHolder.EXECUTOR;
+        CompletableFuture<T> next = lastAsyncStep.handle((result, error) -> null)
+                .thenComposeAsync(ignored -> step.get(), executor);
+        lastAsyncStep = next;
+        return next;
+    }
+
+    private CommitResult commit() {
+        events.publish(TransactionEventType.COMMIT_STARTED, null, null);
+        TransactionEvents.CommitEvent event =
+                TransactionMetrics.ENABLED ? TransactionMetrics.start(new TransactionEvents.CommitEvent()) : null;
+        long start = System.nanoTime();
+        List<String> conflicts;
+        long validated;
+        CommitResult.Status status;
+        if (readOnly || !stagedWrites.isEmpty()) {
+            // Alle gelesenen und geschriebenen Dateien werden gesperrt, damit zwischen Prüfung und
+            // Schreiben kein anderer Commit eine davon ändert
+            Set<String> lockedPaths = new HashSet<>();
+            if (!readOnly) {
+                lockedPaths.addAll(registeredPaths());
+                lockedPaths.addAll(stagedWrites.paths());
+            }
+            PathLockTable.Locks locks = pathLocks.lockAll(lockedPaths);
+            try {
+                conflicts = findConflicts();
+                validated = System.nanoTime();
+                if (!conflicts.isEmpty()) {
+                    events.publish(TransactionEventType.ABORTED, null, null);
+                    status = CommitResult.Status.ROLLED_BACK;
+                } else {
+                    status = applyStagedWrites();
+                }
+            } finally {
+                locks.close();
+            }
+            if (status == CommitResult.Status.COMMITTED) {
+                events.publish(TransactionEventType.COMMITTED, null, null);
+            }
+            stagedWrites.clear();
+            releaseSnapshot();
+        } else {
+            conflicts = findConflicts();
+            validated = System.nanoTime();
+            status = commitOrRollback(conflicts);
+        }
+        long end = System.nanoTime();
+        if (event != null) {
+            TransactionMetrics.get().recordCommit(event, status == CommitResult.Status.COMMITTED);
+        }
+        long rollbackNanos = status == CommitResult.Status.COMMITTED ? 0 : end - validated;
+        return new CommitResult(status, conflicts, validated - start, rollbackNanos, end - start);
+    }
+
+    /*
+     * Überträgt die vorgemerkten Schreibvorgänge; wird nur unter den Locks aller beteiligten Dateien
+     * aufgerufen. Schlägt ein Schreibvorgang fehl, werden die Dateien über ein eigenes Undo-Log
+     * zurückgesetzt, das erst jetzt, unmittelbar vor dem Schreiben, angelegt wird.
+     */
+    private CommitResult.Status applyStagedWrites() {
+        UndoLog beforeImages = new UndoLog();
+        FileOperation target = new FileOperation(writeAheadLog);
+        try {
+            for (String key : stagedWrites.paths()) {
+                awaitPendingWrites(key);
+                Path path = Paths.get(key);
+                FileStat stat = statIfExists(path);
+                if (stat != null && stagedWrites.isAppendOnly(key)) {
+                    beforeImages.recordAppend(path, stat.getSize());
+                } else {
+                    beforeImages.record(path);
+                }
+                for (StagedWrites.Write write : stagedWrites.writesFor(key)) {
+                    target.apply(key, write);
+                }
+            }
+            if (validationMode == ValidationMode.VERSIONED) {
+                // Die Versionen wurden bei der Prüfung schon einmal erhöht; die zweite Erhöhung erkennt
+                // Transaktionen, die eine der Dateien registriert haben, während geschrieben wurde
+                versionTable.bump(stagedWrites.paths());
+            }
+            beforeImages.discard();
+            return CommitResult.Status.COMMITTED;
+        } catch (IOException e) {
+            System.err.println("Fehler beim Übertragen der vorgemerkten Änderungen. Rollback wird durchgeführt.");
+            logger.log(Level.SEVERE, e.getMessage(), e);
+            boolean restored = awaitPendingWrites(stagedWrites.paths()) && beforeImages.restore();
+            beforeImages.discard();
+            invalidateLogicalSizes(stagedWrites.paths());
+            return restored ? CommitResult.Status.ROLLED_BACK : CommitResult.Status.ROLLBACK_FAILED;
+        }
+    }
+
+    private CommitResult.Status commitOrRollback(List<String> conflicts) {
+        CommitResult.Status status;
+        if (!conflicts.isEmpty()) {
+            events.publish(TransactionEventType.CONFLICT, null, null);
+            status = rollback() ? CommitResult.Status.ROLLED_BACK : CommitResult.Status.ROLLBACK_FAILED;
         } else {
-            System.out.println("Kein Konflikt. Transaktion abgeschlossen.");
+            events.publish(TransactionEventType.COMMITTED, null, null);
+            releaseSnapshot();
+            releaseAppendLocks();
+            status = CommitResult.Status.COMMITTED;
         }
+        return status;
     }
 
     /**
      * Führt ein Rollback durch, indem der zuvor erstellte Snapshot wiederhergestellt wird.
+     * Im Modus UNDO_LOG werden stattdessen nur die registrierten Dateien zurückgespielt.
      */
     public void rollbackTransaction() {
-        System.out.println("Rollback der Transaktion...");
-        snapshotManager.rollbackSnapshot("transaction_snapshot");
+        rollback();
     }
 
-    private class SnapshotManager {
-        // Instanzvariable für den aktuellen Snapshot-Namen
-        private String currentSnapshotName;
+    private boolean rollback() {
+        events.publish(TransactionEventType.ROLLBACK_STARTED, null, null);
+        TransactionEvents.RollbackEvent event =
+                TransactionMetrics.ENABLED ? TransactionMetrics.start(new TransactionEvents.RollbackEvent()) : null;
+        // Das Undo-Log wird beim Zurücksetzen freigegeben, daher den Modus vorher bestimmen
+        String mode = undoLog != null ? RollbackMode.UNDO_LOG.name() : RollbackMode.SNAPSHOT.name();
+        boolean success = restore();
+        // Erst nach dem Kürzen freigeben, damit kein anderer dazwischen anhängt
+        releaseAppendLocks();
+        invalidateLogicalSizes(registeredPaths());
+        if (event != null) {
+            TransactionMetrics.get().recordRollback(event, mode, success);
+        }
+        return success;
+    }
 
-        /**
-         * Erstellt einen ZFS-Snapshot und speichert den Snapshot-Namen in currentSnapshotName.
-         */
-        public void createSnapshot() {
-            // Dynamischer Snapshot-Name, basierend auf dem aktuellen Zeitstempel
-            currentSnapshotName = "transaction_snapshot_" + System.currentTimeMillis();
-            String poolFs = "os_trans_pool/os_trans_fs";
-            try {
-                // Zusammensetzung des Befehls: sudo zfs snapshot <poolFs>@<snapshotName>
-                ProcessBuilder pb = new ProcessBuilder("sudo", "zfs", "snapshot", poolFs + "@" + currentSnapshotName);
-                pb.inheritIO(); // Zeigt die Befehlsausgabe im Terminal an
-                Process process = pb.start();
-                int exitCode = process.waitFor();
-                if (exitCode == 0) {
-                    System.out.println("Snapshot '" + currentSnapshotName + "' erfolgreich erstellt.");
-                } else {
-                    System.err.println("Fehler beim Erstellen des Snapshots '" + currentSnapshotName + "'.");
+    // Setzt per Undo-Log bzw. Snapshot zurück; liefert false, wenn das Rollback nicht möglich war
+    private boolean restore() {
+        if (!awaitPendingWrites(registeredPaths())) {
+            return false;
+        }
+        if (undoLog != null) {
+            boolean success = undoLog.restore();
+            if (success) {
+                events.publish(TransactionEventType.ROLLBACK_FINISHED, null, null);
+            } else {
+                System.err.println("Fehler beim Rollback der registrierten Dateien.");
+            }
+            releaseSnapshot();
+            return success;
+        }
+        if (currentSnapshot == null && snapshotPending) {
+            // Nichts registriert, daher auch nichts zurückzusetzen
+            snapshotPending = false;
+            events.publish(TransactionEventType.ROLLBACK_FINISHED, null, null);
+            return true;
+        }
+        if (currentSnapshot == null) {
+            System.err.println("Kein Snapshot verfügbar, auf den zurückgesetzt werden kann.");
+            return false;
+        }
+        boolean success = currentSnapshot.rollback();
+        releaseSnapshot();
+        return success;
+    }
+
+    // Liefert die Pfade mit Konflikt; leer, wenn die Transaktion committet werden kann
+    private List<String> findConflicts() {
+        TransactionEvents.ValidationEvent event =
+                TransactionMetrics.ENABLED ? TransactionMetrics.start(new TransactionEvents.ValidationEvent()) : null;
+        List<String> conflicts = validate();
+        if (event != null) {
+            int files = initialMetadata.size() + readVersions.size() + appendRegistrations.size();
+            TransactionMetrics.get().recordValidation(event, validationMode, files, !conflicts.isEmpty());
+        }
+        return conflicts;
+    }
+
+    private List<String> validate() {
+        if (!awaitPendingWrites(initialMetadata.keySet()) || !awaitPendingWrites(appendRegistrations.keySet())) {
+            // Ohne abgeschlossene Schreibvorgänge lässt sich keine Datei prüfen
+            return new ArrayList<>(registeredPaths());
+        }
+        List<String> conflicts = new ArrayList<>();
+        if (readOnly) {
+            // Erst die Locks, dann die Dateien prüfen: ein Commit gibt seine Locks erst frei, wenn er
+            // alles geschrieben hat. Ist keine Datei gesperrt, war jeder Commit, dessen Änderungen
+            // gelesen wurden, bereits vollständig und ist an Version bzw. Hashwert erkennbar.
+            for (String filePath : registeredPaths()) {
+                if (pathLocks.isLocked(filePath)) {
+                    events.publish(TransactionEventType.LOCK_CONFLICT, filePath, null);
+                    conflicts.add(filePath);
                 }
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Fehler beim Erstellen des Snapshots.", e);
+            }
+            if (!conflicts.isEmpty()) {
+                return conflicts;
             }
         }
+        // Zuerst die reinen Anhänge-Registrierungen, damit bei einem Konflikt keine Versionen erhöht werden
+        for (Map.Entry<String, FileStat> entry : appendRegistrations.entrySet()) {
+            if (isAppendConflict(entry.getKey(), entry.getValue())) {
+                conflicts.add(entry.getKey());
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            return conflicts;
+        }
+        if (validationMode == ValidationMode.VERSIONED) {
+            // Prüfen und Erhöhen der Versionen geschieht atomar, dazwischen kann kein anderer Commit liegen;
+            // eine Nur-Lese-Transaktion ändert nichts und muss die Versionen daher nicht erhöhen
+            conflicts = readOnly ? versionTable.findStale(readVersions) : versionTable.validateAndBump(readVersions);
+            for (String key : conflicts) {
+                events.publish(TransactionEventType.VERSION_CONFLICT, key, null);
+            }
+            return conflicts;
+        }
+        return conflictDetector.findConflicts(initialMetadata, validationMode, stagedWrites, parallelValidator,
+                stopAtFirstConflict);
+    }
 
-        /**
-         * Führt ein Rollback auf den zuvor erstellten Snapshot durch.
-         */
-        public void rollbackSnapshot(String unused) {
-            String poolFs = "os_trans_pool/os_trans_fs";
-            if (currentSnapshotName == null) {
-                System.err.println("Kein Snapshot verfügbar, auf den zurückgesetzt werden kann.");
-                return;
+    // Eine Datei, an die nur angehängt wurde, ist konfliktfrei, solange sie nicht ersetzt oder gekürzt wurde
+    private boolean isAppendConflict(String filePath, FileStat initial) {
+        FileStat current;
+        try {
+            current = statIfExists(Paths.get(filePath));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+            return true;
+        }
+        if (initial == null) {
+            return false;
+        }
+        boolean replaced = current == null ||
+                (initial.getInode() != FileStat.UNKNOWN && current.getInode() != initial.getInode());
+        if (replaced || current.getSize() < initial.getSize()) {
+            events.publish(TransactionEventType.APPEND_CONFLICT, filePath, null);
+            return true;
+        }
+        return false;
+    }
+
+    private static FileStat statIfExists(Path path) throws IOException {
+        try {
+            return FileStat.of(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // Registrierte Pfade, unabhängig vom Prüfmodus
+    private Set<String> registeredPaths() {
+        Set<String> paths = new HashSet<>(initialMetadata.keySet());
+        paths.addAll(readVersions.keySet());
+        paths.addAll(appendRegistrations.keySet());
+        return paths;
+    }
+
+    // Liefert false, wenn das Warten unterbrochen wurde
+    private boolean awaitPendingWrites(Collection<String> filePaths) {
+        try {
+            for (String filePath : filePaths) {
+                awaitPendingWrites(filePath);
             }
-            try {
-                // Zusammensetzung des Befehls: sudo zfs rollback <poolFs>@<snapshotName>
-                ProcessBuilder pb = new ProcessBuilder("sudo", "zfs", "rollback", poolFs + "@" + currentSnapshotName);
-                pb.inheritIO();
-                Process process = pb.start();
-                int exitCode = process.waitFor();
-                if (exitCode == 0) {
-                    System.out.println("Rollback auf Snapshot '" + currentSnapshotName + "' erfolgreich.");
-                } else {
-                    System.err.println("Fehler beim Rollback auf Snapshot '" + currentSnapshotName + "'.");
-                }
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Fehler beim Rollback auf den Snapshot.", e);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void awaitPendingWrites(String filePath) throws IOException {
+        if (writeAheadLog == null) {
+            return;
+        }
+        try {
+            writeAheadLog.awaitApplied(filePath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Unterbrochen beim Warten auf das Write-Ahead-Log: " + filePath);
+        }
+    }
+
+    /*
+     * Ein Manager kann nacheinander mehrere Transaktionen ausführen (z.B. über die asynchronen
+     * Methoden); Registrierungen der vorherigen dürfen weder geprüft noch zurückgesetzt werden.
+     */
+    private void resetTransactionState() {
+        initialMetadata.clear();
+        readVersions.clear();
+        appendRegistrations.clear();
+        stagedWrites.clear();
+        releaseAppendLocks();
+    }
+
+    private void releaseAppendLocks() {
+        for (int i = appendLocks.size() - 1; i >= 0; i--) {
+            appendLocks.get(i).close();
+        }
+        appendLocks.clear();
+    }
+
+    // Nach einem Rollback stimmen die im Write-Ahead-Log gemerkten Dateigrößen nicht mehr
+    private void invalidateLogicalSizes(Collection<String> filePaths) {
+        if (writeAheadLog != null) {
+            for (String filePath : filePaths) {
+                writeAheadLog.invalidateSize(filePath);
             }
         }
     }
 
+    private void releaseSnapshot() {
+        snapshotPending = false;
+        if (currentSnapshot != null) {
+            currentSnapshot.release();
+            currentSnapshot = null;
+        }
+        if (undoLog != null) {
+            undoLog.discard();
+            undoLog = null;
+        }
+    }
 
     // Innere Klasse zur Konflikterkennung durch Vergleich des Hashwertes
     private static class ConflictDetector {
         /**
          * Vergleicht die gespeicherten ursprünglichen Metadaten mit den aktuellen anhand des
          * Hashwertes.
-         * Gibt true zurück, wenn sich der Hashwert geändert hat, also ein inhaltlicher Konflikt vorliegt.
+         * Gibt die Pfade zurück, deren Hashwert sich geändert hat, bei denen also ein inhaltlicher
+         * Konflikt vorliegt.
+         * Im Modus METADATA_FIRST wird der Hash nur berechnet, wenn sich die Stat-Daten geändert
+         * haben oder ihnen nicht vertraut werden kann.
+         * Im Modus BLOCKS werden die geänderten Byte-Bereiche gemeldet; mit staged vorgemerkte
+         * Schreibvorgänge sind nur ein Konflikt, wenn sie sich mit diesen Bereichen überschneiden.
+         * Ist ein ParallelValidator gesetzt, werden die Dateien nebenläufig geprüft.
          */
-        public boolean hasConflict(Map<String, FileMetadata> originalMetadata) {
-            boolean conflictFound = false;
+        public List<String> findConflicts(Map<String, FileMetadata> originalMetadata, ValidationMode mode,
+                                          StagedWrites staged, ParallelValidator validator,
+                                          boolean stopAtFirstConflict) {
+            if (validator != null) {
+                return validator.findConflicts(originalMetadata,
+                        (filePath, oldMeta) -> isConflict(filePath, oldMeta, mode, staged), stopAtFirstConflict);
+            }
+            List<String> conflicts = new ArrayList<>();
             for (Map.Entry<String, FileMetadata> entry : originalMetadata.entrySet()) {
-                String filePath = entry.getKey();
-                FileMetadata oldMeta = entry.getValue();
-                try {
-                    FileMetadata currentMeta = FileMetadata.fromFile(filePath);
-                    // Hier wird nur der Hashwert verglichen, da der Vergleich anhand von
-                    // Zeitstempel und Größe, zu False Positives führen könnte.
-                    if (!oldMeta.getHash().equals(currentMeta.getHash())) {
-                        System.out.println("Konflikt festgestellt für Datei: " + filePath);
-                        System.out.println("Ursprünglich: " + oldMeta);
-                        System.out.println("Aktuell: " + currentMeta);
-                        conflictFound = true;
+                if (isConflict(entry.getKey(), entry.getValue(), mode, staged)) {
+                    conflicts.add(entry.getKey());
+                    if (stopAtFirstConflict) {
+                        break;
                     }
-                } catch (IOException e) {
-                    System.err.println("Fehler beim Überprüfen der Datei: " + filePath);
-                    logger.log(Level.SEVERE, e.getMessage(), e);
-                    conflictFound = true;
                 }
             }
-            return conflictFound;
+            return conflicts;
+        }
+
+        // Prüft eine einzelne Datei; wird ggf. von mehreren Threads gleichzeitig aufgerufen
+        private boolean isConflict(String filePath, FileMetadata oldMeta, ValidationMode mode, StagedWrites staged) {
+            try {
+                if (mode == ValidationMode.METADATA_FIRST && isUnchanged(filePath, oldMeta)) {
+                    return false;
+                }
+                if (mode == ValidationMode.BLOCKS && oldMeta.getBlocks() != null) {
+                    return isBlockConflict(filePath, oldMeta, staged);
+                }
+                FileMetadata currentMeta = FileMetadata.fromFile(filePath);
+                // Hier wird nur der Hashwert verglichen, da der Vergleich anhand von
+                // Zeitstempel und Größe, zu False Positives führen könnte.
+                if (!oldMeta.getHash().equals(currentMeta.getHash())) {
+                    TransactionEventBus.shared().publish(TransactionEventType.HASH_CONFLICT, filePath,
+                            new FileMetadata[]{oldMeta, currentMeta});
+                    return true;
+                }
+                return false;
+            } catch (IOException e) {
+                System.err.println("Fehler beim Überprüfen der Datei: " + filePath);
+                logger.log(Level.SEVERE, e.getMessage(), e);
+                return true;
+            }
+        }
+
+        /*
+         * Vergleicht die Merkle-Bäume. Fremde Änderungen sind kein Konflikt, wenn die Transaktion die
+         * Datei nur über vorgemerkte Schreibvorgänge ändert, diese keinen geänderten Block berühren und
+         * die Datei nicht gekürzt wurde; die Vormerkungen werden dann auf den neuen Stand angewendet.
+         */
+        private boolean isBlockConflict(String filePath, FileMetadata oldMeta, StagedWrites staged)
+                throws IOException {
+            FileMetadata currentMeta = FileMetadata.fromFileBlocks(filePath);
+            if (oldMeta.getHash().equals(currentMeta.getHash())) {
+                return false;
+            }
+            List<long[]> changed = oldMeta.getBlocks().diff(currentMeta.getBlocks());
+            String key = VersionTable.key(filePath);
+            if (staged.contains(key) && currentMeta.getSize() >= oldMeta.getSize()
+                    && !overlaps(changed, staged.writtenRanges(key))) {
+                TransactionEventBus.shared().publish(TransactionEventType.BLOCKS_MERGED, filePath, changed);
+                return false;
+            }
+            TransactionEventBus.shared().publish(TransactionEventType.BLOCK_CONFLICT, filePath, changed);
+            return true;
+        }
+
+        private static boolean overlaps(List<long[]> changed, List<long[]> written) {
+            for (long[] a : changed) {
+                for (long[] b : written) {
+                    if (a[0] < b[1] && b[0] < a[1]) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /*
+         * Prüft anhand der Stat-Daten, ob die Datei sicher unverändert ist. Eine abweichende
+         * mtime allein ist noch kein Konflikt, sondern führt nur zum Hashvergleich.
+         */
+        private boolean isUnchanged(String filePath, FileMetadata oldMeta) {
+            FileStat oldStat = oldMeta.getStat();
+            if (oldStat == null || !oldStat.isTrustworthy()) {
+                return false;
+            }
+            try {
+                return oldStat.matches(FileStat.of(Paths.get(filePath)));
+            } catch (IOException e) {
+                return false;
+            }
         }
     }
 
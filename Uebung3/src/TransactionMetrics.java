@@ -0,0 +1,251 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Sammelt Zähler und Latenzen der Transaktionsphasen und stellt sie als MBean bereit. Zu jeder
+ * aufgezeichneten Phase wird außerdem ein JFR-Event (TransactionEvents) geschrieben.
+ *
+ * Eingeschaltet wird die Instrumentierung mit -Dtransaction.metrics=true. Da ENABLED eine
+ * Konstante ist, entfernt der JIT-Compiler die Aufrufstellen im ausgeschalteten Zustand vollständig;
+ * es werden dann weder Events noch sonstige Objekte erzeugt.
+ */
+public class TransactionMetrics implements TransactionMetricsMBean {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(TransactionMetrics.class.getName());
+
+    public static final boolean ENABLED = Boolean.getBoolean("transaction.metrics");
+
+    private static final String OBJECT_NAME = "os.transaction:type=TransactionMetrics";
+    // Anzahl der letzten Werte je Phase, aus denen Mittelwert und p99 berechnet werden (Zweierpotenz)
+    private static final int WINDOW_SIZE = 1024;
+
+    private final LongAdder begins = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder aborts = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder filesHashed = new LongAdder();
+    private final LongAdder bytesHashed = new LongAdder();
+    private final LongAdder snapshotNanos = new LongAdder();
+
+    private final RollingWindow snapshotLatency = new RollingWindow();
+    private final RollingWindow hashLatency = new RollingWindow();
+    private final RollingWindow validationLatency = new RollingWindow();
+    private final RollingWindow commitLatency = new RollingWindow();
+    private final RollingWindow rollbackLatency = new RollingWindow();
+
+    // Wird erst beim ersten Zugriff erzeugt und registriert, also nur bei eingeschalteter Instrumentierung
+    private static final class Holder {
+        private static final TransactionMetrics INSTANCE = register(new TransactionMetrics());
+    }
+
+    private TransactionMetrics() {
+    }
+
+    public static TransactionMetrics get() {
+        return Holder.INSTANCE;
+    }
+
+    private static TransactionMetrics register(TransactionMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "MBean konnte nicht registriert werden: " + OBJECT_NAME, e);
+        }
+        return metrics;
+    }
+
+    /**
+     * Startet die Zeitmessung einer Phase. Aufrufer prüfen vorher ENABLED, z.B.
+     * {@code SnapshotEvent event = TransactionMetrics.ENABLED ? TransactionMetrics.start(new SnapshotEvent()) : null;}
+     */
+    static <E extends TransactionEvents.PhaseEvent> E start(E event) {
+        event.start();
+        return event;
+    }
+
+    void recordSnapshot(TransactionEvents.SnapshotEvent event, SnapshotBackend.Snapshot snapshot) {
+        event.snapshot = snapshot == null ? null : snapshot.getName();
+        long nanos = event.finish();
+        begins.increment();
+        snapshotNanos.add(nanos);
+        snapshotLatency.record(nanos);
+    }
+
+    void recordHash(TransactionEvents.HashEvent event, Path path, long bytes) {
+        event.path = path.toString();
+        event.bytes = bytes;
+        long nanos = event.finish();
+        filesHashed.increment();
+        bytesHashed.add(bytes);
+        hashLatency.record(nanos);
+    }
+
+    void recordValidation(TransactionEvents.ValidationEvent event, ValidationMode mode, int files, boolean conflict) {
+        event.mode = mode.name();
+        event.files = files;
+        event.conflict = conflict;
+        validationLatency.record(event.finish());
+    }
+
+    void recordCommit(TransactionEvents.CommitEvent event, boolean committed) {
+        event.committed = committed;
+        commitLatency.record(event.finish());
+        if (committed) {
+            commits.increment();
+        } else {
+            aborts.increment();
+        }
+    }
+
+    void recordRollback(TransactionEvents.RollbackEvent event, String mode, boolean success) {
+        event.mode = mode;
+        event.success = success;
+        rollbackLatency.record(event.finish());
+        rollbacks.increment();
+    }
+
+    @Override
+    public long getBegins() {
+        return begins.sum();
+    }
+
+    @Override
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    @Override
+    public long getAborts() {
+        return aborts.sum();
+    }
+
+    @Override
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return filesHashed.sum();
+    }
+
+    @Override
+    public long getBytesHashed() {
+        return bytesHashed.sum();
+    }
+
+    @Override
+    public long getSnapshotTimeMillis() {
+        return snapshotNanos.sum() / 1_000_000;
+    }
+
+    @Override
+    public double getSnapshotLatencyMeanMicros() {
+        return snapshotLatency.meanMicros();
+    }
+
+    @Override
+    public double getSnapshotLatencyP99Micros() {
+        return snapshotLatency.percentileMicros(99);
+    }
+
+    @Override
+    public double getHashLatencyMeanMicros() {
+        return hashLatency.meanMicros();
+    }
+
+    @Override
+    public double getHashLatencyP99Micros() {
+        return hashLatency.percentileMicros(99);
+    }
+
+    @Override
+    public double getValidationLatencyMeanMicros() {
+        return validationLatency.meanMicros();
+    }
+
+    @Override
+    public double getValidationLatencyP99Micros() {
+        return validationLatency.percentileMicros(99);
+    }
+
+    @Override
+    public double getCommitLatencyMeanMicros() {
+        return commitLatency.meanMicros();
+    }
+
+    @Override
+    public double getCommitLatencyP99Micros() {
+        return commitLatency.percentileMicros(99);
+    }
+
+    @Override
+    public double getRollbackLatencyMeanMicros() {
+        return rollbackLatency.meanMicros();
+    }
+
+    @Override
+    public double getRollbackLatencyP99Micros() {
+        return rollbackLatency.percentileMicros(99);
+    }
+
+    @Override
+    public void resetStatistics() {
+        for (LongAdder adder : new LongAdder[]{begins, commits, aborts, rollbacks, filesHashed, bytesHashed,
+                snapshotNanos}) {
+            adder.reset();
+        }
+        for (RollingWindow window : new RollingWindow[]{snapshotLatency, hashLatency, validationLatency,
+                commitLatency, rollbackLatency}) {
+            window.reset();
+        }
+    }
+
+    /*
+     * Ringpuffer der letzten WINDOW_SIZE Latenzen einer Phase. Schreiben ist lock-frei; ausgewertet
+     * wird eine Kopie, daher können einzelne Werte beim Lesen schon überschrieben sein.
+     */
+    private static final class RollingWindow {
+        private final AtomicLongArray samples = new AtomicLongArray(WINDOW_SIZE);
+        private final AtomicLong next = new AtomicLong();
+
+        void record(long nanos) {
+            samples.set((int) (next.getAndIncrement() & (WINDOW_SIZE - 1)), nanos);
+        }
+
+        void reset() {
+            next.set(0);
+        }
+
+        private long[] snapshot() {
+            int count = (int) Math.min(next.get(), WINDOW_SIZE);
+            long[] copy = new long[count];
+            for (int i = 0; i < count; i++) {
+                copy[i] = samples.get(i);
+            }
+            return copy;
+        }
+
+        double meanMicros() {
+            return Arrays.stream(snapshot()).average().orElse(0) / 1e3;
+        }
+
+        double percentileMicros(double percentile) {
+            long[] values = snapshot();
+            if (values.length == 0) {
+                return 0;
+            }
+            Arrays.sort(values);
+            int index = (int) Math.ceil(percentile / 100.0 * values.length) - 1;
+            return values[Math.max(0, index)] / 1e3;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * JMX-Schnittstelle der Transaktionsstatistiken (ObjectName os.transaction:type=TransactionMetrics).
+ * Zähler laufen seit Programmstart bzw. seit resetStatistics, Latenzen beziehen sich auf die
+ * letzten 1024 Werte der jeweiligen Phase.
+ */
+public interface TransactionMetricsMBean {
+
+    long getBegins();
+
+    long getCommits();
+
+    long getAborts();
+
+    long getRollbacks();
+
+    long getFilesHashed();
+
+    long getBytesHashed();
+
+    // Summe der Zeit, die beginTransaction mit dem Erstellen von Snapshots verbracht hat
+    long getSnapshotTimeMillis();
+
+    double getSnapshotLatencyMeanMicros();
+
+    double getSnapshotLatencyP99Micros();
+
+    double getHashLatencyMeanMicros();
+
+    double getHashLatencyP99Micros();
+
+    double getValidationLatencyMeanMicros();
+
+    double getValidationLatencyP99Micros();
+
+    double getCommitLatencyMeanMicros();
+
+    double getCommitLatencyP99Micros();
+
+    double getRollbackLatencyMeanMicros();
+
+    double getRollbackLatencyP99Micros();
+
+    void resetStatistics();
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Undo-Log einer einzelnen Transaktion: Vor der ersten Änderung wird von jeder registrierten Datei
+ * ein Before-Image abgelegt. Beim Rollback werden nur diese Dateien wiederhergestellt, jeweils über
+ * eine temporäre Datei im Zielverzeichnis und ein atomares Umbenennen. Ein Leser sieht dadurch
+ * immer entweder den alten oder den wiederhergestellten Inhalt, nie eine halb kopierte Datei.
+ */
+public class UndoLog {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(UndoLog.class.getName());
+
+    // Temporäre Wurzelverzeichnisse dieses Prozesses; werden beim Beenden der JVM gelöscht
+    private static final Set<Path> temporaryRoots = ConcurrentHashMap.newKeySet();
+    // Gemeinsames Wurzelverzeichnis aller Undo-Logs dieses Prozesses
+    private static final Path DEFAULT_ROOT = temporaryRoot("transaction_undo");
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final Path directory;
+    // Originalpfad -> Before-Image (null, wenn die Datei beim Erfassen nicht existierte)
+    private final Map<Path, Path> beforeImages = new LinkedHashMap<>();
+    // Dateien, an die nur angehängt wird: Originalpfad -> Länge vor der Transaktion
+    private final Map<Path, Long> appendLengths = new LinkedHashMap<>();
+
+    /**
+     * Legt ein Undo-Log im temporären Verzeichnis des Systems an.
+     */
+    public UndoLog() {
+        this(DEFAULT_ROOT);
+    }
+
+    /**
+     * Legt ein Undo-Log unterhalb von root an. Das Verzeichnis wird erst beim ersten Before-Image erstellt.
+     */
+    public UndoLog(Path root) {
+        this.directory = root.resolve("undo_" + sequence.incrementAndGet());
+    }
+
+    /**
+     * Liefert ein festes Verzeichnis <tmp>/<prefix>_<pid> für die Logs dieses Prozesses. Es wird erst
+     * bei Bedarf angelegt und beim Beenden der JVM samt Inhalt gelöscht; Before-Images werden nur
+     * innerhalb des Prozesses zurückgespielt, danach also nicht mehr gebraucht.
+     */
+    static Path temporaryRoot(String prefix) {
+        Path root = Paths.get(System.getProperty("java.io.tmpdir"), prefix + "_" + ProcessHandle.current().pid());
+        if (temporaryRoots.add(root)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteRecursively(root), "undo-log-cleanup"));
+        }
+        return root;
+    }
+
+    private static void deleteRecursively(Path root) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            // Tiefste Einträge zuerst, damit die Verzeichnisse beim Löschen leer sind
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Temporäres Verzeichnis konnte nicht gelöscht werden: " + root, e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sichert den aktuellen Zustand der Datei, sofern sie noch nicht gesichert wurde.
+     */
+    public synchronized void record(Path file) throws IOException {
+        Path original = file.toAbsolutePath().normalize();
+        if (beforeImages.containsKey(original)) {
+            return;
+        }
+        if (!Files.exists(original)) {
+            beforeImages.put(original, null);
+            return;
+        }
+        Files.createDirectories(directory);
+        Path image = directory.resolve(beforeImages.size() + ".img");
+        Files.copy(original, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        beforeImages.put(original, image);
+    }
+
+    /**
+     * Merkt sich für eine Datei, an die nur angehängt wird, die aktuelle Länge. Statt eines
+     * Before-Images wird die Datei beim Wiederherstellen nur auf diese Länge gekürzt. Der Aufrufer
+     * hält dazu bis zum Ende der Transaktion das Lock der Datei, damit beim Kürzen keine Daten
+     * anderer Transaktionen verloren gehen.
+     */
+    public synchronized void recordAppend(Path file, long length) {
+        Path original = file.toAbsolutePath().normalize();
+        if (!beforeImages.containsKey(original)) {
+            appendLengths.putIfAbsent(original, length);
+        }
+    }
+
+    /**
+     * Stellt alle gesicherten Dateien wieder her. Dateien, die beim Erfassen nicht existierten,
+     * werden gelöscht.
+     *
+     * @return true, wenn alle Dateien wiederhergestellt werden konnten
+     */
+    public synchronized boolean restore() {
+        boolean success = true;
+        for (Map.Entry<Path, Path> entry : beforeImages.entrySet()) {
+            Path original = entry.getKey();
+            try {
+                if (entry.getValue() == null) {
+                    Files.deleteIfExists(original);
+                } else {
+                    // Kopie liegt im selben Verzeichnis wie das Ziel, damit das Umbenennen atomar ist
+                    Path tmp = original.resolveSibling("." + original.getFileName() + ".undo-" + directory.getFileName());
+                    Files.copy(entry.getValue(), tmp, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.COPY_ATTRIBUTES);
+                    Files.move(tmp, original, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Fehler beim Wiederherstellen von " + original, e);
+                success = false;
+            }
+        }
+        for (Map.Entry<Path, Long> entry : appendLengths.entrySet()) {
+            try (FileChannel channel = FileChannel.open(entry.getKey(), StandardOpenOption.WRITE)) {
+                channel.truncate(entry.getValue());
+            } catch (NoSuchFileException e) {
+                // Datei wurde inzwischen gelöscht, es gibt nichts zu kürzen
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Fehler beim Kürzen von " + entry.getKey(), e);
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Verwirft alle Before-Images, z.B. nach einem erfolgreichen Commit.
+     */
+    public synchronized void discard() {
+        try {
+            for (Path image : beforeImages.values()) {
+                if (image != null) {
+                    Files.deleteIfExists(image);
+                }
+            }
+            beforeImages.clear();
+            appendLengths.clear();
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Undo-Log konnte nicht gelöscht werden: " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Legt fest, wie der TransactionManager beim Commit prüft, ob sich registrierte Dateien geändert haben.
+ */
+public enum ValidationMode {
+    /**
+     * Der SHA-256-Hash jeder registrierten Datei wird beim Commit verglichen (Standard). Er wird aus
+     * dem prozessweiten HashCache übernommen, solange Pfad, Inode, Größe sowie mtime und ctime in
+     * Nanosekunden mit dem Eintrag übereinstimmen; sonst wird die Datei vollständig neu gehasht.
+     * Wie bei METADATA_FIRST wird also darauf vertraut, dass eine Änderung die Stat-Daten ändert. Stat-Daten,
+     * denen nicht vertraut werden kann (Änderung kurz vor dem Hashen), landen nicht im Cache.
+     */
+    HASH,
+    /**
+     * Zuerst werden Größe, mtime/ctime in Nanosekunden und Inode verglichen. Nur wenn diese sich
+     * unterscheiden oder nicht vertrauenswürdig sind, wird der SHA-256-Hash berechnet.
+     */
+    METADATA_FIRST,
+    /**
+     * Optimistische Nebenläufigkeitskontrolle über die VersionTable: registerFile merkt sich die
+     * Version jeder Datei, der Commit prüft und erhöht alle Versionen atomar. Es wird nichts gehasht;
+     * erkannt werden dafür nur Änderungen durch Transaktionen, die dieselbe VersionTable nutzen.
+     */
+    VERSIONED,
+    /**
+     * Wie HASH, aber über einen Merkle-Baum aus Blöcken fester Größe (siehe MerkleTree). Nach eigenen
+     * Schreibvorgängen werden nur die geänderten Blöcke neu gehasht, und ein Konflikt nennt die
+     * geänderten Byte-Bereiche. Hat eine Transaktion für die Datei nur Schreibvorgänge vorgemerkt
+     * (FileOperation im Transaktionsmodus), darf sie trotz fremder Änderungen committen, solange diese
+     * keinen Block berühren, den sie selbst überschreibt, und die Datei nicht gekürzt wurde. Was sie
+     * außerhalb dieser Bereiche gelesen hat, wird dann nicht geprüft.
+     */
+    BLOCKS
+}
@@ -1,109 +1,581 @@
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Simuliert parallele Transaktionen mit Konflikterkennung.
+ * Lastgenerator für parallele Transaktionen mit Konflikterkennung. Gezählt werden die tatsächlichen
+ * Commits und Abbrüche (Rückgabewert von commitTransaction), zusätzlich werden pro Phase
+ * (begin, register, operation, commit, total) Latenz-Histogramme aufgezeichnet.
+ *
+ * Aufruf: java ValidationTool [--threads=10] [--thread-type=platform|virtual] [--files=1] [--skew=0]
+ *         [--mix=0:0:100] [--ops-per-tx=1] [--duration=0] [--transactions=50] [--dir=shared]
+ *         [--backend=zfs|shadow] [--validation=VERSIONED] [--csv=datei] [--json=datei] [--verbose]
+ *         [--compare]
+ *
+ * --mix gibt die Anteile read:write:append an, --skew den Exponenten der Zipf-Verteilung, mit der die
+ * Dateien ausgewählt werden (0 = gleichverteilt). Mit --duration (Sekunden) laufen die Threads für
+ * eine feste Zeit, sonst führt jeder Thread --transactions Transaktionen aus.
+ *
+ * Mit virtuellen Threads lassen sich tausende gleichzeitige Transaktionen simulieren, ohne ebenso viele
+ * OS-Threads zu belegen: die Snapshot-Backends warten über Process.onExit bzw. CompletableFutures statt
+ * mit waitFor. --compare führt dieselbe Last nacheinander mit Plattform- und virtuellen Threads aus und
+ * stellt Durchsatz, Latenz und die höchste Zahl an OS-Threads gegenüber; Exportdateien erhalten dann
+ * die Endung -platform bzw. -virtual.
  */
 public class ValidationTool {
     // Logger für Protokollierung
     private static final Logger logger = Logger.getLogger(ValidationTool.class.getName());
 
-    // Anzahl paralleler Transaktionen
-    private static final int NUM_THREADS = 10;
-    // Anzahl Operationen pro Thread
-    private static final int OPERATIONS_PER_THREAD = 50;
-    // Gemeinsame Datei, auf der alle Transaktionen arbeiten
-    private static final String SHARED_FILE = "shared/validation.txt";
+    // Phasen einer Transaktion, für die Latenzen aufgezeichnet werden
+    enum Phase { BEGIN, REGISTER, OPERATION, COMMIT, TOTAL }
+
+    enum OperationType { READ, WRITE, APPEND }
 
     public static void main(String[] args) {
-        // Zunächst sicherstellen, dass der Ordner für die gemeinsame Datei existiert
+        Config config;
         try {
-            Files.createDirectories(Paths.get("shared"));
-        } catch (IOException e) {
-            logger.severe(e.getMessage());
+            config = Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ungültige Option: " + e.getMessage());
+            System.err.println("Aufruf: java ValidationTool [--threads=N] [--thread-type=platform|virtual] "
+                    + "[--files=N] [--skew=S] [--mix=R:W:A] [--ops-per-tx=N] [--duration=S] [--transactions=N] "
+                    + "[--dir=D] [--backend=zfs|shadow] [--validation=MODE] [--csv=F] [--json=F] [--verbose] [--compare]");
+            return;
+        }
+
+        // Die Transaktionsklassen melden jeden Schritt; ohne --verbose werden die Meldungen nicht ausgegeben
+        TransactionEventBus events = TransactionEventBus.shared();
+        events.setSilent(!config.verbose);
+
+        if (!config.compare) {
+            RunResult result = runWorkload(config, config.virtualThreads);
+            if (result == null) {
+                return;
+            }
+            printReport(config, result);
+            export(config, result, "");
+            return;
         }
-        // Gemeinsame Datei erstellen oder leeren
+
+        // Gleiche Last nacheinander mit einem Pool aus Plattform-Threads und mit virtuellen Threads
+        RunResult platform = runWorkload(config, false);
+        RunResult virtual = platform == null ? null : runWorkload(config, true);
+        if (virtual == null) {
+            return;
+        }
+        System.out.println("=== Plattform-Threads ===");
+        printReport(config, platform);
+        System.out.println("=== Virtuelle Threads ===");
+        printReport(config, virtual);
+        printComparison(platform, virtual);
+        export(config, platform, "-platform");
+        export(config, virtual, "-virtual");
+    }
+
+    /**
+     * Führt die konfigurierte Last einmal aus. Jeder Lauf erhält frische Dateien, ein eigenes
+     * Snapshot-Backend und einen eigenen Executor.
+     *
+     * @return null, wenn die Dateien nicht angelegt werden konnten
+     */
+    private static RunResult runWorkload(Config config, boolean virtualThreads) {
+        // Zunächst sicherstellen, dass der Ordner für die Dateien existiert, und die Dateien leeren
+        List<String> files = new ArrayList<>(config.files);
         try {
-            Files.write(Paths.get(SHARED_FILE), "".getBytes());
+            Files.createDirectories(config.dir);
+            for (int i = 0; i < config.files; i++) {
+                Path file = config.dir.resolve("validation_" + i + ".txt");
+                Files.write(file, new byte[0]);
+                files.add(file.toString());
+            }
         } catch (IOException e) {
             logger.severe(e.getMessage());
+            return null;
         }
 
-        // ExecutorService für parallele Ausführung
-        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
-        Future<Integer>[] futures = new Future[NUM_THREADS];
+        // Bei ZFS teilen sich gleichzeitige beginTransaction-Aufrufe aller Threads einen Snapshot,
+        // statt für jede Transaktion einen eigenen zu erstellen; die Snapshots werden vorab erstellt
+        // und nach Ende ihrer Transaktionen laufend gelöscht. Schattenkopien halten Before-Images pro
+        // Transaktion und dürfen nicht zusammengefasst werden: das Rollback einer Transaktion setzte
+        // sonst auch die Commits der anderen Transaktionen derselben Epoche zurück.
+        SnapshotLifecycleService lifecycle = null;
+        SnapshotBackend snapshots;
+        if (config.backend.equals("shadow")) {
+            snapshots = new ShadowCopySnapshotBackend();
+        } else {
+            lifecycle = new SnapshotLifecycleService(new ZfsSnapshotBackend(), 1, 0, 1, TimeUnit.SECONDS);
+            lifecycle.start();
+            snapshots = new CoalescingSnapshotBackend(lifecycle, 5, TimeUnit.MILLISECONDS, config.threads);
+        }
+        KeyChooser keys = new KeyChooser(files, config.skew);
 
-        // Transaktionssimulation für jeden Thread starten
-        for (int i = 0; i < NUM_THREADS; i++) {
-            futures[i] = executor.submit(new TransactionSimulation(i));
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        threadBean.resetPeakThreadCount();
+        ExecutorService executor = virtualThreads ? newVirtualThreadExecutor() : null;
+        boolean virtualUsed = executor != null;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(config.threads);
         }
+        List<Future<WorkerResult>> futures = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long startNanos;
+        long elapsedNanos;
+        WorkerResult total = new WorkerResult();
+        try {
+            for (int i = 0; i < config.threads; i++) {
+                futures.add(executor.submit(new TransactionSimulation(i, config, snapshots, keys, start)));
+            }
+            startNanos = System.nanoTime();
+            start.countDown();
+            for (Future<WorkerResult> future : futures) {
+                try {
+                    total.add(future.get());
+                } catch (InterruptedException | ExecutionException e) {
+                    logger.severe(e.getMessage());
+                }
+            }
+            elapsedNanos = System.nanoTime() - startNanos;
+        } finally {
+            executor.shutdown();
+            if (lifecycle != null) {
+                lifecycle.close();
+            }
+        }
+        TransactionEventBus.shared().flush();
+        // ThreadMXBean zählt nur Plattform-Threads, also die tatsächlich belegten OS-Threads
+        return new RunResult(total, elapsedNanos, virtualUsed, threadBean.getPeakThreadCount());
+    }
 
-        int totalConflicts = 0;
-        for (int i = 0; i < NUM_THREADS; i++) {
-            try {
-                totalConflicts += futures[i].get();
-            } catch (InterruptedException | ExecutionException e) {
-               logger.severe(e.getMessage());
+    private static void export(Config config, RunResult result, String suffix) {
+        try {
+            if (config.csvFile != null) {
+                Path csvFile = withSuffix(config.csvFile, suffix);
+                Files.write(csvFile, toCsv(result.total).getBytes(StandardCharsets.UTF_8));
+                System.out.println("CSV geschrieben: " + csvFile);
+            }
+            if (config.jsonFile != null) {
+                Path jsonFile = withSuffix(config.jsonFile, suffix);
+                Files.write(jsonFile, toJson(config, result).getBytes(StandardCharsets.UTF_8));
+                System.out.println("JSON geschrieben: " + jsonFile);
             }
+        } catch (IOException e) {
+            System.err.println("Fehler beim Exportieren der Ergebnisse.");
+            logger.log(Level.SEVERE, e.getMessage(), e);
         }
-        executor.shutdown();
-        System.out.println("Gesamtzahl der Konflikte: " + totalConflicts);
+    }
+
+    // ergebnis.json + "-virtual" -> ergebnis-virtual.json
+    private static Path withSuffix(Path file, String suffix) {
+        if (suffix.isEmpty()) {
+            return file;
+        }
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String renamed = dot > 0 ? name.substring(0, dot) + suffix + name.substring(dot) : name + suffix;
+        return file.resolveSibling(renamed);
+    }
+
+    // Virtuelle Threads gibt es erst ab Java 21; auf älteren Versionen wird null geliefert und der
+    // Aufrufer fällt auf Plattform-Threads zurück
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtuelle Threads werden von dieser Java-Version nicht unterstützt, "
+                    + "verwende Plattform-Threads.");
+            return null;
+        }
+    }
+
+    private static void printReport(Config config, RunResult result) {
+        WorkerResult total = result.total;
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "Laufzeit: %.2f s, %d Threads (%s), höchstens %d OS-Threads%n", seconds,
+                config.threads, result.virtualThreads ? "virtuell" : "Plattform", result.peakOsThreads);
+        System.out.printf(Locale.ROOT, "Commits: %d, Abbrüche: %d, Fehler: %d, Durchsatz: %.1f Commits/s%n",
+                total.commits, total.aborts, total.errors, total.commits / seconds);
+        System.out.println("Operationen: read=" + total.operations.get(OperationType.READ)
+                + ", write=" + total.operations.get(OperationType.WRITE)
+                + ", append=" + total.operations.get(OperationType.APPEND));
+        System.out.printf("%-10s %10s %12s %12s %12s %12s %12s%n",
+                "Phase", "Anzahl", "Mittel [us]", "p50 [us]", "p99 [us]", "p999 [us]", "Max [us]");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram h = total.latencies.get(phase);
+            System.out.printf(Locale.ROOT, "%-10s %10d %12.1f %12.1f %12.1f %12.1f %12.1f%n",
+                    phase.name().toLowerCase(Locale.ROOT), h.getCount(), h.getMean() / 1e3,
+                    h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3,
+                    h.getMax() / 1e3);
+        }
+        System.out.println("Gesamtzahl der Konflikte: " + total.aborts);
+    }
+
+    private static void printComparison(RunResult platform, RunResult virtual) {
+        System.out.println("=== Vergleich ===");
+        System.out.printf("%-12s %12s %14s %14s %12s%n",
+                "Threads", "Commits/s", "p50 total [us]", "p99 total [us]", "OS-Threads");
+        for (RunResult result : new RunResult[]{platform, virtual}) {
+            LatencyHistogram h = result.total.latencies.get(Phase.TOTAL);
+            System.out.printf(Locale.ROOT, "%-12s %12.1f %14.1f %14.1f %12d%n",
+                    result.virtualThreads ? "virtuell" : "Plattform",
+                    result.total.commits / (result.elapsedNanos / 1e9),
+                    h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, result.peakOsThreads);
+        }
+    }
+
+    private static String toCsv(WorkerResult total) {
+        StringBuilder csv = new StringBuilder("phase,count,mean_us,p50_us,p99_us,p999_us,max_us\n");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram h = total.latencies.get(phase);
+            csv.append(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                    phase.name().toLowerCase(Locale.ROOT), h.getCount(), h.getMean() / 1e3,
+                    h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3,
+                    h.getMax() / 1e3));
+        }
+        return csv.toString();
+    }
+
+    private static String toJson(Config config, RunResult result) {
+        WorkerResult total = result.total;
+        StringBuilder json = new StringBuilder("{\n");
+        json.append(String.format(Locale.ROOT,
+                "  \"config\": {\"threads\": %d, \"threadType\": \"%s\", \"files\": %d, \"skew\": %.3f, "
+                        + "\"mix\": [%d, %d, %d], \"opsPerTransaction\": %d, \"backend\": \"%s\", "
+                        + "\"validation\": \"%s\"},%n",
+                config.threads, result.virtualThreads ? "virtual" : "platform", config.files, config.skew,
+                config.mix[0], config.mix[1], config.mix[2], config.opsPerTransaction, config.backend,
+                config.validationMode));
+        json.append(String.format(Locale.ROOT,
+                "  \"elapsedSeconds\": %.3f,%n  \"peakOsThreads\": %d,%n  \"commits\": %d,%n  \"aborts\": %d,%n"
+                        + "  \"errors\": %d,%n",
+                result.elapsedNanos / 1e9, result.peakOsThreads, total.commits, total.aborts, total.errors));
+        json.append(String.format("  \"operations\": {\"read\": %d, \"write\": %d, \"append\": %d},%n",
+                total.operations.get(OperationType.READ), total.operations.get(OperationType.WRITE),
+                total.operations.get(OperationType.APPEND)));
+        json.append("  \"phases\": {\n");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            LatencyHistogram h = total.latencies.get(phases[i]);
+            json.append(String.format(Locale.ROOT,
+                    "    \"%s\": {\"count\": %d, \"mean_us\": %.3f, \"p50_us\": %.3f, \"p99_us\": %.3f, "
+                            + "\"p999_us\": %.3f, \"max_us\": %.3f}%s%n",
+                    phases[i].name().toLowerCase(Locale.ROOT), h.getCount(), h.getMean() / 1e3,
+                    h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3,
+                    h.getMax() / 1e3, i < phases.length - 1 ? "," : ""));
+        }
+        json.append("  }\n}\n");
+        return json.toString();
     }
 
     /**
-     * Simuliert eine Transaktion mit zufälligen Dateioperationen und Konflikterkennung.
+     * Simuliert Transaktionen mit zufälligen Dateioperationen und zählt das tatsächliche Ergebnis
+     * jedes Commits.
      */
-    static class TransactionSimulation implements Callable<Integer> {
-        // Logger für Protokollierung
-        private static final Logger logger = Logger.getLogger(TransactionSimulation.class.getName());
+    static class TransactionSimulation implements Callable<WorkerResult> {
         private final int threadId;
-        public TransactionSimulation(int threadId) {
+        private final Config config;
+        private final SnapshotBackend snapshots;
+        private final KeyChooser keys;
+        private final CountDownLatch start;
+
+        public TransactionSimulation(int threadId, Config config, SnapshotBackend snapshots, KeyChooser keys,
+                                     CountDownLatch start) {
             this.threadId = threadId;
+            this.config = config;
+            this.snapshots = snapshots;
+            this.keys = keys;
+            this.start = start;
         }
 
         @Override
-        public Integer call() {
-            int conflictCount = 0;
-            // Für jede Operation eine Transaktion starten, Dateioperationen durchführen und Transaktion beenden
-            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
-                TransactionManager tm = new TransactionManager();
-                FileOperation fileOp = new FileOperation();
-                tm.beginTransaction();
-                tm.registerFile(SHARED_FILE);
-
-                // Erzeugung eines zufälligen Textes
-                String randomText = "Thread " + threadId + " Op " + i + ": " + UUID.randomUUID() + "\n";
-
-                // Lies den aktuellen Inhalt der Datei
-                String content = "";
+        public WorkerResult call() throws InterruptedException {
+            WorkerResult result = new WorkerResult();
+            FileOperation fileOp = new FileOperation();
+            start.await();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+            for (int i = 0; config.durationSeconds > 0 ? System.nanoTime() < deadline : i < config.transactions; i++) {
                 try {
-                    content = new String(Files.readAllBytes(Paths.get(SHARED_FILE)));
-                } catch (IOException e) {
-                    logger.severe(e.getMessage());
+                    runTransaction(i, fileOp, result);
+                } catch (RuntimeException e) {
+                    result.errors++;
+                    logger.log(Level.SEVERE, "Fehler in Thread " + threadId, e);
                 }
-                // Text an den aktuellen Inhalt anhängen und in die Datei schreiben
-                String newContent = content + randomText;
-                fileOp.write(SHARED_FILE, newContent);
+            }
+            return result;
+        }
 
-                // Commit der Transaktion: Unser TransactionManager führt intern Rollback bei Konflikten durch
-                // Wir simulieren, dass ein Konflikt auftritt, wenn die Commit-Meldung "Rollback" enthält.
-                // Wir gehen von einem optimistischen Ansatz bzgl der Konflikterkennung aus.
+        private void runTransaction(int txId, FileOperation fileOp, WorkerResult result) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            TransactionManager tm = new TransactionManager(snapshots);
+            tm.setValidationMode(config.validationMode);
+
+            long txStart = System.nanoTime();
+            tm.beginTransaction();
+            long t = result.record(Phase.BEGIN, txStart);
+            for (int op = 0; op < config.opsPerTransaction; op++) {
+                String file = keys.next(random);
+                OperationType type = config.nextOperation(random);
+                // Reine Anhänge werden gesondert registriert, damit paralleles Anhängen kein Konflikt ist
                 try {
-                    tm.commitTransaction();
-                    // Hier wird simuliert, dass ein Konflikt auftritt, dies passiert hier bei
-                    // einem simulierten wert von 10 % der Operationen
-                    if (Math.random() < 0.1) {
-                        conflictCount++;
+                    if (type == OperationType.APPEND) {
+                        tm.registerAppend(file);
+                    } else {
+                        tm.registerFile(file);
                     }
-                } catch (Exception e) {
-                    conflictCount++;
+                } catch (IllegalStateException e) {
+                    // Datei ist von einer anderen anhängenden Transaktion gesperrt
+                    tm.rollbackTransaction();
+                    result.aborts++;
+                    result.record(Phase.COMMIT, t);
+                    return;
+                }
+                t = result.record(Phase.REGISTER, t);
+
+                String text = "Thread " + threadId + " Tx " + txId + ": " + UUID.randomUUID() + "\n";
+                switch (type) {
+                    case READ:
+                        fileOp.read(file);
+                        break;
+                    case WRITE:
+                        fileOp.write(file, text);
+                        break;
+                    default:
+                        fileOp.append(file, text);
                 }
+                result.operations.merge(type, 1L, Long::sum);
+                t = result.record(Phase.OPERATION, t);
+            }
+
+            // Commit der Transaktion: bei einem Konflikt führt der TransactionManager das Rollback durch
+            if (tm.commitTransaction()) {
+                result.commits++;
+            } else {
+                result.aborts++;
+            }
+            t = result.record(Phase.COMMIT, t);
+            result.latencies.get(Phase.TOTAL).record(t - txStart);
+        }
+    }
+
+    // Ergebnis eines vollständigen Laufs
+    static final class RunResult {
+        private final WorkerResult total;
+        private final long elapsedNanos;
+        // Tatsächlich verwendete Thread-Art (ohne Unterstützung wird auf Plattform-Threads zurückgefallen)
+        private final boolean virtualThreads;
+        private final int peakOsThreads;
+
+        RunResult(WorkerResult total, long elapsedNanos, boolean virtualThreads, int peakOsThreads) {
+            this.total = total;
+            this.elapsedNanos = elapsedNanos;
+            this.virtualThreads = virtualThreads;
+            this.peakOsThreads = peakOsThreads;
+        }
+    }
+
+    // Ergebnisse eines Threads; werden am Ende zu einem Gesamtergebnis addiert
+    static class WorkerResult {
+        private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+        private final Map<OperationType, Long> operations = new EnumMap<>(OperationType.class);
+        private long commits;
+        private long aborts;
+        private long errors;
+
+        WorkerResult() {
+            for (Phase phase : Phase.values()) {
+                latencies.put(phase, new LatencyHistogram());
+            }
+            for (OperationType type : OperationType.values()) {
+                operations.put(type, 0L);
+            }
+        }
+
+        // Zeichnet die Dauer seit since auf und liefert den aktuellen Zeitpunkt als Beginn der nächsten Phase
+        long record(Phase phase, long since) {
+            long now = System.nanoTime();
+            latencies.get(phase).record(now - since);
+            return now;
+        }
+
+        void add(WorkerResult other) {
+            for (Phase phase : Phase.values()) {
+                latencies.get(phase).add(other.latencies.get(phase));
+            }
+            for (OperationType type : OperationType.values()) {
+                operations.merge(type, other.operations.get(type), Long::sum);
+            }
+            commits += other.commits;
+            aborts += other.aborts;
+            errors += other.errors;
+        }
+    }
+
+    /**
+     * Wählt Dateien nach einer Zipf-Verteilung aus: Datei i hat das Gewicht 1 / (i + 1)^skew.
+     */
+    static class KeyChooser {
+        private final List<String> files;
+        private final double[] cumulative;
+
+        KeyChooser(List<String> files, double skew) {
+            this.files = files;
+            this.cumulative = new double[files.size()];
+            double sum = 0;
+            for (int i = 0; i < files.size(); i++) {
+                sum += 1.0 / Math.pow(i + 1, skew);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < cumulative.length; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        String next(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return files.get(Math.min(index, files.size() - 1));
+        }
+    }
+
+    // Kommandozeilenoptionen im Format --name=wert
+    static class Config {
+        private int threads = 10;
+        private boolean virtualThreads;
+        private int files = 1;
+        private double skew;
+        // Anteile read:write:append; ohne Angabe wird wie bisher nur angehängt
+        private int[] mix = {0, 0, 100};
+        private int opsPerTransaction = 1;
+        private long durationSeconds;
+        private int transactions = 50;
+        private Path dir = Paths.get("shared");
+        private String backend = "zfs";
+        private ValidationMode validationMode = ValidationMode.VERSIONED;
+        private Path csvFile;
+        private Path jsonFile;
+        private boolean verbose;
+        private boolean compare;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                if (arg.equals("--verbose")) {
+                    config.verbose = true;
+                    continue;
+                }
+                if (arg.equals("--compare")) {
+                    config.compare = true;
+                    continue;
+                }
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException(arg);
+                }
+                String name = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                try {
+                    switch (name) {
+                        case "threads":
+                            config.threads = positive(Integer.parseInt(value), arg);
+                            break;
+                        case "thread-type":
+                            if (!value.equals("platform") && !value.equals("virtual")) {
+                                throw new IllegalArgumentException(arg);
+                            }
+                            config.virtualThreads = value.equals("virtual");
+                            break;
+                        case "files":
+                            config.files = positive(Integer.parseInt(value), arg);
+                            break;
+                        case "skew":
+                            config.skew = Double.parseDouble(value);
+                            break;
+                        case "mix":
+                            config.mix = parseMix(value, arg);
+                            break;
+                        case "ops-per-tx":
+                            config.opsPerTransaction = positive(Integer.parseInt(value), arg);
+                            break;
+                        case "duration":
+                            config.durationSeconds = Long.parseLong(value);
+                            break;
+                        case "transactions":
+                            config.transactions = positive(Integer.parseInt(value), arg);
+                            break;
+                        case "dir":
+                            config.dir = Paths.get(value);
+                            break;
+                        case "backend":
+                            if (!value.equals("zfs") && !value.equals("shadow")) {
+                                throw new IllegalArgumentException(arg);
+                            }
+                            config.backend = value;
+                            break;
+                        case "validation":
+                            config.validationMode = ValidationMode.valueOf(value.toUpperCase(Locale.ROOT));
+                            break;
+                        case "csv":
+                            config.csvFile = Paths.get(value);
+                            break;
+                        case "json":
+                            config.jsonFile = Paths.get(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException(arg);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(arg);
+                }
+            }
+            return config;
+        }
+
+        private static int positive(int value, String arg) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(arg);
+            }
+            return value;
+        }
+
+        private static int[] parseMix(String value, String arg) {
+            String[] parts = value.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException(arg);
+            }
+            int[] mix = new int[3];
+            for (int i = 0; i < 3; i++) {
+                mix[i] = Integer.parseInt(parts[i]);
+                if (mix[i] < 0) {
+                    throw new IllegalArgumentException(arg);
+                }
+            }
+            if (mix[0] + mix[1] + mix[2] == 0) {
+                throw new IllegalArgumentException(arg);
+            }
+            return mix;
+        }
+
+        OperationType nextOperation(ThreadLocalRandom random) {
+            int r = random.nextInt(mix[0] + mix[1] + mix[2]);
+            if (r < mix[0]) {
+                return OperationType.READ;
             }
-            return conflictCount;
+            return r < mix[0] + mix[1] ? OperationType.WRITE : OperationType.APPEND;
         }
     }
 }
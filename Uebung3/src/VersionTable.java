@@ -0,0 +1,141 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-Memory-Versionstabelle für die optimistische Konfliktprüfung (MVCC). Jeder Pfad hat eine
+ * Versionsnummer, die bei jedem erfolgreichen Commit einer Transaktion, die den Pfad registriert
+ * hat, erhöht wird. Lesen ist lock-frei; Prüfen und Erhöhen geschehen gemeinsam unter den
+ * Lock-Stripes der betroffenen Pfade, die immer in aufsteigender Reihenfolge gesperrt werden
+ * (dadurch keine Deadlocks).
+ */
+public class VersionTable {
+    private static final int DEFAULT_STRIPES = 64;
+    private static final VersionTable SHARED = new VersionTable(DEFAULT_STRIPES);
+
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+
+    public VersionTable(int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Liefert die Tabelle, die alle TransactionManager im Prozess gemeinsam nutzen.
+     */
+    public static VersionTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Normalisiert einen Pfad, damit relative und absolute Angaben derselben Datei zusammenfallen.
+     */
+    public static String key(String filePath) {
+        return Paths.get(filePath).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Liefert die aktuelle Version des Pfades (0, wenn er noch nie committet wurde).
+     */
+    public long currentVersion(String key) {
+        return versions.computeIfAbsent(key, k -> new AtomicLong()).get();
+    }
+
+    /**
+     * Prüft atomar, ob alle Pfade noch die beim Registrieren gelesene Version haben, und erhöht
+     * in diesem Fall alle Versionen.
+     *
+     * @param readVersions Pfad (siehe key) -> gelesene Version
+     * @return die Pfade mit veralteter Version; leer, wenn der Commit erfolgreich war
+     */
+    public List<String> validateAndBump(Map<String, Long> readVersions) {
+        int[] stripeIndexes = stripesFor(readVersions.keySet());
+        for (int index : stripeIndexes) {
+            stripes[index].lock();
+        }
+        try {
+            List<String> conflicts = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : readVersions.entrySet()) {
+                if (versions.computeIfAbsent(entry.getKey(), k -> new AtomicLong()).get() != entry.getValue()) {
+                    conflicts.add(entry.getKey());
+                }
+            }
+            if (conflicts.isEmpty()) {
+                for (String key : readVersions.keySet()) {
+                    versions.get(key).incrementAndGet();
+                }
+            }
+            return conflicts;
+        } finally {
+            for (int i = stripeIndexes.length - 1; i >= 0; i--) {
+                stripes[stripeIndexes[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Prüft ohne Locks, ob alle Pfade noch die gelesene Version haben, ohne Versionen zu erhöhen.
+     * Genügt für Transaktionen, die nur lesen: sie werden nach allen Lesezugriffen geprüft, und
+     * jeder Commit, der eine der Dateien inzwischen geändert hat, hat deren Version bereits erhöht.
+     *
+     * @return die Pfade mit veralteter Version
+     */
+    public List<String> findStale(Map<String, Long> readVersions) {
+        List<String> stale = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : readVersions.entrySet()) {
+            if (currentVersion(entry.getKey()) != entry.getValue()) {
+                stale.add(entry.getKey());
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Erhöht die Versionen der Pfade ohne vorherige Prüfung, z.B. nachdem ein Commit seine
+     * vorgemerkten Schreibvorgänge übertragen hat.
+     */
+    public void bump(Collection<String> keys) {
+        int[] stripeIndexes = stripesFor(keys);
+        for (int index : stripeIndexes) {
+            stripes[index].lock();
+        }
+        try {
+            for (String key : keys) {
+                versions.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+            }
+        } finally {
+            for (int i = stripeIndexes.length - 1; i >= 0; i--) {
+                stripes[stripeIndexes[i]].unlock();
+            }
+        }
+    }
+
+    // Sortierte, eindeutige Stripe-Indizes der Pfade
+    private int[] stripesFor(Iterable<String> keys) {
+        boolean[] used = new boolean[stripes.length];
+        int count = 0;
+        for (String key : keys) {
+            int index = Math.floorMod(key.hashCode(), stripes.length);
+            if (!used[index]) {
+                used[index] = true;
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        int next = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                result[next++] = i;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,596 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only Write-Ahead-Log für dauerhafte Schreibvorgänge. Ein Schreibvorgang gilt als
+ * abgeschlossen, sobald sein Datensatz im Log auf die Platte geschrieben wurde. Alle Datensätze,
+ * die innerhalb eines Group-Commit-Intervalls eintreffen, teilen sich dabei ein einziges
+ * FileChannel.force. Anschließend überträgt ein Hintergrund-Thread die Inhalte in die Zieldateien.
+ *
+ * Stürzt der Prozess ab, bevor eine Zieldatei vollständig geschrieben wurde, spielt der nächste
+ * Start das Log erneut ein. Das Log wird erst gekürzt, wenn alle Datensätze übertragen und die
+ * Zieldateien selbst auf die Platte geschrieben wurden (Checkpoint).
+ *
+ * Schlägt das Sichern des Logs fehl, werden die betroffenen und alle danach angehängten
+ * Schreibvorgänge mit dem Fehler abgeschlossen und aus dem Log entfernt. Schlägt das Übertragen
+ * eines gesicherten Datensatzes in die Zieldatei fehl, werden er und alle folgenden nicht mehr
+ * übertragen; sie bleiben im Log, das nicht mehr gekürzt wird, und werden beim nächsten Start
+ * eingespielt. In beiden Fällen nimmt das Log danach keine Schreibvorgänge mehr an.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+
+    private static final int RECORD_MAGIC = 0x57414c52; // "WALR"
+    // Ganze Datei ersetzen
+    private static final byte OP_WRITE = 1;
+    // An einer festen Position schreiben; Anhängen wird beim Protokollieren in eine feste Position
+    // übersetzt, damit das erneute Einspielen nach einem Absturz nicht doppelt anhängt
+    private static final byte OP_WRITE_AT = 2;
+    // magic + seq + op + offset + Pfadlänge + Datenlänge vor den variablen Teilen, CRC am Ende
+    private static final int HEADER_SIZE = 4 + 8 + 1 + 8 + 4 + 4;
+    private static final int TRAILER_SIZE = 8;
+    // Ab dieser Loggröße wird ein Checkpoint versucht, sobald alle Datensätze übertragen sind
+    private static final long CHECKPOINT_THRESHOLD = 16L * 1024 * 1024;
+
+    private final Path logFile;
+    private final FileChannel channel;
+    private final long groupCommitNanos;
+
+    // Schützt Log-Position, Sequenznummern und die Liste der noch nicht gesicherten Datensätze
+    private final Object appendLock = new Object();
+    private long lastSequence;
+    private long writePosition;
+    private List<Record> unflushed = new ArrayList<>();
+    // Fehler beim Sichern oder Übertragen; danach werden keine Schreibvorgänge mehr angenommen
+    private IOException failure;
+
+    private final BlockingQueue<Record> applyQueue = new LinkedBlockingQueue<>();
+    // Pfad -> Sequenznummer des letzten angehängten Datensatzes für diesen Pfad
+    private final Map<String, Long> lastSequenceByPath = new ConcurrentHashMap<>();
+    // Pfad -> Dateigröße nach Anwendung aller protokollierten Datensätze (nur unter appendLock)
+    private final Map<String, Long> logicalSizes = new HashMap<>();
+    // Zieldateien, die seit dem letzten Checkpoint geschrieben, aber noch nicht gesichert wurden
+    private final Set<Path> dirtyTargets = new HashSet<>();
+    private final Object appliedLock = new Object();
+    private long appliedSequence;
+    // Erste Sequenznummer, die wegen eines Fehlers beim Sichern nie übertragen wird
+    private long failedSequence = Long.MAX_VALUE;
+    // Fehler beim Übertragen in eine Zieldatei; ab appliedSequence + 1 bleibt alles nur im Log
+    private IOException applyFailure;
+
+    private final Thread flusher;
+    private final Thread applier;
+    private volatile boolean closed;
+
+    /**
+     * Öffnet (oder erstellt) das Log, spielt noch nicht übertragene Datensätze eines früheren Laufs
+     * ein und startet die Hintergrund-Threads.
+     *
+     * @param groupCommitInterval Zeitraum, in dem Schreibvorgänge zu einem force zusammengefasst werden
+     */
+    public WriteAheadLog(Path logFile, long groupCommitInterval, TimeUnit unit) throws IOException {
+        this.logFile = logFile;
+        this.groupCommitNanos = unit.toNanos(groupCommitInterval);
+        this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recover();
+
+        flusher = new Thread(this::flushLoop, "wal-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+        applier = new Thread(this::applyLoop, "wal-apply");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    public Path getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Protokolliert das Ersetzen des gesamten Dateiinhalts.
+     *
+     * @return Future, das abgeschlossen wird, sobald der Datensatz dauerhaft gespeichert ist
+     */
+    public CompletableFuture<Void> submitWrite(String filePath, byte[] content) {
+        return submit(OP_WRITE, VersionTable.key(filePath), -1, content);
+    }
+
+    /**
+     * Protokolliert einen Schreibvorgang ab der gegebenen Position.
+     */
+    public CompletableFuture<Void> submitWriteAt(String filePath, long position, byte[] content) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative Position: " + position);
+        }
+        return submit(OP_WRITE_AT, VersionTable.key(filePath), position, content);
+    }
+
+    /**
+     * Protokolliert das Anhängen an die Datei. Die Position wird aus der Dateigröße nach allen
+     * bereits protokollierten Datensätzen bestimmt; die Datei sollte daher nur über dieses Log
+     * verändert werden.
+     */
+    public CompletableFuture<Void> submitAppend(String filePath, byte[] content) throws IOException {
+        String key = VersionTable.key(filePath);
+        while (true) {
+            boolean known;
+            synchronized (appendLock) {
+                known = logicalSizes.containsKey(key);
+            }
+            if (!known) {
+                // Größe außerhalb des Locks ermitteln, da der Applier für den Checkpoint denselben Lock braucht
+                long size = currentSize(key);
+                synchronized (appendLock) {
+                    logicalSizes.putIfAbsent(key, size);
+                }
+            }
+            CompletableFuture<Void> durable = submit(OP_WRITE_AT, key, -1, content);
+            // null: die Größe wurde inzwischen per invalidateSize verworfen, daher neu bestimmen
+            if (durable != null) {
+                return durable;
+            }
+        }
+    }
+
+    /**
+     * Schreibt dauerhaft: kehrt zurück, sobald der Datensatz im Log gesichert ist. Die Zieldatei
+     * wird im Hintergrund aktualisiert.
+     */
+    public void write(String filePath, byte[] content) throws IOException {
+        await(submitWrite(filePath, content));
+    }
+
+    public void writeAt(String filePath, long position, byte[] content) throws IOException {
+        await(submitWriteAt(filePath, position, content));
+    }
+
+    public void append(String filePath, byte[] content) throws IOException {
+        await(submitAppend(filePath, content));
+    }
+
+    /*
+     * Schreibt den Datensatz ans Ende des Logs. Bei OP_WRITE_AT mit offset -1 (Anhängen) wird die
+     * Position aus logicalSizes übernommen; fehlt die Größe dort, wird nichts geschrieben und null
+     * geliefert.
+     */
+    private CompletableFuture<Void> submit(byte op, String key, long offset, byte[] content) {
+        Record record;
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Write-Ahead-Log ist geschlossen: " + logFile);
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(
+                        new IOException("Write-Ahead-Log ist nach einem Fehler nicht mehr benutzbar: " + logFile, failure));
+            }
+            long position = offset;
+            if (offset < 0 && op == OP_WRITE_AT) {
+                Long size = logicalSizes.get(key);
+                if (size == null) {
+                    return null;
+                }
+                position = size;
+            }
+            record = new Record(lastSequence + 1, op, key, position, content);
+            try {
+                ByteBuffer encoded = record.encode();
+                long logPosition = writePosition;
+                while (encoded.hasRemaining()) {
+                    logPosition += channel.write(encoded, logPosition);
+                }
+                record.logPosition = writePosition;
+                writePosition = logPosition;
+            } catch (IOException e) {
+                // Ein teilweise geschriebener Datensatz wird vom nächsten überschrieben
+                return CompletableFuture.failedFuture(e);
+            }
+            lastSequence = record.sequence;
+            lastSequenceByPath.put(key, record.sequence);
+            if (op == OP_WRITE) {
+                logicalSizes.put(key, (long) content.length);
+            } else if (logicalSizes.containsKey(key)) {
+                logicalSizes.put(key, Math.max(logicalSizes.get(key), position + content.length));
+            }
+            unflushed.add(record);
+            appendLock.notifyAll();
+        }
+        return record.durable;
+    }
+
+    /**
+     * Vergisst die gemerkte Dateigröße, z.B. nachdem die Datei außerhalb des Logs gelöscht wurde.
+     */
+    public void invalidateSize(String filePath) {
+        synchronized (appendLock) {
+            logicalSizes.remove(VersionTable.key(filePath));
+        }
+    }
+
+    private long currentSize(String key) throws IOException {
+        try {
+            awaitApplied(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Unterbrochen beim Warten auf das Write-Ahead-Log: " + key);
+        }
+        try {
+            return Files.size(Paths.get(key));
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private static void await(CompletableFuture<Void> durable) throws IOException {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Wartet, bis alle bisher angehängten Schreibvorgänge für die Datei in die Zieldatei übertragen
+     * wurden. Nötig vor jedem Lesen der Zieldatei, damit die eigenen Schreibvorgänge sichtbar sind.
+     *
+     * @throws IOException wenn einer dieser Schreibvorgänge nicht übertragen werden konnte
+     */
+    public void awaitApplied(String filePath) throws InterruptedException, IOException {
+        Long sequence = lastSequenceByPath.get(VersionTable.key(filePath));
+        if (sequence == null) {
+            return;
+        }
+        synchronized (appliedLock) {
+            // Nach einem Fehler beim Sichern werden die verworfenen Datensätze nie übertragen
+            while (appliedSequence < Math.min(sequence, failedSequence - 1)) {
+                if (applyFailure != null) {
+                    throw new IOException("Schreibvorgang konnte nicht in die Zieldatei übertragen werden: " + filePath,
+                            applyFailure);
+                }
+                appliedLock.wait();
+            }
+        }
+    }
+
+    // Sammelt Datensätze für die Dauer des Group-Commit-Intervalls und sichert sie mit einem force
+    private void flushLoop() {
+        while (true) {
+            List<Record> batch;
+            synchronized (appendLock) {
+                try {
+                    while (unflushed.isEmpty() && !closed) {
+                        appendLock.wait();
+                    }
+                    if (unflushed.isEmpty()) {
+                        return;
+                    }
+                    // Weitere Schreibvorgänge dürfen sich dem Batch bis zum Ende des Intervalls anschließen
+                    long deadline = System.nanoTime() + groupCommitNanos;
+                    long remaining = groupCommitNanos;
+                    while (!closed && remaining > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(appendLock, remaining);
+                        remaining = deadline - System.nanoTime();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                batch = unflushed;
+                unflushed = new ArrayList<>();
+            }
+            try {
+                channel.force(false);
+                for (Record record : batch) {
+                    applyQueue.add(record);
+                    record.durable.complete(null);
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Write-Ahead-Log konnte nicht gesichert werden.", e);
+                fail(batch, e);
+            }
+        }
+    }
+
+    /*
+     * Verwirft den nicht gesicherten Batch samt allen danach angehängten Datensätzen. Sie werden
+     * aus dem Log entfernt, damit der nächste Start keine Schreibvorgänge einspielt, die dem
+     * Aufrufer als fehlgeschlagen gemeldet wurden.
+     */
+    private void fail(List<Record> batch, IOException e) {
+        Record first = batch.get(0);
+        List<Record> failed = new ArrayList<>(batch);
+        synchronized (appendLock) {
+            failure = e;
+            failed.addAll(unflushed);
+            unflushed = new ArrayList<>();
+            lastSequence = first.sequence - 1;
+            writePosition = first.logPosition;
+            // Die gemerkten Größen enthalten die verworfenen Anhänge
+            logicalSizes.clear();
+            try {
+                channel.truncate(writePosition);
+                channel.force(true);
+            } catch (IOException truncateError) {
+                logger.log(Level.SEVERE, "Verworfene Datensätze konnten nicht aus dem Write-Ahead-Log entfernt werden: "
+                        + logFile, truncateError);
+            }
+        }
+        synchronized (appliedLock) {
+            failedSequence = first.sequence;
+            appliedLock.notifyAll();
+        }
+        for (Record record : failed) {
+            record.durable.completeExceptionally(e);
+        }
+    }
+
+    // Überträgt gesicherte Datensätze der Reihe nach in die Zieldateien
+    private void applyLoop() {
+        while (true) {
+            Record record;
+            try {
+                record = applyQueue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (record == null) {
+                if (closed && !flusher.isAlive() && applyQueue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            synchronized (appliedLock) {
+                // Nach einem Fehler würden spätere Datensätze derselben Datei in falscher Reihenfolge landen
+                if (applyFailure != null) {
+                    continue;
+                }
+            }
+            try {
+                applyRecord(record);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Datensatz " + record.sequence + " konnte nicht übertragen werden: "
+                        + record.path, e);
+                failApply(e);
+                continue;
+            }
+            synchronized (appliedLock) {
+                appliedSequence = record.sequence;
+                appliedLock.notifyAll();
+            }
+            if (applyQueue.isEmpty()) {
+                maybeCheckpoint();
+            }
+        }
+    }
+
+    /*
+     * Der Datensatz bleibt im Log und wird beim nächsten Start erneut eingespielt. appliedSequence
+     * bleibt davor stehen, sodass kein Checkpoint das Log kürzt; Wartende erhalten den Fehler.
+     */
+    private void failApply(IOException e) {
+        synchronized (appendLock) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        synchronized (appliedLock) {
+            applyFailure = e;
+            appliedLock.notifyAll();
+        }
+    }
+
+    private void applyRecord(Record record) throws IOException {
+        Path target = Paths.get(record.path);
+        if (record.op == OP_WRITE) {
+            Files.write(target, record.content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        } else {
+            try (FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(record.content);
+                long position = record.offset;
+                while (buffer.hasRemaining()) {
+                    position += targetChannel.write(buffer, position);
+                }
+            }
+        }
+        synchronized (dirtyTargets) {
+            dirtyTargets.add(target);
+        }
+    }
+
+    private void maybeCheckpoint() {
+        try {
+            long size;
+            synchronized (appendLock) {
+                size = writePosition;
+            }
+            if (size >= CHECKPOINT_THRESHOLD) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Checkpoint des Write-Ahead-Logs fehlgeschlagen.", e);
+        }
+    }
+
+    /*
+     * Kürzt das Log, wenn alle angehängten Datensätze übertragen sind. Vorher werden die
+     * Zieldateien gesichert, da ihr Inhalt danach nur noch dort vorhanden ist.
+     */
+    private void checkpoint() throws IOException {
+        synchronized (appendLock) {
+            synchronized (appliedLock) {
+                if (applyFailure != null || appliedSequence != lastSequence) {
+                    return;
+                }
+            }
+            forceDirtyTargets();
+            channel.truncate(0);
+            channel.force(true);
+            writePosition = 0;
+        }
+    }
+
+    private void forceDirtyTargets() throws IOException {
+        List<Path> targets;
+        synchronized (dirtyTargets) {
+            targets = new ArrayList<>(dirtyTargets);
+            dirtyTargets.clear();
+        }
+        for (Path target : targets) {
+            try (FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                targetChannel.force(true);
+            } catch (NoSuchFileException e) {
+                // Inzwischen gelöscht, nichts mehr zu sichern
+            }
+        }
+    }
+
+    // Spielt alle vollständigen Datensätze eines früheren Laufs ein und leert danach das Log
+    private void recover() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0;
+        int recovered = 0;
+        long size = channel.size();
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            if (header.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            long sequence = header.getLong();
+            byte op = header.get();
+            long offset = header.getLong();
+            int pathLength = header.getInt();
+            int contentLength = header.getInt();
+            long recordSize = (long) HEADER_SIZE + pathLength + contentLength + TRAILER_SIZE;
+            if ((op != OP_WRITE && op != OP_WRITE_AT) || pathLength < 0 || contentLength < 0 || position + recordSize > size) {
+                // Unvollständiger Datensatz am Ende (Absturz während des Schreibens)
+                break;
+            }
+            ByteBuffer full = ByteBuffer.allocate((int) recordSize);
+            channel.read(full, position);
+            full.flip();
+            Record record = Record.decode(full, sequence, op, offset, pathLength, contentLength);
+            if (record == null) {
+                break;
+            }
+            applyRecord(record);
+            lastSequence = sequence;
+            recovered++;
+            position += recordSize;
+        }
+        if (size > 0) {
+            forceDirtyTargets();
+            channel.truncate(0);
+            channel.force(true);
+        }
+        appliedSequence = lastSequence;
+        if (recovered > 0) {
+            logger.info(recovered + " Datensätze aus dem Write-Ahead-Log wiederhergestellt: " + logFile);
+        }
+    }
+
+    /**
+     * Wartet, bis alle Datensätze gesichert und übertragen sind, schreibt einen Checkpoint und
+     * schließt das Log.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            closed = true;
+            appendLock.notifyAll();
+        }
+        try {
+            flusher.join();
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+        channel.close();
+    }
+
+    // Ein einzelner Schreibvorgang im Log
+    private static final class Record {
+        private final long sequence;
+        private final byte op;
+        private final String path;
+        // Schreibposition bei OP_WRITE_AT, sonst -1
+        private final long offset;
+        private final byte[] content;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+        // Position des Datensatzes im Log (nur unter appendLock)
+        private long logPosition;
+
+        private Record(long sequence, byte op, String path, long offset, byte[] content) {
+            this.sequence = sequence;
+            this.op = op;
+            this.path = path;
+            this.offset = offset;
+            this.content = content;
+        }
+
+        private ByteBuffer encode() {
+            byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pathBytes.length + content.length + TRAILER_SIZE);
+            buffer.putInt(RECORD_MAGIC);
+            buffer.putLong(sequence);
+            buffer.put(op);
+            buffer.putLong(offset);
+            buffer.putInt(pathBytes.length);
+            buffer.putInt(content.length);
+            buffer.put(pathBytes);
+            buffer.put(content);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            return buffer;
+        }
+
+        // Liefert null, wenn die Prüfsumme nicht stimmt
+        private static Record decode(ByteBuffer buffer, long sequence, byte op, long offset, int pathLength,
+                                     int contentLength) {
+            int payloadEnd = HEADER_SIZE + pathLength + contentLength;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, payloadEnd);
+            if (buffer.getLong(payloadEnd) != crc.getValue()) {
+                return null;
+            }
+            String path = new String(buffer.array(), HEADER_SIZE, pathLength, StandardCharsets.UTF_8);
+            byte[] content = new byte[contentLength];
+            System.arraycopy(buffer.array(), HEADER_SIZE + pathLength, content, 0, contentLength);
+            return new Record(sequence, op, path, offset, content);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Erstellt Snapshots des gesamten ZFS-Datasets über das zfs-Kommandozeilenwerkzeug.
+ * Auf das Ende des zfs-Prozesses wird über Process.onExit() gewartet: die asynchronen Varianten
+ * belegen dabei keinen Thread, und die synchronen warten nur auf ein Future, was auch für virtuelle
+ * Threads keinen Träger-Thread blockiert.
+ *
+ * Das Kommando ist standardmäßig "sudo zfs" und lässt sich über die System-Property zfs.command
+ * ändern (z.B. -Dzfs.command=zfs, um ein Ersatzprogramm aus dem PATH zu verwenden).
+ */
+public class ZfsSnapshotBackend implements SnapshotBackend {
+    // Logger für Protokollierung
+    private static final Logger logger = Logger.getLogger(ZfsSnapshotBackend.class.getName());
+
+    private static final String DEFAULT_POOL_FS = "os_trans_pool/os_trans_fs";
+    static final String SNAPSHOT_PREFIX = "transaction_snapshot_";
+    // Laufende Nummer, damit Snapshots innerhalb derselben Millisekunde nicht kollidieren
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final String poolFs;
+    private final List<String> zfsCommand;
+
+    public ZfsSnapshotBackend() {
+        this(DEFAULT_POOL_FS);
+    }
+
+    public ZfsSnapshotBackend(String poolFs) {
+        this(poolFs, Arrays.asList(System.getProperty("zfs.command", "sudo zfs").trim().split("\\s+")));
+    }
+
+    /**
+     * @param zfsCommand Programm und vorangestellte Argumente, mit denen zfs aufgerufen wird
+     */
+    public ZfsSnapshotBackend(String poolFs, List<String> zfsCommand) {
+        this.poolFs = poolFs;
+        this.zfsCommand = List.copyOf(zfsCommand);
+    }
+
+    public String getPoolFs() {
+        return poolFs;
+    }
+
+    /**
+     * Erstellt einen ZFS-Snapshot des Datasets.
+     */
+    @Override
+    public Snapshot createSnapshot() {
+        return createSnapshotAsync().join();
+    }
+
+    @Override
+    public CompletableFuture<Snapshot> createSnapshotAsync() {
+        return createZfsSnapshotAsync().thenApply(snapshot -> snapshot);
+    }
+
+    // Wie createSnapshotAsync, liefert aber den konkreten Typ (für SnapshotLifecycleService)
+    CompletableFuture<ZfsSnapshot> createZfsSnapshotAsync() {
+        // Dynamischer Snapshot-Name, basierend auf dem aktuellen Zeitstempel und einer laufenden Nummer
+        String snapshotName = SNAPSHOT_PREFIX + System.currentTimeMillis() + "_" + sequence.incrementAndGet();
+        // Zusammensetzung des Befehls: sudo zfs snapshot <poolFs>@<snapshotName>
+        return runZfs("Fehler beim Erstellen des Snapshots.", "snapshot", poolFs + "@" + snapshotName).thenApply(success -> {
+            if (success) {
+                TransactionEventBus.shared().publish(TransactionEventType.SNAPSHOT_CREATED, null, snapshotName);
+                return new ZfsSnapshot(snapshotName);
+            }
+            System.err.println("Fehler beim Erstellen des Snapshots '" + snapshotName + "'.");
+            return null;
+        });
+    }
+
+    /**
+     * Löscht mit einem einzigen "zfs destroy" mehrere Snapshots. Jeder Eintrag ist ein Snapshot-Name
+     * oder ein Bereich "erster%letzter", der alle Snapshots dazwischen einschließt.
+     *
+     * @return Future mit true, wenn zfs erfolgreich beendet wurde
+     */
+    CompletableFuture<Boolean> destroyAsync(List<String> snapshotsOrRanges) {
+        // Zusammensetzung des Befehls: sudo zfs destroy <poolFs>@a%b,c,d%e
+        return runZfs("Fehler beim Löschen der Snapshots.", "destroy",
+                poolFs + "@" + String.join(",", snapshotsOrRanges));
+    }
+
+    /**
+     * Listet die Namen (ohne Dataset) aller Snapshots des Datasets in der Reihenfolge ihrer Erstellung.
+     */
+    List<String> listSnapshots() throws IOException {
+        List<String> names = new ArrayList<>();
+        for (String line : runZfsForOutput("list", "-H", "-t", "snapshot", "-o", "name", "-s", "createtxg",
+                "-d", "1", poolFs)) {
+            int at = line.indexOf('@');
+            if (at >= 0) {
+                names.add(line.substring(at + 1).trim());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Anzahl der Bytes, die seit dem Snapshot im Dataset geschrieben wurden; 0 bedeutet, dass der
+     * Snapshot noch dem aktuellen Zustand entspricht. Liefert -1, wenn der Wert nicht ermittelt werden
+     * kann. Wie bei den übrigen Befehlen wird auf das Prozessende gewartet, ohne einen Thread zu belegen;
+     * die Ausgabe ist eine einzige Zahl und passt in den Puffer der Pipe.
+     */
+    CompletableFuture<Long> writtenSinceAsync(String snapshotName) {
+        try {
+            ProcessBuilder pb = new ProcessBuilder(command("get", "-Hp", "-o", "value", "written@" + snapshotName, poolFs));
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            return pb.start().onExit().thenApply(process -> {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line = reader.readLine();
+                    return process.exitValue() == 0 && line != null ? Long.parseLong(line.trim()) : -1L;
+                } catch (IOException | NumberFormatException e) {
+                    logger.log(Level.WARNING, "Geschriebene Bytes seit Snapshot '" + snapshotName + "' unbekannt.", e);
+                    return -1L;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Geschriebene Bytes seit Snapshot '" + snapshotName + "' unbekannt.", e);
+            return CompletableFuture.completedFuture(-1L);
+        }
+    }
+
+    /*
+     * Startet "sudo zfs <args>". Das Future wird erfüllt, sobald der Prozess endet, und liefert true
+     * bei Exit-Code 0.
+     */
+    private CompletableFuture<Boolean> runZfs(String errorMessage, String... args) {
+        try {
+            ProcessBuilder pb = new ProcessBuilder(command(args));
+            pb.inheritIO(); // Zeigt die Befehlsausgabe im Terminal an
+            return pb.start().onExit().thenApply(process -> process.exitValue() == 0);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, errorMessage, e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    // Startet "sudo zfs <args>" und liefert die Ausgabezeilen; wirft eine IOException bei Exit-Code != 0
+    private List<String> runZfsForOutput(String... args) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command(args));
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = pb.start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                lines.add(line);
+            }
+        }
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("zfs " + args[0] + " wurde mit Exit-Code " + process.exitValue() + " beendet.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Warten auf zfs " + args[0] + " unterbrochen.", e);
+        }
+        return lines;
+    }
+
+    private List<String> command(String... args) {
+        List<String> command = new ArrayList<>(zfsCommand);
+        command.addAll(Arrays.asList(args));
+        return command;
+    }
+
+    class ZfsSnapshot implements Snapshot {
+        private final String snapshotName;
+
+        private ZfsSnapshot(String snapshotName) {
+            this.snapshotName = snapshotName;
+        }
+
+        @Override
+        public String getName() {
+            return snapshotName;
+        }
+
+        /**
+         * Führt ein Rollback des gesamten Datasets auf diesen Snapshot durch.
+         */
+        @Override
+        public boolean rollback() {
+            return rollbackAsync().join();
+        }
+
+        /**
+         * Existieren jüngere Snapshots, lehnt zfs das Rollback ab.
+         */
+        @Override
+        public CompletableFuture<Boolean> rollbackAsync() {
+            // Zusammensetzung des Befehls: sudo zfs rollback <poolFs>@<snapshotName>
+            return runZfs("Fehler beim Rollback auf den Snapshot.", "rollback", poolFs + "@" + snapshotName).thenApply(success -> {
+                if (success) {
+                    TransactionEventBus.shared().publish(TransactionEventType.SNAPSHOT_ROLLED_BACK, null, snapshotName);
+                } else {
+                    System.err.println("Fehler beim Rollback auf Snapshot '" + snapshotName + "'.");
+                }
+                return success;
+            });
+        }
+    }
+}
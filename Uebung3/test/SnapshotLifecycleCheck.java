@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prüft das Zusammenfassen zu löschender Snapshots zu Bereichen, die Löschung nach keepUnreferenced
+ * und das Rollback des SnapshotLifecycleService gegen die zfs-Nachbildung in diesem Ordner.
+ * Aufruf über run_snapshot_check.sh; Argument ist der Pfad zur Nachbildung, ihr Zustand liegt in
+ * FAKE_ZFS_DIR.
+ */
+public class SnapshotLifecycleCheck {
+    private static final String POOL_FS = "pool/fs";
+
+    public static void main(String[] args) throws Exception {
+        checkRanges();
+        Path fakeZfs = Paths.get(args[0]).toAbsolutePath();
+        Path state = Paths.get(System.getenv("FAKE_ZFS_DIR"));
+        checkRetentionAndRollback(fakeZfs, state);
+        System.out.println("Alle Prüfungen bestanden.");
+    }
+
+    private static void checkRanges() {
+        List<String> ordered = Arrays.asList("a", "b", "c", "d", "e", "f");
+        check(SnapshotLifecycleService.ranges(ordered, new HashSet<>(Arrays.asList("a", "b", "d", "e", "f")))
+                .equals(Arrays.asList("a%b", "d%f")), "Bereiche um einen erhaltenen Snapshot");
+        check(SnapshotLifecycleService.ranges(ordered, new HashSet<>(Arrays.asList("c")))
+                .equals(Collections.singletonList("c")), "einzelner Snapshot ohne Bereich");
+        check(SnapshotLifecycleService.ranges(ordered, new HashSet<>(Arrays.asList("b", "d")))
+                .equals(Arrays.asList("b", "d")), "nicht benachbarte Snapshots");
+        check(SnapshotLifecycleService.ranges(ordered, Collections.emptySet()).isEmpty(), "nichts zu löschen");
+    }
+
+    private static void checkRetentionAndRollback(Path fakeZfs, Path state) throws Exception {
+        ZfsSnapshotBackend backend = new ZfsSnapshotBackend(POOL_FS, Collections.singletonList(fakeZfs.toString()));
+        // Ohne Vorrat, damit keine Snapshots im Hintergrund entstehen
+        SnapshotLifecycleService service = new SnapshotLifecycleService(backend, 0, 1, 1, TimeUnit.HOURS);
+        service.start();
+        try {
+            SnapshotBackend.Snapshot s1 = service.createSnapshot();
+            SnapshotBackend.Snapshot s2 = service.createSnapshot();
+            run(fakeZfs, "snapshot", POOL_FS + "@foreign");
+            SnapshotBackend.Snapshot s3 = service.createSnapshot();
+            SnapshotBackend.Snapshot s4 = service.createSnapshot();
+            SnapshotBackend.Snapshot held = service.createSnapshot();
+            for (SnapshotBackend.Snapshot snapshot : Arrays.asList(s1, s2, s3, s4)) {
+                snapshot.release();
+            }
+
+            // s1 bis s3 werden gelöscht, der fremde Snapshot trennt die Bereiche, s4 ist der jüngste nicht referenzierte
+            check(service.enforceRetention() == 3, "drei Snapshots gelöscht");
+            check(snapshots(state).equals(Arrays.asList("foreign", s4.getName(), held.getName())),
+                    "erhaltene Snapshots nach der Löschung: " + snapshots(state));
+            check(log(state).contains("destroy " + POOL_FS + "@" + s1.getName() + "%" + s2.getName() + "," + s3.getName()),
+                    "ein zfs destroy mit Bereichen");
+            check(service.enforceRetention() == 0, "zweiter Durchlauf löscht nichts");
+
+            // Ein jüngerer, nicht mehr referenzierter Snapshot des Dienstes wird vor dem Rollback gelöscht
+            SnapshotBackend.Snapshot ended = service.createSnapshot();
+            ended.release();
+            check(held.rollback(), "Rollback über einen nicht mehr referenzierten Snapshot hinweg");
+            check(snapshots(state).equals(Arrays.asList("foreign", s4.getName(), held.getName())),
+                    "jüngerer Snapshot vor dem Rollback gelöscht: " + snapshots(state));
+
+            // Der Snapshot einer laufenden Transaktion bleibt erhalten, zfs lehnt das Rollback ab
+            SnapshotBackend.Snapshot live = service.createSnapshot();
+            check(!held.rollback(), "Rollback trotz laufender jüngerer Transaktion abgelehnt");
+            check(snapshots(state).contains(live.getName()), "Snapshot der laufenden Transaktion erhalten");
+            live.release();
+            held.release();
+        } finally {
+            service.close();
+        }
+    }
+
+    private static List<String> snapshots(Path state) throws IOException {
+        return Files.readAllLines(state.resolve("snapshots"));
+    }
+
+    private static String log(Path state) throws IOException {
+        return new String(Files.readAllBytes(state.resolve("log")));
+    }
+
+    private static void run(Path fakeZfs, String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = fakeZfs.toString();
+        System.arraycopy(args, 0, command, 1, args.length);
+        check(new ProcessBuilder(command).inheritIO().start().waitFor() == 0, "zfs " + String.join(" ", args));
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            throw new AssertionError("Prüfung fehlgeschlagen: " + description);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prüft, dass ein gesicherter Datensatz, der sich nicht in die Zieldatei übertragen lässt, im
+ * Write-Ahead-Log erhalten bleibt: kein Checkpoint darf das Log kürzen, Wartende erhalten den
+ * Fehler, und der nächste Start spielt den Datensatz ein. Aufruf über run_wal_check.sh.
+ */
+public class WriteAheadLogCheck {
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("wal_check");
+        Path logFile = dir.resolve("wal.log");
+        // Eine Datei an Stelle des Ordners lässt das Übertragen fehlschlagen
+        Path blocker = dir.resolve("blocked");
+        Files.write(blocker, new byte[0]);
+        Path target = blocker.resolve("idea.txt");
+        byte[] content = "nicht verlieren".getBytes();
+
+        WriteAheadLog wal = new WriteAheadLog(logFile, 1, TimeUnit.MILLISECONDS);
+        CompletableFuture<Void> durable = wal.submitWrite(target.toString(), content);
+        durable.join();
+        check(!durable.isCompletedExceptionally(), "Datensatz gesichert");
+        try {
+            wal.awaitApplied(target.toString());
+            check(false, "awaitApplied meldet den Fehler beim Übertragen");
+        } catch (IOException expected) {
+            // erwartet
+        }
+        check(wal.submitWrite(dir.resolve("other.txt").toString(), content).isCompletedExceptionally(),
+                "nach dem Fehler werden keine Schreibvorgänge mehr angenommen");
+        // close schreibt einen Checkpoint, der das Log nicht kürzen darf
+        wal.close();
+        check(Files.size(logFile) > 0, "Datensatz nach dem Checkpoint noch im Log");
+
+        Files.delete(blocker);
+        Files.createDirectory(blocker);
+        new WriteAheadLog(logFile, 1, TimeUnit.MILLISECONDS).close();
+        check(Files.exists(target) && new String(Files.readAllBytes(target)).equals(new String(content)),
+                "Datensatz beim nächsten Start eingespielt");
+        check(Files.size(logFile) == 0, "Log nach erfolgreichem Einspielen gekürzt");
+        System.out.println("Alle Prüfungen bestanden.");
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            throw new AssertionError("Prüfung fehlgeschlagen: " + description);
+        }
+    }
+}
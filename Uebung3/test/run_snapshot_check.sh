@@ -0,0 +1,9 @@
+#!/bin/bash
+# Übersetzt src und die Prüfung und führt sie gegen die zfs-Nachbildung aus (kein ZFS-Pool nötig)
+set -e
+cd "$(dirname "$0")"
+OUT=$(mktemp -d)
+export FAKE_ZFS_DIR=$(mktemp -d)
+trap 'rm -rf "$OUT" "$FAKE_ZFS_DIR"' EXIT
+javac -encoding UTF-8 -d "$OUT" ../src/*.java SnapshotLifecycleCheck.java
+java -cp "$OUT" SnapshotLifecycleCheck "$PWD/zfs"
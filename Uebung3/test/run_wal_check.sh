@@ -0,0 +1,8 @@
+#!/bin/bash
+# Übersetzt src und die Prüfung des Write-Ahead-Logs und führt sie aus
+set -e
+cd "$(dirname "$0")"
+OUT=$(mktemp -d)
+trap 'rm -rf "$OUT"' EXIT
+javac -encoding UTF-8 -d "$OUT" ../src/*.java WriteAheadLogCheck.java
+java -cp "$OUT" WriteAheadLogCheck